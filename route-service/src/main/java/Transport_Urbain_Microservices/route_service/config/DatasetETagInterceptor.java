@@ -0,0 +1,50 @@
+package Transport_Urbain_Microservices.route_service.config;
+
+import Transport_Urbain_Microservices.route_service.service.DatasetVersion;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Set;
+import java.util.function.Predicate;
+
+// Answers If-None-Match from the dataset version alone, before the controller (and so any
+// repository) is reached. Otherwise the ETag is set and the request proceeds as usual.
+// While bypassed returns true the responses also depend on something else (live data), and no ETag is used.
+// Endpoints with a JSON and an NDJSON mapping serve two representations of the same version: the tag then
+// carries the media type of the mapping chosen for the Accept header, and the response varies on Accept.
+@RequiredArgsConstructor
+public class DatasetETagInterceptor implements HandlerInterceptor {
+
+    private final DatasetVersion datasetVersion;
+    private final Predicate<HttpServletRequest> bypassed;
+
+    public DatasetETagInterceptor(DatasetVersion datasetVersion) {
+        this(datasetVersion, request -> false);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+            return true;
+        }
+        if (bypassed.test(request)) {
+            return true;
+        }
+        // read before the handler runs: the body can only be newer than the tag, never older
+        String etag = datasetVersion.etag();
+        @SuppressWarnings("unchecked")
+        Set<MediaType> produces = (Set<MediaType>) request.getAttribute(HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE);
+        if (produces != null && !produces.isEmpty()) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            etag = etag.substring(0, etag.length() - 1) + "-" + produces.iterator().next().getSubtype() + "\"";
+        }
+        return !new ServletWebRequest(request, response).checkNotModified(etag);
+    }
+}
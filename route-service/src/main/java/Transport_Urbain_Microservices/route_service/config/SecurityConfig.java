@@ -1,6 +1,7 @@
 package Transport_Urbain_Microservices.route_service.config;
 
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.Converter;
@@ -25,8 +26,13 @@ public class SecurityConfig {
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers(HttpMethod.GET,"/run/**","/stop/**","/route/**").permitAll()
-                        .requestMatchers(HttpMethod.POST,"/run/**","/stop/**","/route/**").hasRole("ADMIN")
+                        // resumes a request that was already authorized (departure streams)
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                        .requestMatchers(HttpMethod.GET,"/run/**","/stop/**","/route/**","/journey/**","/gtfs/**","/realtime/**").permitAll()
+                        .requestMatchers(HttpMethod.GET,"/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
+                        .requestMatchers("/network/**").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.POST,"/run/**","/stop/**","/route/**","/realtime/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.PUT,"/run/**","/stop/**","/route/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.PATCH,"/run/**","/stop/**","/route/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.DELETE,"/run/**","/stop/**","/route/**").hasRole("ADMIN")
@@ -0,0 +1,31 @@
+package Transport_Urbain_Microservices.route_service.config;
+
+import Transport_Urbain_Microservices.route_service.realtime.VehiclePositionTracker;
+import Transport_Urbain_Microservices.route_service.service.DatasetVersion;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final DatasetVersion datasetVersion;
+    private final VehiclePositionTracker vehiclePositionTracker;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Responses that depend on the current time as well as on the data are left out
+        registry.addInterceptor(new DatasetETagInterceptor(datasetVersion))
+                .addPathPatterns("/route/**", "/stop/**")
+                .excludePathPatterns("/route/*/timetable", "/stop/*/departures/stream");
+        // A timetable only depends on the current time when it defaults to today
+        registry.addInterceptor(new DatasetETagInterceptor(datasetVersion, request -> request.getParameter("date") == null))
+                .addPathPatterns("/route/*/timetable");
+        // Run details carry predicted times while vehicles are reporting
+        registry.addInterceptor(new DatasetETagInterceptor(datasetVersion, request -> vehiclePositionTracker.hasRecentPositions()))
+                .addPathPatterns("/run/**")
+                .excludePathPatterns("/run/stop/*/departures");
+    }
+}
@@ -0,0 +1,28 @@
+package Transport_Urbain_Microservices.route_service.controller;
+
+import Transport_Urbain_Microservices.route_service.service.GtfsExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/gtfs")
+public class GtfsController {
+
+    private final GtfsExportService gtfsExportService;
+
+    @GetMapping(value = "/feed.zip", produces = "application/zip")
+    public ResponseEntity<StreamingResponseBody> getFeed() {
+        StreamingResponseBody body = gtfsExportService::writeFeed;
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"feed.zip\"")
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(body);
+    }
+}
@@ -0,0 +1,33 @@
+package Transport_Urbain_Microservices.route_service.controller;
+
+import Transport_Urbain_Microservices.route_service.dto.JourneyDto;
+import Transport_Urbain_Microservices.route_service.service.JourneyService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/journey")
+@RequiredArgsConstructor
+public class JourneyController {
+
+    private final JourneyService journeyService;
+
+    @GetMapping
+    public ResponseEntity<JourneyDto> planJourney(
+            @RequestParam Long from,
+            @RequestParam Long to,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at,
+            @RequestParam(defaultValue = "3") int maxTransfers) {
+        if (maxTransfers < 0 || maxTransfers > JourneyService.MAX_TRANSFERS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "maxTransfers must be between 0 and " + JourneyService.MAX_TRANSFERS);
+        }
+        return ResponseEntity.ok(journeyService.planJourney(from, to, at != null ? at : LocalDateTime.now(), maxTransfers));
+    }
+}
@@ -0,0 +1,36 @@
+package Transport_Urbain_Microservices.route_service.controller;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.function.Function;
+
+// Keyset pagination on id: a page is requested with ?after=<last id seen>&limit=<n>, and a full page
+// carries the id to continue from in the X-Next-Cursor header (absent on the last page)
+class KeysetPage {
+
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    static boolean requested(Long after, Integer limit) {
+        return after != null || limit != null;
+    }
+
+    static int limit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    static <T> ResponseEntity<List<T>> ok(List<T> page, int limit, Function<T, Long> id) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == limit) {
+            response.header("X-Next-Cursor", String.valueOf(id.apply(page.getLast())));
+        }
+        return response.body(page);
+    }
+}
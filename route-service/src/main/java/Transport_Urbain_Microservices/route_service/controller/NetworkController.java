@@ -0,0 +1,35 @@
+package Transport_Urbain_Microservices.route_service.controller;
+
+import Transport_Urbain_Microservices.route_service.dto.NetworkStatusDto;
+import Transport_Urbain_Microservices.route_service.service.NetworkService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/network")
+@RequiredArgsConstructor
+public class NetworkController {
+
+    private final NetworkService networkService;
+
+    @GetMapping("/versions")
+    public ResponseEntity<NetworkStatusDto> getStatus() {
+        return ResponseEntity.ok(networkService.getStatus());
+    }
+
+    @PostMapping("/hold")
+    public ResponseEntity<NetworkStatusDto> hold() {
+        return ResponseEntity.ok(networkService.hold());
+    }
+
+    @PostMapping("/publish")
+    public ResponseEntity<NetworkStatusDto> publish() {
+        return ResponseEntity.ok(networkService.publish());
+    }
+
+    @PostMapping("/rollback/{version}")
+    public ResponseEntity<NetworkStatusDto> rollback(@PathVariable long version) {
+        return ResponseEntity.ok(networkService.rollback(version));
+    }
+}
@@ -0,0 +1,31 @@
+package Transport_Urbain_Microservices.route_service.controller;
+
+import Transport_Urbain_Microservices.route_service.dto.PositionIngestResultDto;
+import Transport_Urbain_Microservices.route_service.dto.RunPositionDto;
+import Transport_Urbain_Microservices.route_service.dto.VehiclePositionDto;
+import Transport_Urbain_Microservices.route_service.service.RealtimeService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/realtime")
+@RequiredArgsConstructor
+public class RealtimeController {
+
+    private final RealtimeService realtimeService;
+
+    @PostMapping("/positions")
+    public ResponseEntity<PositionIngestResultDto> ingestPositions(@RequestBody List<VehiclePositionDto> positions) {
+        return ResponseEntity.ok(realtimeService.ingestPositions(positions));
+    }
+
+    @GetMapping("/run/{runId}")
+    public ResponseEntity<RunPositionDto> getRunPosition(
+            @PathVariable Long runId,
+            @RequestParam(defaultValue = "1") int history) {
+        return ResponseEntity.ok(realtimeService.getRunPosition(runId, history));
+    }
+}
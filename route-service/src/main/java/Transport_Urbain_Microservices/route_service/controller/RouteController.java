@@ -2,12 +2,17 @@ package Transport_Urbain_Microservices.route_service.controller;
 
 import Transport_Urbain_Microservices.route_service.dto.*;
 import Transport_Urbain_Microservices.route_service.service.RouteService;
+import Transport_Urbain_Microservices.route_service.service.RunService;
 import Transport_Urbain_Microservices.route_service.service.StopService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 
 
@@ -17,6 +22,7 @@ import java.util.List;
 public class RouteController {
 
     private final RouteService routeService;
+    private final RunService runService;
 
     @PostMapping
     public ResponseEntity<RouteDto> createRoute(@RequestBody RouteDto routeDto) {
@@ -29,12 +35,12 @@ public class RouteController {
     }
 
     @PutMapping("/update/stops")
-    public ResponseEntity<RouteDto> updateRouteStops(@RequestBody ChangeRouteStopsDto routeDto) {
+    public ResponseEntity<RouteChangeResultDto> updateRouteStops(@RequestBody ChangeRouteStopsDto routeDto) {
         return ResponseEntity.ok(routeService.updateRouteStops(routeDto));
     }
 
     @PutMapping("/update/offsets")
-    public ResponseEntity<RouteDto> updateRouteOffsets(@RequestBody ChangeRouteOffsetsDto changeRouteOffsetsDto) {
+    public ResponseEntity<RouteChangeResultDto> updateRouteOffsets(@RequestBody ChangeRouteOffsetsDto changeRouteOffsetsDto) {
         return ResponseEntity.ok(routeService.updateRouteOffsets(changeRouteOffsetsDto));
     }
 
@@ -48,9 +54,34 @@ public class RouteController {
         return ResponseEntity.ok(routeService.getRouteById(routeId));
     }
 
-    @GetMapping
-    public ResponseEntity<List<RouteDto>> getAllRoutes() {
-        return ResponseEntity.ok(routeService.getAllRoutes());
+    @GetMapping("/{routeId}/shape")
+    public ResponseEntity<RouteShapeDto> getRouteShape(
+            @PathVariable Long routeId,
+            @RequestParam(required = false) Integer zoom) {
+        return ResponseEntity.ok(routeService.getRouteShape(routeId, zoom));
+    }
+
+    @GetMapping("/{routeId}/timetable")
+    public ResponseEntity<RouteTimetableDto> getRouteTimetable(
+            @PathVariable Long routeId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(runService.getRouteTimetable(routeId, date != null ? date : LocalDate.now()));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<RouteDto>> getAllRoutes(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+        if (!KeysetPage.requested(after, limit)) {
+            return ResponseEntity.ok(routeService.getAllRoutes());
+        }
+        int pageSize = KeysetPage.limit(limit);
+        return KeysetPage.ok(routeService.getRoutesPage(after, pageSize), pageSize, RouteDto::getId);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllRoutes() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(routeService::streamAllRoutes);
     }
 
     @DeleteMapping("/{routeId}")
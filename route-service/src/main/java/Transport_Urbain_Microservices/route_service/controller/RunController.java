@@ -1,17 +1,24 @@
 package Transport_Urbain_Microservices.route_service.controller;
 
+import Transport_Urbain_Microservices.route_service.dto.BulkCreateRunsDto;
+import Transport_Urbain_Microservices.route_service.dto.BulkCreateRunsResultDto;
 import Transport_Urbain_Microservices.route_service.dto.CreateRunDTO;
+import Transport_Urbain_Microservices.route_service.dto.FrequencyTemplateDto;
 import Transport_Urbain_Microservices.route_service.dto.RunDetailsDto;
+import Transport_Urbain_Microservices.route_service.dto.StopDepartureDto;
 import Transport_Urbain_Microservices.route_service.mapper.RunMapper;
 import Transport_Urbain_Microservices.route_service.service.RunService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -26,14 +33,30 @@ public class RunController {
         return ResponseEntity.status(HttpStatus.CREATED).body(runService.createRun(dto));
     }
 
+    @PostMapping("/bulk")
+    public ResponseEntity<BulkCreateRunsResultDto> createRunsInBulk(@RequestBody BulkCreateRunsDto dto) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(runService.createRunsInBulk(dto));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<RunDetailsDto> getRunById(@PathVariable Long id) {
         return ResponseEntity.ok(runService.getRunById(id));
     }
 
-    @GetMapping
-    public ResponseEntity<List<RunDetailsDto>> getAllRuns() {
-        return ResponseEntity.ok(runService.getAllRuns());
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<RunDetailsDto>> getAllRuns(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+        if (!KeysetPage.requested(after, limit)) {
+            return ResponseEntity.ok(runService.getAllRuns());
+        }
+        int pageSize = KeysetPage.limit(limit);
+        return KeysetPage.ok(runService.getRunsPage(after, pageSize), pageSize, RunDetailsDto::getId);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllRuns() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(runService::streamAllRuns);
     }
 
     @GetMapping("/route/{routeId}")
@@ -60,6 +83,30 @@ public class RunController {
         return ResponseEntity.ok(runService.getAllRunsForStopForGivenDay(stopId, givenDay));
     }
 
+    @GetMapping("/stop/{stopId}/departures")
+    public ResponseEntity<List<StopDepartureDto>> getNextDeparturesForStop(
+            @PathVariable Long stopId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(runService.getNextDeparturesForStop(stopId, at != null ? at : LocalDateTime.now(), limit));
+    }
+
+    @PostMapping("/frequency")
+    public ResponseEntity<FrequencyTemplateDto> createFrequencyTemplate(@RequestBody FrequencyTemplateDto dto) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(runService.createFrequencyTemplate(dto));
+    }
+
+    @GetMapping("/frequency/route/{routeId}")
+    public ResponseEntity<List<FrequencyTemplateDto>> getFrequencyTemplatesForRoute(@PathVariable Long routeId) {
+        return ResponseEntity.ok(runService.getFrequencyTemplatesForRoute(routeId));
+    }
+
+    @DeleteMapping("/frequency/{id}")
+    public ResponseEntity<Void> deleteFrequencyTemplate(@PathVariable Long id) {
+        runService.deleteFrequencyTemplateById(id);
+        return ResponseEntity.noContent().build();
+    }
+
     @DeleteMapping("/delete/{id}")
     public ResponseEntity<Void> deleteRun(@PathVariable Long id) {
         runService.deleteRunById(id);
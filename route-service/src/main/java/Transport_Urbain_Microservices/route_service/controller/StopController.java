@@ -1,10 +1,14 @@
 package Transport_Urbain_Microservices.route_service.controller;
 
+import Transport_Urbain_Microservices.route_service.dto.NearbyStopDto;
 import Transport_Urbain_Microservices.route_service.dto.StopDto;
 import Transport_Urbain_Microservices.route_service.service.StopService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -30,9 +34,44 @@ public class StopController {
         return ResponseEntity.ok(stopService.getStopById(id));
     }
 
-    @GetMapping
-    public ResponseEntity<List<StopDto>> getAllStops() {
-        return ResponseEntity.ok(stopService.getAllStops());
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<StopDto>> getAllStops(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+        if (!KeysetPage.requested(after, limit)) {
+            return ResponseEntity.ok(stopService.getAllStops());
+        }
+        int pageSize = KeysetPage.limit(limit);
+        return KeysetPage.ok(stopService.getStopsPage(after, pageSize), pageSize, StopDto::getId);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllStops() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(stopService::streamAllStops);
+    }
+
+    @GetMapping(value = "/{id}/departures/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamDepartures(@PathVariable Long id) {
+        return ResponseEntity.ok(stopService.streamDepartures(id));
+    }
+
+    @GetMapping("/nearby")
+    public ResponseEntity<List<NearbyStopDto>> getNearbyStops(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(defaultValue = "500") double radius,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(stopService.getNearbyStops(lat, lon, radius, limit));
+    }
+
+    @GetMapping("/bbox")
+    public ResponseEntity<List<StopDto>> getStopsInBoundingBox(
+            @RequestParam double minLat,
+            @RequestParam double minLon,
+            @RequestParam double maxLat,
+            @RequestParam double maxLon,
+            @RequestParam(defaultValue = "500") int limit) {
+        return ResponseEntity.ok(stopService.getStopsInBoundingBox(minLat, minLon, maxLat, maxLon, limit));
     }
 
     @DeleteMapping("/{id}")
@@ -0,0 +1,116 @@
+package Transport_Urbain_Microservices.route_service.dataloader;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Record-at-a-time reader for GTFS CSV files (RFC 4180 quoting, optional UTF-8 BOM).
+// Only the current record is kept; columns are looked up once by header name.
+class GtfsCsvReader implements Closeable {
+
+    private final Reader reader;
+    private final Map<String, Integer> columns = new HashMap<>();
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    private int pushedBack = -2;
+
+    GtfsCsvReader(InputStream in) throws IOException {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 256 * 1024);
+        int first = reader.read();
+        if (first != '\uFEFF') {
+            pushedBack = first;
+        }
+        if (readRecord()) {
+            for (int i = 0; i < fields.size(); i++) {
+                columns.put(fields.get(i).trim(), i);
+            }
+        }
+    }
+
+    // -1 when the file has no such column
+    int column(String name) {
+        return columns.getOrDefault(name, -1);
+    }
+
+    boolean next() throws IOException {
+        while (readRecord()) {
+            if (fields.size() > 1 || !fields.getFirst().isEmpty()) {
+                return true; // skip blank lines
+            }
+        }
+        return false;
+    }
+
+    // null when the column is absent or the value is empty
+    String get(int column) {
+        if (column < 0 || column >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(column);
+        return value.isEmpty() ? null : value;
+    }
+
+    private boolean readRecord() throws IOException {
+        fields.clear();
+        field.setLength(0);
+        int c = read();
+        if (c == -1) {
+            return false;
+        }
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field in GTFS file");
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                break;
+            } else if (c == '\r') {
+                int next = read();
+                if (next != '\n' && next != -1) {
+                    pushedBack = next;
+                }
+                break;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+        fields.add(field.toString());
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != -2) {
+            int c = pushedBack;
+            pushedBack = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,833 @@
+package Transport_Urbain_Microservices.route_service.dataloader;
+
+import Transport_Urbain_Microservices.route_service.entity.*;
+import Transport_Urbain_Microservices.route_service.repo.BulkImportRepo;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// Imports a GTFS zip as an alternative to the OSM + schedules.json loaders (enabled by app.gtfs-file).
+// Files are parsed record by record; GTFS ids are mapped to database ids in memory, with ids reserved
+// up front from the identity sequences so that stops, routes, route stops, offsets and runs can be
+// written as independent JDBC batches on several threads.
+//
+// Mapping: every distinct stop sequence of a GTFS route becomes a Route (with its RouteStops, and offsets
+// taken from its first trip); trips become REGULAR runs masked with their calendar.txt weekdays, or
+// frequency templates when listed in frequencies.txt. A date of calendar_dates.txt becomes a RouteSpecialDay
+// of the routes whose trips it changes, carrying SPECIAL runs for their trips operating that day; other routes
+// keep their regular service. Services past their end date are left out, and the days of the coming weeks out of a
+// service's period become such special days as well. stop_times.txt must be grouped by trip_id.
+//
+// Stops and routes carry their GTFS key (gtfs_id) and are upserted on it, so importing a changed feed updates
+// them in place: everything below the feed's routes is replaced, and routes and unused stops that left the feed
+// are deleted. The parallel batches only fill staging tables, which are applied in one transaction once all of
+// them succeeded, so a failed import leaves the previous one untouched.
+@Component
+@RequiredArgsConstructor
+@Order(2)
+public class GtfsDataLoader implements ApplicationRunner {
+
+    public static final String SOURCE = "gtfs";
+
+    private static final DateTimeFormatter GTFS_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final int DAY_SECONDS = 86_400;
+    private static final int NO_TIME = -1;
+
+    @Value("${app.gtfs-file:}")
+    private String gtfsLocation; // empty to disable
+
+    @Value("${app.import.threads:4}")
+    private int writerThreads;
+
+    @Value("${app.gtfs.validity-days:60}")
+    private int validityDays; // days ahead over which the start and end dates of services are honoured
+
+    private final ResourceLoader resourceLoader;
+    private final BulkImportRepo bulkImportRepo;
+    private final ImportManifestTracker importManifest;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (gtfsLocation == null || gtfsLocation.isBlank() || !importManifest.isEnabled()) {
+            return;
+        }
+        long started = System.nanoTime();
+        Resource gtfsFile = resourceLoader.getResource(gtfsLocation);
+        ImportManifestTracker.SourceFile file = importManifest.hash(SOURCE, gtfsFile);
+        String contentHash = file.hash();
+        if (importManifest.isUpToDate(SOURCE, contentHash)) {
+            System.out.println("GTFS import skipped: " + gtfsFile.getDescription() + " unchanged since last import");
+            return;
+        }
+
+        File zipPath = gtfsFile.isFile() ? gtfsFile.getFile() : copyToTempFile(gtfsFile);
+        try (ZipFile zip = new ZipFile(zipPath);
+             ParallelBatchWriter writer = new ParallelBatchWriter(writerThreads)) {
+            Import imp = new Import(zip, writer);
+            bulkImportRepo.createGtfsStaging();
+            imp.run();
+            writer.awaitAll();
+            bulkImportRepo.swapInGtfsStaging();
+
+            bulkImportRepo.evictSecondLevelCache();
+            importManifest.record(SOURCE, gtfsFile, file, contentHash, imp.rowsWritten(), started);
+
+            double seconds = Math.max((System.nanoTime() - started) / 1_000_000_000.0, 0.001);
+            System.out.printf("GTFS import finished. Stops: %d, routes: %d, trips: %d, stop_times: %d, runs: %d, " +
+                            "frequency templates: %d, route special days: %d in %.2fs (%.0f stop_times/sec)%n",
+                    imp.stopCount, imp.patterns.size(), imp.trips.size(), imp.stopTimeRows, imp.runCount,
+                    imp.templateCount, imp.routeSpecialDays.size(), seconds, imp.stopTimeRows / seconds);
+        } finally {
+            bulkImportRepo.dropGtfsStaging();
+            if (!gtfsFile.isFile()) {
+                Files.deleteIfExists(zipPath.toPath());
+            }
+        }
+    }
+
+    private File copyToTempFile(Resource resource) throws IOException {
+        File file = File.createTempFile("gtfs-", ".zip");
+        try (InputStream is = resource.getInputStream()) {
+            Files.copy(is, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return file;
+    }
+
+    // State of one import run
+    private class Import {
+        final ZipFile zip;
+        final ParallelBatchWriter writer;
+        final int batchSize = bulkImportRepo.getBatchSize();
+
+        final Map<String, Long> stopIds = new HashMap<>();
+        final Map<Long, String> stopNames = new HashMap<>();
+        final Map<String, GtfsRoute> routes = new HashMap<>();
+        final Map<String, Integer> serviceIndexes = new HashMap<>();
+        final List<Service> services = new ArrayList<>();
+        final Map<String, Trip> trips = new HashMap<>();
+        final Map<String, Pattern> patternsByKey = new HashMap<>();
+        final List<Pattern> patterns = new ArrayList<>();
+        final Map<String, List<int[]>> frequencies = new HashMap<>(); // trip_id -> {start, end, headway} seconds
+        final Map<LocalDate, Map<Integer, Integer>> exceptions = new TreeMap<>(); // date -> service -> exception_type
+        final Map<LocalDate, Set<Pattern>> specialPatterns = new HashMap<>(); // patterns whose trips change that date
+        final List<RouteSpecialDay> routeSpecialDays = new ArrayList<>();
+
+        long stopCount;
+        long stopTimeRows;
+        long routeStopCount;
+        long runCount;
+        long templateCount;
+        long droppedRuns;
+
+        Import(ZipFile zip, ParallelBatchWriter writer) {
+            this.zip = zip;
+            this.writer = writer;
+        }
+
+        long rowsWritten() {
+            return stopCount + patterns.size() + routeStopCount + runCount + templateCount + routeSpecialDays.size();
+        }
+
+        void run() throws Exception {
+            readStops();
+            readRoutes();
+            readCalendar();
+            readCalendarDates();
+            inferCalendars();
+            applyServicePeriods();
+            readTrips();
+            readFrequencies();
+            readStopTimes();
+            writeRoutes();
+            writeRouteStops();
+            writeRunsAndTemplates();
+            bulkImportRepo.stageGtfsRouteSpecialDays(routeSpecialDays);
+        }
+
+        void readStops() throws Exception {
+            try (GtfsCsvReader csv = open("stops.txt", true)) {
+                int id = csv.column("stop_id");
+                int name = csv.column("stop_name");
+                int lat = csv.column("stop_lat");
+                int lon = csv.column("stop_lon");
+                int desc = csv.column("stop_desc");
+                int locationType = csv.column("location_type");
+                Map<String, Long> existingIds = bulkImportRepo.findStopIdsByGtfsId();
+                List<Stop> rows = new ArrayList<>();
+                while (csv.next()) {
+                    String type = csv.get(locationType);
+                    if (type != null && !"0".equals(type)) {
+                        continue; // stations, entrances and nodes are not boarding stops
+                    }
+                    Stop stop = new Stop();
+                    stop.setName(csv.get(name) != null ? csv.get(name) : "stop-" + csv.get(id));
+                    stop.setLat(Double.parseDouble(csv.get(lat)));
+                    stop.setLon(Double.parseDouble(csv.get(lon)));
+                    stop.setAddress(csv.get(desc));
+                    stop.setGtfsId(csv.get(id));
+                    stop.setId(existingIds.get(stop.getGtfsId()));
+                    rows.add(stop);
+                }
+                // ids of new stops are reserved in one round trip, then stops are written in parallel batches
+                long[] ids = bulkImportRepo.allocateIds("stop", (int) rows.stream().filter(stop -> stop.getId() == null).count());
+                int next = 0;
+                for (Stop stop : rows) {
+                    if (stop.getId() == null) {
+                        stop.setId(ids[next++]);
+                    }
+                    stopIds.put(stop.getGtfsId(), stop.getId());
+                    stopNames.put(stop.getId(), stop.getName());
+                }
+                submitAll(rows, bulkImportRepo::stageGtfsStops);
+                stopCount = rows.size();
+            }
+        }
+
+        void readRoutes() throws Exception {
+            try (GtfsCsvReader csv = open("routes.txt", true)) {
+                int id = csv.column("route_id");
+                int shortName = csv.column("route_short_name");
+                int longName = csv.column("route_long_name");
+                int desc = csv.column("route_desc");
+                while (csv.next()) {
+                    GtfsRoute route = new GtfsRoute();
+                    route.id = csv.get(id);
+                    route.shortName = csv.get(shortName);
+                    route.longName = csv.get(longName);
+                    route.description = csv.get(desc);
+                    routes.put(route.id, route);
+                }
+            }
+        }
+
+        void readCalendar() throws Exception {
+            try (GtfsCsvReader csv = open("calendar.txt", false)) {
+                if (csv == null) {
+                    return;
+                }
+                int id = csv.column("service_id");
+                int[] days = {
+                        csv.column("monday"), csv.column("tuesday"), csv.column("wednesday"), csv.column("thursday"),
+                        csv.column("friday"), csv.column("saturday"), csv.column("sunday")
+                };
+                int start = csv.column("start_date");
+                int end = csv.column("end_date");
+                while (csv.next()) {
+                    Service service = service(csv.get(id));
+                    service.hasCalendar = true;
+                    for (int d = 0; d < 7; d++) {
+                        if ("1".equals(csv.get(days[d]))) {
+                            service.daysOfWeekMask |= DaysOfWeekMask.of(d + 1);
+                        }
+                    }
+                    service.startDate = csv.get(start) != null ? LocalDate.parse(csv.get(start), GTFS_DATE) : null;
+                    service.endDate = csv.get(end) != null ? LocalDate.parse(csv.get(end), GTFS_DATE) : null;
+                }
+            }
+        }
+
+        void readCalendarDates() throws Exception {
+            try (GtfsCsvReader csv = open("calendar_dates.txt", false)) {
+                if (csv == null) {
+                    return;
+                }
+                int id = csv.column("service_id");
+                int date = csv.column("date");
+                int type = csv.column("exception_type");
+                while (csv.next()) {
+                    exceptions.computeIfAbsent(LocalDate.parse(csv.get(date), GTFS_DATE), k -> new HashMap<>())
+                            .put(serviceIndex(csv.get(id)), Integer.parseInt(csv.get(type)));
+                }
+            }
+        }
+
+        // Many feeds describe services with calendar_dates.txt only. A weekday on which such a service runs
+        // on most of its occurrences becomes part of a regular mask, and only the dates deviating from that
+        // pattern (extra dates, or missing ones recorded as removals) end up as special days
+        void inferCalendars() {
+            Map<Integer, List<LocalDate>> addedDates = new HashMap<>();
+            exceptions.forEach((date, byService) -> byService.forEach((serviceIndex, type) -> {
+                if (type == 1 && !services.get(serviceIndex).hasCalendar) {
+                    addedDates.computeIfAbsent(serviceIndex, k -> new ArrayList<>()).add(date);
+                }
+            }));
+            addedDates.forEach((serviceIndex, dates) -> {
+                Service service = services.get(serviceIndex);
+                LocalDate first = dates.getFirst(); // exceptions is sorted by date
+                LocalDate last = dates.getLast();
+                Set<LocalDate> added = new HashSet<>(dates);
+                int[] occurrences = new int[7];
+                int[] present = new int[7];
+                for (LocalDate d = first; !d.isAfter(last); d = d.plusDays(1)) {
+                    int day = d.getDayOfWeek().getValue() - 1;
+                    occurrences[day]++;
+                    if (added.contains(d)) {
+                        present[day]++;
+                    }
+                }
+                for (int day = 0; day < 7; day++) {
+                    if (occurrences[day] >= 2 && present[day] * 2 > occurrences[day]) {
+                        service.daysOfWeekMask |= DaysOfWeekMask.of(day + 1);
+                    }
+                }
+                if (service.daysOfWeekMask == 0) {
+                    return;
+                }
+                service.startDate = first;
+                service.endDate = last;
+                // dates covered by the inferred pattern are no longer exceptions
+                for (LocalDate d = first; !d.isAfter(last); d = d.plusDays(1)) {
+                    if (!DaysOfWeekMask.contains(service.daysOfWeekMask, d.getDayOfWeek().getValue())) {
+                        continue;
+                    }
+                    if (added.contains(d)) {
+                        Map<Integer, Integer> byService = exceptions.get(d);
+                        byService.remove(serviceIndex);
+                        if (byService.isEmpty()) {
+                            exceptions.remove(d);
+                        }
+                    } else {
+                        exceptions.computeIfAbsent(d, k -> new HashMap<>()).put(serviceIndex, 2);
+                    }
+                }
+            });
+        }
+
+        // Regular runs and templates carry weekdays only, so the period of a service is applied here: services
+        // that ended before today are dropped, and on the days of the next validityDays on which a service is out
+        // of its period it is recorded as removed, which makes them special days of its routes. Past that horizon
+        // a service runs on its weekdays whatever its end date, until the feed is imported again.
+        void applyServicePeriods() {
+            LocalDate today = LocalDate.now();
+            LocalDate horizon = today.plusDays(validityDays);
+            List<String> expired = new ArrayList<>();
+            List<String> truncated = new ArrayList<>();
+            for (int serviceIndex = 0; serviceIndex < services.size(); serviceIndex++) {
+                Service service = services.get(serviceIndex);
+                if (service.daysOfWeekMask == 0) {
+                    continue;
+                }
+                if (service.endDate != null && service.endDate.isBefore(today)) {
+                    service.daysOfWeekMask = 0;
+                    expired.add(service.id);
+                    continue;
+                }
+                if (service.endDate != null) {
+                    truncated.add(service.id);
+                }
+                for (LocalDate d = today; d.isBefore(horizon); d = d.plusDays(1)) {
+                    boolean outOfPeriod = (service.startDate != null && d.isBefore(service.startDate))
+                            || (service.endDate != null && d.isAfter(service.endDate));
+                    if (outOfPeriod && DaysOfWeekMask.contains(service.daysOfWeekMask, d.getDayOfWeek().getValue())) {
+                        exceptions.computeIfAbsent(d, k -> new HashMap<>()).putIfAbsent(serviceIndex, 2);
+                    }
+                }
+            }
+            if (!expired.isEmpty()) {
+                System.out.println("GTFS: " + expired.size() + " services ended before today, dropped: " + expired);
+            }
+            if (!truncated.isEmpty()) {
+                System.out.println("GTFS: end dates are applied until " + horizon + ", import the feed again by then; "
+                        + truncated.size() + " services would run past their end date: " + truncated);
+            }
+        }
+
+        void readTrips() throws Exception {
+            try (GtfsCsvReader csv = open("trips.txt", true)) {
+                int id = csv.column("trip_id");
+                int routeId = csv.column("route_id");
+                int serviceId = csv.column("service_id");
+                int headsign = csv.column("trip_headsign");
+                while (csv.next()) {
+                    GtfsRoute route = routes.get(csv.get(routeId));
+                    if (route == null) {
+                        System.out.println("GTFS: trip " + csv.get(id) + " references unknown route " + csv.get(routeId) + ". Skipping.");
+                        continue;
+                    }
+                    Trip trip = new Trip();
+                    trip.route = route;
+                    trip.serviceIndex = serviceIndex(csv.get(serviceId));
+                    trip.headsign = csv.get(headsign);
+                    trips.put(csv.get(id), trip);
+                }
+            }
+        }
+
+        void readFrequencies() throws Exception {
+            try (GtfsCsvReader csv = open("frequencies.txt", false)) {
+                if (csv == null) {
+                    return;
+                }
+                int tripId = csv.column("trip_id");
+                int start = csv.column("start_time");
+                int end = csv.column("end_time");
+                int headway = csv.column("headway_secs");
+                while (csv.next()) {
+                    frequencies.computeIfAbsent(csv.get(tripId), k -> new ArrayList<>()).add(new int[]{
+                            parseTime(csv.get(start)), parseTime(csv.get(end)), Integer.parseInt(csv.get(headway))
+                    });
+                }
+            }
+        }
+
+        // The big file: rows are folded into their trip as they are read and each trip is reduced to
+        // (pattern, start time) as soon as the next trip begins
+        void readStopTimes() throws Exception {
+            try (GtfsCsvReader csv = open("stop_times.txt", true)) {
+                int tripId = csv.column("trip_id");
+                int arrival = csv.column("arrival_time");
+                int departure = csv.column("departure_time");
+                int stopId = csv.column("stop_id");
+                int sequence = csv.column("stop_sequence");
+                TripStops current = new TripStops();
+                String currentTripId = null;
+                while (csv.next()) {
+                    stopTimeRows++;
+                    String rowTripId = csv.get(tripId);
+                    if (!rowTripId.equals(currentTripId)) {
+                        finishTrip(currentTripId, current);
+                        currentTripId = rowTripId;
+                        current.clear();
+                    }
+                    Long dbStopId = stopIds.get(csv.get(stopId));
+                    if (dbStopId == null) {
+                        continue;
+                    }
+                    String arrivalTime = csv.get(arrival);
+                    String departureTime = csv.get(departure);
+                    current.add(Integer.parseInt(csv.get(sequence)), dbStopId,
+                            arrivalTime != null ? parseTime(arrivalTime) : NO_TIME,
+                            departureTime != null ? parseTime(departureTime) : NO_TIME);
+                }
+                finishTrip(currentTripId, current);
+            }
+        }
+
+        void finishTrip(String tripId, TripStops stops) {
+            if (tripId == null) {
+                return;
+            }
+            Trip trip = trips.get(tripId);
+            if (trip == null || stops.size == 0) {
+                return;
+            }
+            if (trip.pattern != null) {
+                throw new IllegalArgumentException("GTFS stop_times.txt must be grouped by trip_id (trip " + tripId + " is split)");
+            }
+            stops.sortBySequence();
+            int start = stops.departures[0] != NO_TIME ? stops.departures[0] : stops.arrivals[0];
+            if (start == NO_TIME) {
+                System.out.println("GTFS: trip " + tripId + " has no time at its first stop. Skipping.");
+                return;
+            }
+
+            StringBuilder key = new StringBuilder(trip.route.id).append('|');
+            Set<Long> seen = new HashSet<>();
+            List<Long> patternStops = new ArrayList<>(stops.size);
+            List<Integer> patternOffsets = new ArrayList<>(stops.size);
+            for (int i = 0; i < stops.size; i++) {
+                if (!seen.add(stops.stopIds[i])) {
+                    continue; // a stop appears once per route (route_stop key is route + stop)
+                }
+                patternStops.add(stops.stopIds[i]);
+                int time = stops.arrivals[i] != NO_TIME ? stops.arrivals[i] : stops.departures[i];
+                patternOffsets.add(time == NO_TIME ? null : Math.round((time - start) / 60f));
+                key.append(stops.stopIds[i]).append(',');
+            }
+            if (patternStops.size() < 2) {
+                return;
+            }
+            Pattern pattern = patternsByKey.get(key.toString());
+            if (pattern == null) {
+                pattern = new Pattern();
+                pattern.route = trip.route;
+                pattern.stopIds = patternStops;
+                pattern.offsets = patternOffsets;
+                pattern.destination = trip.headsign != null ? trip.headsign : stopNameOrNull(patternStops.getLast());
+                // stop ids are stable across imports, so the same stop sequence gets the same key
+                pattern.gtfsId = trip.route.id + ":" + UUID.nameUUIDFromBytes(key.toString().getBytes(StandardCharsets.UTF_8));
+                patternsByKey.put(key.toString(), pattern);
+                patterns.add(pattern);
+                trip.route.patternCount++;
+            }
+            trip.pattern = pattern;
+            trip.startSeconds = start;
+        }
+
+        void writeRoutes() throws Exception {
+            Map<String, Long> existingIds = bulkImportRepo.findRouteIdsByGtfsId();
+            long[] ids = bulkImportRepo.allocateIds("route",
+                    (int) patterns.stream().filter(pattern -> !existingIds.containsKey(pattern.gtfsId)).count());
+            int next = 0;
+            List<Route> rows = new ArrayList<>(patterns.size());
+            for (Pattern pattern : patterns) {
+                GtfsRoute gtfsRoute = pattern.route;
+                Long existingId = existingIds.get(pattern.gtfsId);
+                pattern.routeId = existingId != null ? existingId : ids[next++];
+                Route route = new Route();
+                route.setId(pattern.routeId);
+                route.setGtfsId(pattern.gtfsId);
+                route.setNum(gtfsRoute.shortName != null ? gtfsRoute.shortName : gtfsRoute.id);
+                String name = gtfsRoute.longName != null ? gtfsRoute.longName : route.getNum();
+                // one Route per stop sequence: tell the variants of a GTFS route apart by destination
+                if (gtfsRoute.patternCount > 1 && pattern.destination != null) {
+                    name = name + " → " + pattern.destination;
+                }
+                route.setName(name);
+                route.setDescription(gtfsRoute.description != null ? gtfsRoute.description : "GTFS route " + gtfsRoute.id);
+                route.setStatus(RouteStatus.ACTIVE);
+                rows.add(route);
+            }
+            submitAll(rows, bulkImportRepo::stageGtfsRoutes);
+        }
+
+        void writeRouteStops() throws Exception {
+            List<BulkImportRepo.RouteStopRow> routeStops = new ArrayList<>(batchSize);
+            List<BulkImportRepo.RouteStopOffsetRow> offsets = new ArrayList<>(batchSize);
+            for (Pattern pattern : patterns) {
+                for (int i = 0; i < pattern.stopIds.size(); i++) {
+                    routeStops.add(new BulkImportRepo.RouteStopRow(pattern.routeId, pattern.stopIds.get(i), i + 1));
+                    Integer minutes = pattern.offsets.get(i);
+                    if (minutes != null) {
+                        offsets.add(new BulkImportRepo.RouteStopOffsetRow(pattern.routeId, pattern.stopIds.get(i), minutes));
+                    }
+                    if (routeStops.size() >= batchSize) {
+                        routeStopCount += routeStops.size();
+                        writer.submit(routeStops, bulkImportRepo::stageGtfsRouteStops);
+                        routeStops.clear();
+                    }
+                    if (offsets.size() >= batchSize) {
+                        writer.submit(offsets, bulkImportRepo::stageGtfsRouteStopOffsets);
+                        offsets.clear();
+                    }
+                }
+            }
+            routeStopCount += routeStops.size();
+            writer.submit(routeStops, bulkImportRepo::stageGtfsRouteStops);
+            writer.submit(offsets, bulkImportRepo::stageGtfsRouteStopOffsets);
+        }
+
+        void writeRunsAndTemplates() throws Exception {
+            List<Run> regular = new ArrayList<>();
+            List<Run> special = new ArrayList<>();
+            List<FrequencyTemplate> templates = new ArrayList<>();
+            for (Map.Entry<String, Trip> entry : trips.entrySet()) {
+                Trip trip = entry.getValue();
+                if (trip.pattern == null) {
+                    continue;
+                }
+                Service service = services.get(trip.serviceIndex);
+                List<int[]> tripFrequencies = frequencies.get(entry.getKey());
+                if (tripFrequencies == null) {
+                    if (service.daysOfWeekMask != 0) {
+                        regular.add(regularRun(trip, trip.startSeconds, service.daysOfWeekMask));
+                    }
+                } else if (service.daysOfWeekMask != 0) {
+                    for (int[] frequency : tripFrequencies) {
+                        FrequencyTemplate template = template(trip, frequency, service.daysOfWeekMask);
+                        if (template != null) {
+                            templates.add(template);
+                        }
+                    }
+                }
+            }
+            // An exception date is special only for the routes with a trip whose service it changes: they run
+            // exactly their trips operating that day, as SPECIAL runs
+            Map<Integer, List<LocalDate>> exceptionDates = new HashMap<>();
+            exceptions.forEach((date, byService) -> byService.keySet().forEach(serviceIndex ->
+                    exceptionDates.computeIfAbsent(serviceIndex, k -> new ArrayList<>()).add(date)));
+            Map<Pattern, List<Map.Entry<String, Trip>>> tripsByPattern = new HashMap<>();
+            for (Map.Entry<String, Trip> entry : trips.entrySet()) {
+                Trip trip = entry.getValue();
+                if (trip.pattern == null) {
+                    continue;
+                }
+                tripsByPattern.computeIfAbsent(trip.pattern, k -> new ArrayList<>()).add(entry);
+                for (LocalDate date : exceptionDates.getOrDefault(trip.serviceIndex, List.of())) {
+                    specialPatterns.computeIfAbsent(date, k -> new LinkedHashSet<>()).add(trip.pattern);
+                }
+            }
+            for (Map.Entry<LocalDate, Set<Pattern>> entry : new TreeMap<>(specialPatterns).entrySet()) {
+                LocalDate date = entry.getKey();
+                for (Pattern pattern : entry.getValue()) {
+                    routeSpecialDays.add(new RouteSpecialDay(pattern.routeId, date));
+                    for (Map.Entry<String, Trip> tripEntry : tripsByPattern.get(pattern)) {
+                        Trip trip = tripEntry.getValue();
+                        if (!operatesOn(trip.serviceIndex, date, exceptions.get(date))) {
+                            continue;
+                        }
+                        List<int[]> tripFrequencies = frequencies.get(tripEntry.getKey());
+                        if (tripFrequencies == null) {
+                            addSpecialRun(special, trip, trip.startSeconds, date);
+                        } else {
+                            for (int[] frequency : tripFrequencies) {
+                                for (int t = frequency[0]; t < frequency[1]; t += Math.max(frequency[2], 60)) {
+                                    addSpecialRun(special, trip, t, date);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            if (droppedRuns > 0) {
+                System.out.println("GTFS: " + droppedRuns + " special-date trips starting after midnight skipped (next day is not a special date of their route)");
+            }
+            numberRegularRuns(regular);
+            numberSpecialRuns(special);
+            runCount = regular.size() + special.size();
+            templateCount = templates.size();
+            submitAll(regular, bulkImportRepo::stageGtfsRuns);
+            submitAll(special, bulkImportRepo::stageGtfsRuns);
+            bulkImportRepo.stageGtfsFrequencyTemplates(templates);
+        }
+
+        boolean operatesOn(int serviceIndex, LocalDate date, Map<Integer, Integer> dateExceptions) {
+            Integer exception = dateExceptions.get(serviceIndex);
+            if (exception != null) {
+                return exception == 1;
+            }
+            Service service = services.get(serviceIndex);
+            return DaysOfWeekMask.contains(service.daysOfWeekMask, date.getDayOfWeek().getValue())
+                    && (service.startDate == null || !date.isBefore(service.startDate))
+                    && (service.endDate == null || !date.isAfter(service.endDate));
+        }
+
+        // GTFS times may pass 24:00; such trips start on the following day
+        Run regularRun(Trip trip, int startSeconds, int daysOfWeekMask) {
+            Run run = newRun(trip, startSeconds);
+            run.setScheduleType(ScheduleType.REGULAR);
+            run.setDaysOfWeekMask(startSeconds >= DAY_SECONDS ? nextDays(daysOfWeekMask) : daysOfWeekMask);
+            return run;
+        }
+
+        // A special date only runs the SPECIAL runs of its routes, so a trip passing midnight can only move to the
+        // next date when that date is special for its route too; otherwise it would replace the regular service of that day
+        void addSpecialRun(List<Run> special, Trip trip, int startSeconds, LocalDate date) {
+            LocalDate runDate = startSeconds >= DAY_SECONDS ? date.plusDays(1) : date;
+            if (!specialPatterns.getOrDefault(runDate, Set.of()).contains(trip.pattern)) {
+                droppedRuns++;
+                return;
+            }
+            Run run = newRun(trip, startSeconds);
+            run.setScheduleType(ScheduleType.SPECIAL);
+            run.setSpecificDate(runDate);
+            special.add(run);
+        }
+
+        Run newRun(Trip trip, int startSeconds) {
+            Route route = new Route();
+            route.setId(trip.pattern.routeId);
+            Run run = new Run();
+            run.setRoute(route);
+            run.setDestinationStopName(trip.headsign != null ? trip.headsign : trip.pattern.destination);
+            run.setStartTime(LocalTime.ofSecondOfDay(startSeconds % DAY_SECONDS));
+            return run;
+        }
+
+        // frequencies.txt end_time is exclusive; templates store their last departure
+        FrequencyTemplate template(Trip trip, int[] frequency, int daysOfWeekMask) {
+            int headwayMinutes = Math.min(Math.max(1, Math.round(frequency[2] / 60f)), FrequencyTemplate.MAX_HEADWAY_MINUTES);
+            int last = frequency[0] + ((frequency[1] - 1 - frequency[0]) / (headwayMinutes * 60)) * headwayMinutes * 60;
+            if (last < frequency[0] || frequency[0] >= DAY_SECONDS) {
+                return null;
+            }
+            Route route = new Route();
+            route.setId(trip.pattern.routeId);
+            FrequencyTemplate template = new FrequencyTemplate();
+            template.setRoute(route);
+            template.setDestinationStopName(trip.headsign != null ? trip.headsign : trip.pattern.destination);
+            template.setDaysOfWeekMask(daysOfWeekMask);
+            template.setStartTime(LocalTime.ofSecondOfDay(frequency[0]));
+            template.setEndTime(LocalTime.ofSecondOfDay(Math.min(last, DAY_SECONDS - 1))); // no wrap past midnight
+            template.setHeadwayMinutes(headwayMinutes);
+            return template;
+        }
+
+        // Same numbering as createRun: a run is numbered after the runs of its busiest day
+        void numberRegularRuns(List<Run> runs) {
+            runs.sort(Comparator.comparing((Run r) -> r.getRoute().getId()).thenComparing(Run::getStartTime));
+            long routeId = -1;
+            int[] perDay = new int[7];
+            for (Run run : runs) {
+                if (run.getRoute().getId() != routeId) {
+                    routeId = run.getRoute().getId();
+                    Arrays.fill(perDay, 0);
+                }
+                int runNum = 0;
+                for (int d = 0; d < 7; d++) {
+                    if (DaysOfWeekMask.contains(run.getDaysOfWeekMask(), d + 1)) {
+                        runNum = Math.max(runNum, perDay[d] + 1);
+                    }
+                }
+                for (int d = 0; d < 7; d++) {
+                    if (DaysOfWeekMask.contains(run.getDaysOfWeekMask(), d + 1)) {
+                        perDay[d] = runNum;
+                    }
+                }
+                run.setRunNum(runNum);
+            }
+        }
+
+        void numberSpecialRuns(List<Run> runs) {
+            runs.sort(Comparator.comparing((Run r) -> r.getRoute().getId())
+                    .thenComparing(Run::getSpecificDate)
+                    .thenComparing(Run::getStartTime));
+            long routeId = -1;
+            LocalDate date = null;
+            int runNum = 0;
+            for (Run run : runs) {
+                if (run.getRoute().getId() != routeId || !run.getSpecificDate().equals(date)) {
+                    routeId = run.getRoute().getId();
+                    date = run.getSpecificDate();
+                    runNum = 0;
+                }
+                run.setRunNum(++runNum);
+            }
+        }
+
+        <T> void submitAll(List<T> rows, Consumer<List<T>> insert) throws InterruptedException {
+            for (int from = 0; from < rows.size(); from += batchSize) {
+                writer.submit(rows.subList(from, Math.min(rows.size(), from + batchSize)), insert);
+            }
+        }
+
+        Service service(String serviceId) {
+            return services.get(serviceIndex(serviceId));
+        }
+
+        int serviceIndex(String serviceId) {
+            return serviceIndexes.computeIfAbsent(serviceId, k -> {
+                Service service = new Service();
+                service.id = serviceId;
+                services.add(service);
+                return services.size() - 1;
+            });
+        }
+
+        String stopNameOrNull(Long stopId) {
+            return stopNames.get(stopId);
+        }
+
+        GtfsCsvReader open(String name, boolean required) throws IOException {
+            ZipEntry entry = zip.getEntry(name);
+            if (entry == null) {
+                if (required) {
+                    throw new IllegalArgumentException("GTFS feed has no " + name);
+                }
+                return null;
+            }
+            return new GtfsCsvReader(zip.getInputStream(entry));
+        }
+    }
+
+    // "H:MM:SS", hours may exceed 23
+    private static int parseTime(String value) {
+        String time = value.trim();
+        int first = time.indexOf(':');
+        int second = time.indexOf(':', first + 1);
+        return Integer.parseInt(time, 0, first, 10) * 3600
+                + Integer.parseInt(time, first + 1, second, 10) * 60
+                + Integer.parseInt(time, second + 1, time.length(), 10);
+    }
+
+    // Shifts every day of the mask to the following day (Sunday wraps to Monday)
+    private static int nextDays(int daysOfWeekMask) {
+        return ((daysOfWeekMask << 1) | (daysOfWeekMask >>> 6)) & DaysOfWeekMask.ALL;
+    }
+
+    private static class GtfsRoute {
+        String id;
+        String shortName;
+        String longName;
+        String description;
+        int patternCount;
+    }
+
+    private static class Service {
+        String id;
+        boolean hasCalendar;
+        int daysOfWeekMask;
+        LocalDate startDate;
+        LocalDate endDate;
+    }
+
+    private static class Trip {
+        GtfsRoute route;
+        int serviceIndex;
+        String headsign;
+        Pattern pattern;
+        int startSeconds;
+    }
+
+    private static class Pattern {
+        GtfsRoute route;
+        List<Long> stopIds;
+        List<Integer> offsets; // minutes from the first stop, null when the feed gives no time
+        String destination;
+        String gtfsId; // GTFS route_id and a hash of the stop sequence, stable across imports
+        long routeId;
+    }
+
+    // Stop times of the trip being read, in growable primitive arrays reused from trip to trip
+    private static class TripStops {
+        int size;
+        int[] sequences = new int[64];
+        long[] stopIds = new long[64];
+        int[] arrivals = new int[64];
+        int[] departures = new int[64];
+
+        void add(int sequence, long stopId, int arrival, int departure) {
+            if (size == sequences.length) {
+                int capacity = size * 2;
+                sequences = Arrays.copyOf(sequences, capacity);
+                stopIds = Arrays.copyOf(stopIds, capacity);
+                arrivals = Arrays.copyOf(arrivals, capacity);
+                departures = Arrays.copyOf(departures, capacity);
+            }
+            sequences[size] = sequence;
+            stopIds[size] = stopId;
+            arrivals[size] = arrival;
+            departures[size] = departure;
+            size++;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        // Feeds are almost always already ordered; insertion sort is linear in that case
+        void sortBySequence() {
+            for (int i = 1; i < size; i++) {
+                for (int j = i; j > 0 && sequences[j - 1] > sequences[j]; j--) {
+                    swap(j - 1, j);
+                }
+            }
+        }
+
+        private void swap(int a, int b) {
+            int s = sequences[a]; sequences[a] = sequences[b]; sequences[b] = s;
+            long id = stopIds[a]; stopIds[a] = stopIds[b]; stopIds[b] = id;
+            int ar = arrivals[a]; arrivals[a] = arrivals[b]; arrivals[b] = ar;
+            int de = departures[a]; departures[a] = departures[b]; departures[b] = de;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package Transport_Urbain_Microservices.route_service.dataloader;
+
+import Transport_Urbain_Microservices.route_service.entity.ImportManifest;
+import Transport_Urbain_Microservices.route_service.repo.ImportManifestRepo;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+
+// Lets the loaders skip a source whose content hash matches the last successful import. A file whose size and
+// modification time match the last import is not read again: its recorded hash is reused.
+// The manifest row is saved in the loader's own transaction, so a failed import is retried on next boot.
+@Component
+@RequiredArgsConstructor
+public class ImportManifestTracker {
+
+    @Value("${app.import.enabled:true}")
+    private boolean importEnabled;
+
+    @Value("${app.import.force:false}")
+    private boolean forceImport;
+
+    private final ImportManifestRepo importManifestRepo;
+
+    // Off for databases filled otherwise, such as the one of the Spring tests
+    public boolean isEnabled() {
+        return importEnabled;
+    }
+
+    // The hash recorded for the source is reused while the file keeps the size and modification time it had then;
+    // otherwise the file is read and hashed.
+    public SourceFile hash(String source, Resource resource) throws IOException {
+        Long size = null;
+        Long lastModified = null;
+        try {
+            size = resource.contentLength();
+            lastModified = resource.lastModified();
+        } catch (IOException e) {
+            // not resolvable to a file or URL with metadata: always hashed
+        }
+        if (size != null && lastModified != null && lastModified > 0) {
+            Optional<ImportManifest> manifest = importManifestRepo.findById(source);
+            if (manifest.isPresent() && manifest.get().getFileHash() != null
+                    && size.equals(manifest.get().getFileSize())
+                    && lastModified.equals(manifest.get().getFileLastModified())) {
+                return new SourceFile(manifest.get().getFileHash(), size, lastModified);
+            }
+        }
+        return new SourceFile(digest(resource), size, lastModified);
+    }
+
+    private static String digest(Resource resource) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream is = resource.getInputStream()) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public Optional<String> recordedHash(String source) {
+        return importManifestRepo.findById(source).map(ImportManifest::getContentHash);
+    }
+
+    public boolean isUpToDate(String source, String contentHash) {
+        if (forceImport) {
+            return false;
+        }
+        return importManifestRepo.findById(source)
+                .map(manifest -> manifest.getContentHash().equals(contentHash))
+                .orElse(false);
+    }
+
+    // contentHash is what isUpToDate compares: the file hash, or a combination of it with the sources it depends on
+    public void record(String source, Resource resource, SourceFile file, String contentHash, long rowsWritten,
+                       long startedNanos) {
+        importManifestRepo.save(new ImportManifest(
+                source,
+                resource.getDescription(),
+                contentHash,
+                file.hash(),
+                file.size(),
+                file.lastModified(),
+                rowsWritten,
+                LocalDateTime.now(),
+                (System.nanoTime() - startedNanos) / 1_000_000
+        ));
+    }
+
+    // size and lastModified are null when the resource does not expose them
+    public record SourceFile(String hash, Long size, Long lastModified) {
+    }
+}
@@ -1,11 +1,14 @@
 package Transport_Urbain_Microservices.route_service.dataloader;
 
 import Transport_Urbain_Microservices.route_service.entity.Route;
-import Transport_Urbain_Microservices.route_service.entity.RouteStop;
+import Transport_Urbain_Microservices.route_service.entity.RouteShape;
+import Transport_Urbain_Microservices.route_service.entity.RouteShapeSource;
 import Transport_Urbain_Microservices.route_service.entity.Stop;
+import Transport_Urbain_Microservices.route_service.geo.EncodedPolyline;
+import Transport_Urbain_Microservices.route_service.repo.BulkImportRepo;
 import Transport_Urbain_Microservices.route_service.repo.RouteRepo;
-import Transport_Urbain_Microservices.route_service.repo.RouteStopRepo;
-import Transport_Urbain_Microservices.route_service.repo.StopRepo;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
@@ -17,124 +20,339 @@ import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Optional;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
 
+// Streams the OSM JSON one element at a time instead of reading the whole tree:
+// nodes are turned into stops and inserted in JDBC batches, bus relations are kept as
+// compact member lists and resolved once every node has been seen (relations may precede nodes).
+// Tagged nodes are stops; untagged ones are only way vertices. The way members of each relation,
+// either with inline geometry (Overpass "out geom") or as node lists, become the route's shape.
+// A city extract has millions of way vertices, so the file is read again for the ways the relations
+// draw and then for the nodes those ways and relations refer to: only their coordinates are kept.
 @Component
 @RequiredArgsConstructor
 @Order(1)
 public class OsmDataLoader implements ApplicationRunner {
 
+    public static final String SOURCE = "osm";
+    // Recorded once the shapes of the file are written, so databases imported before shapes existed get them once
+    public static final String SHAPES_SOURCE = "osm-shapes";
+
+    private static final long PENDING = -1L;
+
     @Value("${app.osm-file:classpath:osm-data.json}")
     private Resource osmFile; // configurable path
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    private final StopRepo stopRepo;
     private final RouteRepo routeRepo;
-    private final RouteStopRepo routeStopRepo;
+    private final BulkImportRepo bulkImportRepo;
+    private final ImportManifestTracker importManifest;
 
 
     @Override
     @Transactional
     public void run(ApplicationArguments args) throws Exception {
-        try (InputStream is = osmFile.getInputStream()) {
-            JsonNode root = objectMapper.readTree(is);
-            JsonNode elements = root.get("elements");
-            if (elements == null || !elements.isArray()) {
+        if (!importManifest.isEnabled()) {
+            System.out.println("OSM import skipped: app.import.enabled is false");
+            return;
+        }
+        long started = System.nanoTime();
+        ImportManifestTracker.SourceFile file = importManifest.hash(SOURCE, osmFile);
+        String contentHash = file.hash();
+        if (importManifest.isUpToDate(SOURCE, contentHash) && importManifest.isUpToDate(SHAPES_SOURCE, contentHash)) {
+            System.out.println("OSM import skipped: " + osmFile.getDescription() + " unchanged since last import");
+            return;
+        }
+
+        // osmId -> stop id for everything already in the DB, loaded in one query
+        Map<Long, Long> stopIdByOsmId = bulkImportRepo.findStopIdsByOsmId();
+        Map<Long, Long> routeIdByOsmId = bulkImportRepo.findRouteIdsByOsmId();
+        Set<Long> existingRouteOsmIds = new HashSet<>(routeIdByOsmId.keySet());
+
+        List<Stop> stopBatch = new ArrayList<>(bulkImportRepo.getBatchSize());
+        List<PendingRoute> pendingRoutes = new ArrayList<>();
+        List<PendingRoute> relations = new ArrayList<>(); // every bus relation, for the shapes
+        long elements = 0;
+        long nodes = 0;
+        long createdStops = 0;
+
+        try (ElementReader reader = new ElementReader()) {
+            if (!reader.found) {
                 System.out.println("No elements array found in OSM file");
                 return;
             }
 
-            // 1) index all nodes by OSM id
-            Map<Long, JsonNode> nodeByOsmId = new HashMap<>();
-            for (JsonNode el : elements) {
-                if ("node".equals(el.path("type").asText())) {
+            JsonNode el;
+            while ((el = reader.next()) != null) {
+                elements++;
+                String type = el.path("type").asText();
+
+                if ("node".equals(type)) {
+                    nodes++;
                     long osmId = el.path("id").asLong();
-                    nodeByOsmId.put(osmId, el);
+                    if (el.path("tags").isEmpty() || stopIdByOsmId.containsKey(osmId)) {
+                        continue;
+                    }
+                    String name = el.path("tags").path("name").asText(null);
+                    Stop stop = new Stop();
+                    stop.setOsmId(osmId);
+                    stop.setName(name != null ? name : "stop-" + osmId);
+                    stop.setLat(el.path("lat").asDouble());
+                    stop.setLon(el.path("lon").asDouble());
+                    stop.setAddress(el.path("tags").path("addr:full").asText(null));
+                    stopBatch.add(stop);
+                    stopIdByOsmId.put(osmId, PENDING);
+                    if (stopBatch.size() >= bulkImportRepo.getBatchSize()) {
+                        createdStops += flushStops(stopBatch, stopIdByOsmId);
+                    }
+                } else if ("relation".equals(type)) {
+                    PendingRoute pending = toPendingRoute(el);
+                    if (pending != null) {
+                        relations.add(pending);
+                        if (existingRouteOsmIds.add(pending.osmId)) {
+                            pendingRoutes.add(pending);
+                        }
+                    }
                 }
             }
+        }
+        createdStops += flushStops(stopBatch, stopIdByOsmId);
 
-            // 2) create or find stops for each node (persist osmId in DB)
-            Map<Long, Stop> osmToStop = new HashMap<>();
-            for (Map.Entry<Long, JsonNode> entry : nodeByOsmId.entrySet()) {
-                Long osmId = entry.getKey();
-                JsonNode node = entry.getValue();
-
-                double lat = node.path("lat").asDouble();
-                double lon = node.path("lon").asDouble();
-                String name = node.path("tags").path("name").asText(null);
-                String address = node.path("tags").path("addr:full").asText(null);
-
-                Optional<Stop> existing = stopRepo.findByOsmId(osmId);
-                Stop stop;
-                if (existing.isPresent()) {
-                    stop = existing.get();
-                } else {
-                    stop = new Stop();
-                    stop.setOsmId(osmId);
-                    stop.setName(name != null ? name : "stop-" + osmId);
-                    stop.setLat(lat);
-                    stop.setLon(lon);
-                    stop.setAddress(address);
-                    stop = stopRepo.save(stop);
+        // create routes and their route stops in order of members
+        List<BulkImportRepo.RouteStopRow> routeStopBatch = new ArrayList<>(bulkImportRepo.getBatchSize());
+        long createdRouteStops = 0;
+        for (PendingRoute pending : pendingRoutes) {
+            Route route = new Route();
+            route.setOsmId(pending.osmId);
+            route.setName(pending.name);
+            route.setNum(pending.num);
+            route.setDescription(pending.description);
+            route = routeRepo.save(route);
+            routeIdByOsmId.put(pending.osmId, route.getId());
+
+            Set<Long> seenStops = new HashSet<>();
+            int order = 0;
+            for (long refOsmId : pending.memberNodeRefs) {
+                Long stopId = stopIdByOsmId.get(refOsmId);
+                if (stopId == null) {
+                    // node not found among elements; skip or log
+                    System.out.println("Warning: member node " + refOsmId + " not found as element; skipping");
+                    continue;
+                }
+                if (!seenStops.add(stopId)) {
+                    continue; // a stop appears once per route (route_stop key is route + stop)
+                }
+                order++;
+                routeStopBatch.add(new BulkImportRepo.RouteStopRow(route.getId(), stopId, order));
+                if (routeStopBatch.size() >= bulkImportRepo.getBatchSize()) {
+                    createdRouteStops += routeStopBatch.size();
+                    bulkImportRepo.insertRouteStops(routeStopBatch);
+                    routeStopBatch.clear();
                 }
-                osmToStop.put(osmId, stop);
             }
+        }
+        createdRouteStops += routeStopBatch.size();
+        bulkImportRepo.insertRouteStops(routeStopBatch);
 
-            // 3) iterate relations and build routes
-            for (JsonNode el : elements) {
-                if (!"relation".equals(el.path("type").asText())) continue;
-
-                JsonNode tags = el.path("tags");
-                if (tags.isMissingNode()) continue;
-
-                // only bus routes (but you can remove this check to load other route types)
-                String routeType = tags.path("route").asText(null);
-                if (!"bus".equals(routeType)) continue;
-
-                Long relationOsmId = el.path("id").asLong();
-                String routeName = tags.path("name").asText(null);
-                String ref = tags.path("ref").asText(null);
-
-                Optional<Route> existingRouteOpt = routeRepo.findByOsmId(relationOsmId);
-
-                if (!existingRouteOpt.isPresent()) {
-                    Route route = new Route();
-                    route.setOsmId(relationOsmId);
-                    route.setName(routeName != null ? routeName : "route-" + el.path("id").asText());
-                    route.setNum(ref != null ? ref : (routeName != null ? routeName : "unknown"));
-                    route.setDescription(buildDescriptionFromTags(tags));
-                    route = routeRepo.save(route);
-
-                    // create route stops in order of members
-                    JsonNode members = el.path("members");
-                    if (members.isArray()) {
-                        int order = 0;
-                        for (JsonNode member : members) {
-                            if (!"node".equals(member.path("type").asText())) continue;
-                            long refOsmId = member.path("ref").asLong();
-                            Stop stop = osmToStop.get(refOsmId);
-                            if (stop == null) {
-                                // node not found among elements; skip or log
-                                System.out.println("Warning: member node " + refOsmId + " not found as element; skipping");
-                                continue;
-                            }
-                            order++;
-                            RouteStop routeStop = new RouteStop();
-                            routeStop.setRoute(route);
-                            routeStop.setStop(stop);
-                            routeStop.setStopOrder(order);
-                            routeStopRepo.save(routeStop);
+        // the ways drawn by the relations, when the relations do not carry their geometry inline
+        Set<Long> neededWays = new HashSet<>();
+        for (PendingRoute relation : relations) {
+            for (WayMember member : relation.wayMembers) {
+                if (member.geometry == null) {
+                    neededWays.add(member.ref);
+                }
+            }
+        }
+        Map<Long, long[]> wayNodeRefs = new HashMap<>();
+        Map<Long, double[]> wayGeometries = new HashMap<>();
+        if (!neededWays.isEmpty()) {
+            try (ElementReader reader = new ElementReader()) {
+                JsonNode el;
+                while ((el = reader.next()) != null) {
+                    long osmId = el.path("id").asLong();
+                    if (!"way".equals(el.path("type").asText()) || !neededWays.contains(osmId)) {
+                        continue;
+                    }
+                    if (el.has("geometry")) {
+                        wayGeometries.put(osmId, toPoints(el.path("geometry")));
+                    } else {
+                        JsonNode refs = el.path("nodes");
+                        long[] nodeRefs = new long[refs.size()];
+                        for (int i = 0; i < nodeRefs.length; i++) {
+                            nodeRefs[i] = refs.get(i).asLong();
                         }
+                        wayNodeRefs.put(osmId, nodeRefs);
                     }
                 }
             }
-            System.out.println("OSM import finished. Stops: " + osmToStop.size());
         }
+
+        // coordinates of the relations' member nodes and of the vertices of those ways only
+        Set<Long> neededNodes = new HashSet<>();
+        for (PendingRoute relation : relations) {
+            for (long ref : relation.memberNodeRefs) {
+                neededNodes.add(ref);
+            }
+        }
+        for (long[] nodeRefs : wayNodeRefs.values()) {
+            for (long ref : nodeRefs) {
+                neededNodes.add(ref);
+            }
+        }
+        Map<Long, double[]> nodeCoordinates = new HashMap<>();
+        if (!neededNodes.isEmpty()) {
+            try (ElementReader reader = new ElementReader()) {
+                JsonNode el;
+                while ((el = reader.next()) != null) {
+                    long osmId = el.path("id").asLong();
+                    if ("node".equals(el.path("type").asText()) && neededNodes.contains(osmId)) {
+                        nodeCoordinates.put(osmId, new double[]{el.path("lat").asDouble(), el.path("lon").asDouble()});
+                    }
+                }
+            }
+        }
+
+        // shapes of every route in the file, replacing the stored ones
+        Set<Long> shapedRouteIds = new HashSet<>();
+        List<RouteShape> shapeBatch = new ArrayList<>(bulkImportRepo.getBatchSize());
+        long writtenShapes = 0;
+        for (PendingRoute relation : relations) {
+            Long routeId = routeIdByOsmId.get(relation.osmId);
+            if (routeId == null || !shapedRouteIds.add(routeId)) {
+                continue;
+            }
+            shapeBatch.add(toShape(routeId, relation, nodeCoordinates, wayNodeRefs, wayGeometries));
+            if (shapeBatch.size() >= bulkImportRepo.getBatchSize()) {
+                writtenShapes += shapeBatch.size();
+                bulkImportRepo.upsertRouteShapes(shapeBatch);
+                shapeBatch.clear();
+            }
+        }
+        writtenShapes += shapeBatch.size();
+        bulkImportRepo.upsertRouteShapes(shapeBatch);
+
+        bulkImportRepo.evictSecondLevelCache();
+        importManifest.record(SOURCE, osmFile, file, contentHash, createdStops + pendingRoutes.size() + createdRouteStops, started);
+        importManifest.record(SHAPES_SOURCE, osmFile, file, contentHash, writtenShapes, started);
+
+        double seconds = Math.max((System.nanoTime() - started) / 1_000_000_000.0, 0.001);
+        System.out.printf("OSM import finished. Elements: %d (%d nodes), new stops: %d, new routes: %d, shapes written: %d in %.2fs (%.0f elements/sec)%n",
+                elements, nodes, createdStops, pendingRoutes.size(), writtenShapes, seconds, elements / seconds);
+    }
+
+    private long flushStops(List<Stop> batch, Map<Long, Long> stopIdByOsmId) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        bulkImportRepo.insertStops(batch);
+        List<Long> osmIds = batch.stream().map(Stop::getOsmId).toList();
+        stopIdByOsmId.putAll(bulkImportRepo.findStopIdsByOsmIds(osmIds));
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+
+    private boolean moveToElementsArray(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("elements".equals(field) && value == JsonToken.START_ARRAY) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    // only bus routes (but you can remove this check to load other route types)
+    private PendingRoute toPendingRoute(JsonNode el) {
+        JsonNode tags = el.path("tags");
+        if (tags.isMissingNode()) return null;
+        if (!"bus".equals(tags.path("route").asText(null))) return null;
+
+        String routeName = tags.path("name").asText(null);
+        String ref = tags.path("ref").asText(null);
+
+        PendingRoute pending = new PendingRoute();
+        pending.osmId = el.path("id").asLong();
+        pending.name = routeName != null ? routeName : "route-" + el.path("id").asText();
+        pending.num = ref != null ? ref : (routeName != null ? routeName : "unknown");
+        pending.description = buildDescriptionFromTags(tags);
+
+        JsonNode members = el.path("members");
+        long[] refs = new long[members.size()];
+        int count = 0;
+        for (JsonNode member : members) {
+            String memberType = member.path("type").asText();
+            if ("node".equals(memberType)) {
+                refs[count++] = member.path("ref").asLong();
+            } else if ("way".equals(memberType) && isTravelledWay(member.path("role").asText(""))) {
+                WayMember way = new WayMember();
+                way.ref = member.path("ref").asLong();
+                way.geometry = member.has("geometry") ? toPoints(member.path("geometry")) : null;
+                pending.wayMembers.add(way);
+            }
+        }
+        pending.memberNodeRefs = Arrays.copyOf(refs, count);
+        return pending;
+    }
+
+    // PTv2 relations list the street ways with an empty role; platforms and stop areas may be ways too
+    private static boolean isTravelledWay(String role) {
+        return role.isEmpty() || "forward".equals(role) || "backward".equals(role);
+    }
+
+    private static double[] toPoints(JsonNode geometry) {
+        double[] points = new double[geometry.size() * 2];
+        int count = 0;
+        for (JsonNode point : geometry) {
+            if (point.has("lat") && point.has("lon")) { // Overpass writes null for nodes outside the bounding box
+                points[count++] = point.path("lat").asDouble();
+                points[count++] = point.path("lon").asDouble();
+            }
+        }
+        return Arrays.copyOf(points, count);
+    }
+
+    // Falls back to the route's stops in member order when the relation's ways cannot be drawn
+    private RouteShape toShape(long routeId, PendingRoute relation, Map<Long, double[]> nodeCoordinates,
+                               Map<Long, long[]> wayNodeRefs, Map<Long, double[]> wayGeometries) {
+        List<double[]> ways = new ArrayList<>(relation.wayMembers.size());
+        for (WayMember member : relation.wayMembers) {
+            double[] geometry = member.geometry != null ? member.geometry : wayGeometries.get(member.ref);
+            if (geometry == null && wayNodeRefs.containsKey(member.ref)) {
+                geometry = toPoints(wayNodeRefs.get(member.ref), nodeCoordinates, false);
+            }
+            ways.add(geometry);
+        }
+        double[] points = OsmRouteShapeBuilder.join(ways);
+        RouteShapeSource source = RouteShapeSource.WAYS;
+        if (points.length < 4) {
+            points = toPoints(relation.memberNodeRefs, nodeCoordinates, true);
+            source = RouteShapeSource.STOPS;
+        }
+        return new RouteShape(routeId, EncodedPolyline.encode(points), points.length / 2, source);
+    }
+
+    private static double[] toPoints(long[] nodeRefs, Map<Long, double[]> nodeCoordinates, boolean distinct) {
+        double[] points = new double[nodeRefs.length * 2];
+        Set<Long> seen = new HashSet<>();
+        int count = 0;
+        for (long ref : nodeRefs) {
+            double[] coordinates = nodeCoordinates.get(ref);
+            if (coordinates == null || (distinct && !seen.add(ref))) {
+                continue; // a stop appears once per route, as in route_stop
+            }
+            points[count++] = coordinates[0];
+            points[count++] = coordinates[1];
+        }
+        return Arrays.copyOf(points, count);
     }
 
     private String buildDescriptionFromTags(JsonNode tags) {
@@ -145,4 +363,38 @@ public class OsmDataLoader implements ApplicationRunner {
         }
         return tags.path("description").asText(null);
     }
+
+    // One pass over the elements array of the file
+    private class ElementReader implements Closeable {
+        private final JsonParser parser;
+        private final boolean found;
+
+        ElementReader() throws IOException {
+            parser = objectMapper.getFactory().createParser(osmFile.getInputStream());
+            found = moveToElementsArray(parser);
+        }
+
+        JsonNode next() throws IOException {
+            return found && parser.nextToken() == JsonToken.START_OBJECT ? objectMapper.readTree(parser) : null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+
+    private static class PendingRoute {
+        long osmId;
+        String name;
+        String num;
+        String description;
+        long[] memberNodeRefs;
+        List<WayMember> wayMembers = new ArrayList<>();
+    }
+
+    private static class WayMember {
+        long ref;
+        double[] geometry; // inline member geometry, when the file has it
+    }
 }
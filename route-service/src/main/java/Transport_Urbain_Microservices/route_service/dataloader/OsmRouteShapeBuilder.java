@@ -0,0 +1,74 @@
+package Transport_Urbain_Microservices.route_service.dataloader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Joins the way members of a route relation into one line of interleaved lat, lon points.
+// Members are listed in travel order but each way may be drawn in either direction, so every way is turned
+// to start where the previous one ended (the first one to end next to the second); the shared node is kept once.
+// Gaps between ways (members missing from the extract) are bridged by a straight segment.
+final class OsmRouteShapeBuilder {
+
+    private OsmRouteShapeBuilder() {
+    }
+
+    static double[] join(List<double[]> ways) {
+        List<double[]> usable = new ArrayList<>(ways.size());
+        for (double[] way : ways) {
+            if (way != null && way.length >= 2) {
+                usable.add(way);
+            }
+        }
+        if (usable.isEmpty()) {
+            return new double[0];
+        }
+
+        int total = 0;
+        for (double[] way : usable) {
+            total += way.length;
+        }
+        double[] line = new double[total];
+        int count = 0;
+        for (int w = 0; w < usable.size(); w++) {
+            double[] way = usable.get(w);
+            boolean reverse;
+            if (w == 0) {
+                double[] next = usable.size() > 1 ? usable.get(1) : null;
+                reverse = next != null && distanceToEnds(way, 0, next) < distanceToEnds(way, way.length - 2, next);
+            } else {
+                reverse = distanceSquared(line, count - 2, way, way.length - 2) < distanceSquared(line, count - 2, way, 0);
+            }
+            if (reverse) {
+                way = reversed(way);
+            }
+            int from = 0;
+            if (count > 0 && line[count - 2] == way[0] && line[count - 1] == way[1]) {
+                from = 2; // same node as the end of the previous way
+            }
+            System.arraycopy(way, from, line, count, way.length - from);
+            count += way.length - from;
+        }
+        return Arrays.copyOf(line, count);
+    }
+
+    private static double distanceToEnds(double[] a, int i, double[] way) {
+        return Math.min(distanceSquared(a, i, way, 0), distanceSquared(a, i, way, way.length - 2));
+    }
+
+    // In squared degrees: only used to compare the ends of neighbouring ways
+    private static double distanceSquared(double[] a, int i, double[] b, int j) {
+        double dLat = a[i] - b[j];
+        double dLon = a[i + 1] - b[j + 1];
+        return dLat * dLat + dLon * dLon;
+    }
+
+    private static double[] reversed(double[] way) {
+        double[] reversed = new double[way.length];
+        for (int i = 0; i < way.length; i += 2) {
+            reversed[way.length - 2 - i] = way[i];
+            reversed[way.length - 1 - i] = way[i + 1];
+        }
+        return reversed;
+    }
+}
@@ -0,0 +1,52 @@
+package Transport_Urbain_Microservices.route_service.dataloader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+// Runs JDBC batch writes on a small pool. At most two batches per thread are queued,
+// so the reader is throttled instead of piling rows up in memory.
+class ParallelBatchWriter implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final List<Future<?>> pending = new ArrayList<>();
+
+    ParallelBatchWriter(int threads) {
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.inFlight = new Semaphore(threads * 2);
+    }
+
+    // The list is copied, so callers can clear and reuse their buffer
+    <T> void submit(List<T> batch, Consumer<List<T>> writer) throws InterruptedException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<T> rows = new ArrayList<>(batch);
+        inFlight.acquire();
+        pending.add(executor.submit(() -> {
+            try {
+                writer.accept(rows);
+            } finally {
+                inFlight.release();
+            }
+        }));
+    }
+
+    // Waits for every submitted batch; the first failure is rethrown
+    void awaitAll() throws InterruptedException, ExecutionException {
+        try {
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } finally {
+            pending.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
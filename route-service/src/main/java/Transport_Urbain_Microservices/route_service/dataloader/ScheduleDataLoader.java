@@ -15,37 +15,52 @@ import org.springframework.transaction.annotation.Transactional;
 import java.io.InputStream;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
 
+// Set-based import: routes and stop ids are preloaded once, offsets are written with JDBC batches.
+// Each route's headway becomes a single FrequencyTemplate instead of one Run row per departure; the runs earlier
+// versions stored for it, one per departure, are replaced by the template.
 @Component
 @Order(2)
 public class ScheduleDataLoader implements ApplicationRunner {
+    public static final String SOURCE = "schedule";
+
     @Value("${app.schedule-file:classpath:schedules.json}")
     private Resource scheduleFile;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     private final RouteRepo routeRepo;
-    private final StopRepo stopRepo;
-    private final RunRepo runRepo;
-    private final RouteStopOffsetRepo routeStopOffsetRepo;
+    private final FrequencyTemplateRepo frequencyTemplateRepo;
+    private final BulkImportRepo bulkImportRepo;
+    private final ImportManifestTracker importManifest;
 
     public ScheduleDataLoader(RouteRepo routeRepo,
-                              StopRepo stopRepo,
-                              RunRepo runRepo,
-                              RouteStopOffsetRepo routeStopOffsetRepo) {
+                              FrequencyTemplateRepo frequencyTemplateRepo,
+                              BulkImportRepo bulkImportRepo,
+                              ImportManifestTracker importManifest) {
         this.routeRepo = routeRepo;
-        this.stopRepo = stopRepo;
-        this.runRepo = runRepo;
-        this.routeStopOffsetRepo = routeStopOffsetRepo;
+        this.frequencyTemplateRepo = frequencyTemplateRepo;
+        this.bulkImportRepo = bulkImportRepo;
+        this.importManifest = importManifest;
     }
 
     @Override
     @Transactional
     public void run(ApplicationArguments args) throws Exception {
+        if (!importManifest.isEnabled()) {
+            System.out.println("Schedule import skipped: app.import.enabled is false");
+            return;
+        }
+        long started = System.nanoTime();
+        // Schedules reference OSM routes and stops, so a new OSM import also invalidates them
+        ImportManifestTracker.SourceFile file = importManifest.hash(SOURCE, scheduleFile);
+        String contentHash = file.hash() + ":"
+                + importManifest.recordedHash(OsmDataLoader.SOURCE).orElse("");
+        if (importManifest.isUpToDate(SOURCE, contentHash)) {
+            System.out.println("Schedule import skipped: " + scheduleFile.getDescription() + " unchanged since last import");
+            return;
+        }
         try (InputStream is = scheduleFile.getInputStream()) {
             JsonNode root = objectMapper.readTree(is);
             JsonNode routesNode = root.path("routes");
@@ -54,6 +69,21 @@ public class ScheduleDataLoader implements ApplicationRunner {
                 return;
             }
 
+            Map<Long, Route> routesByOsmId = new HashMap<>();
+            for (Route route : routeRepo.findAll()) {
+                if (route.getOsmId() != null) {
+                    routesByOsmId.put(route.getOsmId(), route);
+                }
+            }
+            Map<Long, Long> stopIdByOsmId = bulkImportRepo.findStopIdsByOsmId();
+            Set<Long> routesWithRegularRuns = bulkImportRepo.findRouteIdsWithRegularRuns();
+            Set<Long> routesWithTemplates = new HashSet<>(frequencyTemplateRepo.findRouteIdsWithTemplates());
+
+            List<BulkImportRepo.RouteStopOffsetRow> offsetBatch = new ArrayList<>();
+            List<FrequencyTemplate> templates = new ArrayList<>();
+            List<FrequencyTemplate> replacing = new ArrayList<>(); // of routes whose runs were stored one by one
+            long offsetRows = 0;
+
             Iterator<Map.Entry<String, JsonNode>> routesIter = routesNode.fields();
             while (routesIter.hasNext()) {
                 Map.Entry<String, JsonNode> entry = routesIter.next();
@@ -69,15 +99,16 @@ public class ScheduleDataLoader implements ApplicationRunner {
                 }
 
                 // Find route by osmId
-                Optional<Route> routeOpt = routeRepo.findByOsmId(relationOsmId);
-                if (!routeOpt.isPresent()) {
+                Route route = routesByOsmId.get(relationOsmId);
+                if (route == null) {
                     System.out.println("Schedule: route with osmId " + relationOsmId + " not found in DB. Skipping.");
                     continue;
                 }
-                Route route = routeOpt.get();
 
                 JsonNode stopsNode = routeJson.path("stops");
                 if (stopsNode.isArray()) {
+                    // last value wins when a stop is listed twice, as with the previous per-row upsert
+                    Map<Long, Integer> minutesByStopId = new LinkedHashMap<>();
                     for (JsonNode stopJson : stopsNode) {
                         Long stopOsmId = stopJson.path("id").asLong();
                         Integer minutes = stopJson.path("arrival_time_from_start_minutes").isNumber()
@@ -89,28 +120,19 @@ public class ScheduleDataLoader implements ApplicationRunner {
                             continue;
                         }
 
-                        Optional<Stop> stopOpt = stopRepo.findByOsmId(stopOsmId);
-                        if (!stopOpt.isPresent()) {
+                        Long stopId = stopIdByOsmId.get(stopOsmId);
+                        if (stopId == null) {
                             System.out.println("Schedule: stop osmId " + stopOsmId + " not found in DB for route " + relationOsmId + ". Skipping offset creation.");
                             continue;
                         }
-                        Stop stop = stopOpt.get();
-
-                        // Upsert RouteStopOffset
-                        Optional<RouteStopOffset> maybeOffset = routeStopOffsetRepo.findByRouteAndStop(route, stop);
-                        if (maybeOffset.isPresent()) {
-                            RouteStopOffset offset = maybeOffset.get();
-                            if (!Integer.valueOf(minutes).equals(offset.getCumulativeMinutesFromStart())) {
-                                offset.setCumulativeMinutesFromStart(minutes);
-                                routeStopOffsetRepo.save(offset);
-                            }
-                        } else {
-                            RouteStopOffset newOffset = new RouteStopOffset();
-                            newOffset.setRoute(route);
-                            newOffset.setStop(stop);
-                            newOffset.setCumulativeMinutesFromStart(minutes);
-                            routeStopOffsetRepo.save(newOffset);
-                        }
+                        minutesByStopId.put(stopId, minutes);
+                    }
+                    minutesByStopId.forEach((stopId, minutes) ->
+                            offsetBatch.add(new BulkImportRepo.RouteStopOffsetRow(route.getId(), stopId, minutes)));
+                    if (offsetBatch.size() >= bulkImportRepo.getBatchSize()) {
+                        offsetRows += offsetBatch.size();
+                        bulkImportRepo.upsertRouteStopOffsets(offsetBatch);
+                        offsetBatch.clear();
                     }
                 } else {
                     System.out.println("Schedule: no stops array for route " + relationOsmId);
@@ -125,6 +147,10 @@ public class ScheduleDataLoader implements ApplicationRunner {
                     System.out.println("Schedule: missing operating_hours or frequency_minutes for route " + relationOsmId + ". Skipping runs creation.");
                     continue;
                 }
+                if (frequencyMinutes < 1 || frequencyMinutes > FrequencyTemplate.MAX_HEADWAY_MINUTES) {
+                    System.out.println("Schedule: frequency_minutes " + frequencyMinutes + " out of range for route " + relationOsmId + ". Skipping runs creation.");
+                    continue;
+                }
 
                 LocalTime startTime;
                 LocalTime endTime;
@@ -138,38 +164,39 @@ public class ScheduleDataLoader implements ApplicationRunner {
                     continue;
                 }
 
-                boolean hasAnyRegular = runRepo.existsByRouteAndScheduleType(route, ScheduleType.REGULAR);
-                if (hasAnyRegular) {
-                    System.out.println("Schedule: route " + relationOsmId + " already has regular runs. Use app.osm.force-refresh-schedules=true to replace. Skipping run creation.");
+                if (routesWithTemplates.contains(route.getId())) {
+                    System.out.println("Schedule: route " + relationOsmId + " already has a frequency template. Skipping run creation.");
                     continue;
                 }
 
-                Map<Integer, Integer> dayRunNumCounter = new HashMap<>(); // day -> next runNum
-
-                for (int day = 1; day <= 7; day++) {
-                    LocalTime t = startTime;
-                    int runNum = 0;
-                    while (!t.isAfter(endTime)) {
-                        runNum++;
-                        // Dedup check: exist by route, scheduleType REGULAR, dayOfWeek day, startTime t
-                        boolean exists = runRepo.existsByRouteAndScheduleTypeAndDayOfWeekAndStartTime(route, ScheduleType.REGULAR, day, t);
-                        if (!exists) {
-                            Run run = new Run();
-                            run.setRoute(route);
-                            run.setDestinationStopName(routeJson.path("to").asText(null)); // optional
-                            run.setScheduleType(ScheduleType.REGULAR);
-                            run.setDayOfWeek(day);
-                            run.setSpecificDate(null);
-                            run.setRunNum(runNum);
-                            run.setStartTime(t);
-                            runRepo.save(run);
-                        }
-                        t = t.plusMinutes(frequencyMinutes);
-                    }
+                FrequencyTemplate template = new FrequencyTemplate();
+                template.setRoute(route);
+                template.setDestinationStopName(routeJson.path("to").asText(null)); // optional
+                template.setDaysOfWeekMask(0x7F); // every day of the week
+                template.setStartTime(startTime);
+                template.setEndTime(endTime);
+                template.setHeadwayMinutes(frequencyMinutes);
+                templates.add(template);
+                routesWithTemplates.add(route.getId());
+                if (routesWithRegularRuns.contains(route.getId())) {
+                    replacing.add(template);
                 }
 
                 System.out.println("Schedule: processed route " + relationOsmId + " (" + route.getName() + ")");
             }
+
+            offsetRows += offsetBatch.size();
+            bulkImportRepo.upsertRouteStopOffsets(offsetBatch);
+            int replacedRuns = replacing.isEmpty() ? 0 : bulkImportRepo.deleteRunsExpandedFrom(replacing);
+            frequencyTemplateRepo.saveAll(templates);
+            bulkImportRepo.evictSecondLevelCache();
+
+            importManifest.record(SOURCE, scheduleFile, file, contentHash, offsetRows + templates.size(), started);
+
+            double seconds = Math.max((System.nanoTime() - started) / 1_000_000_000.0, 0.001);
+            System.out.printf("Schedule import finished. Offsets written: %d, new frequency templates: %d " +
+                            "(replacing %d runs of %d routes) in %.2fs%n",
+                    offsetRows, templates.size(), replacedRuns, replacing.size(), seconds);
         }
     }
 }
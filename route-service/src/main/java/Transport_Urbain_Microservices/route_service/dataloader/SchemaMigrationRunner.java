@@ -0,0 +1,84 @@
+package Transport_Urbain_Microservices.route_service.dataloader;
+
+import Transport_Urbain_Microservices.route_service.timetable.NetworkChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+// Moves data of tables created by earlier versions into the current columns, before the loaders and the
+// timetable snapshot read them: ddl-auto only adds the new columns. Each step checks the schema and the
+// rows first, so it does nothing once applied; legacy columns are kept unless app.migration.drop-legacy-columns
+// is set.
+@Component
+@RequiredArgsConstructor
+@Order(0)
+public class SchemaMigrationRunner implements ApplicationRunner {
+
+    // Dropping a legacy column cannot be undone, so it waits for an explicit opt-in once the migration is trusted
+    @Value("${app.migration.drop-legacy-columns:false}")
+    private boolean dropLegacyColumns;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    @Transactional
+    public void run(ApplicationArguments args) {
+        int migrated = migrateRunDayOfWeek();
+        dropUnusedIndexes();
+        if (migrated > 0) {
+            eventPublisher.publishEvent(new NetworkChangedEvent("schema migrated"));
+        }
+    }
+
+    // Run.dayOfWeek (1-7) became Run.daysOfWeekMask. Rows still carrying only the old column get its bit, and
+    // the copies of a regular run that earlier versions stored once per day are merged into one row with the
+    // union of their days: the lowest id is kept, the other copies are deleted and the regular run number
+    // counters are dropped, to be seeded again from the merged rows.
+    private int migrateRunDayOfWeek() {
+        if (!columnExists("run", "day_of_week")) {
+            return 0;
+        }
+        int migrated = jdbcTemplate.update("update run set days_of_week_mask = 1 << (day_of_week - 1) " +
+                "where days_of_week_mask is null and day_of_week between 1 and 7");
+        if (migrated > 0) {
+            jdbcTemplate.update("update run r set days_of_week_mask = m.mask from (" +
+                    "select min(id) as id, bit_or(days_of_week_mask) as mask from run " +
+                    "where schedule_type = 'REGULAR' and days_of_week_mask is not null " +
+                    "group by route_id, start_time, destination_stop_name, run_num having count(*) > 1) m " +
+                    "where r.id = m.id");
+            int merged = jdbcTemplate.update("delete from run r where r.schedule_type = 'REGULAR' " +
+                    "and r.days_of_week_mask is not null and exists (select 1 from run k " +
+                    "where k.schedule_type = 'REGULAR' and k.days_of_week_mask is not null and k.id < r.id " +
+                    "and k.route_id = r.route_id and k.start_time = r.start_time and k.run_num = r.run_num " +
+                    "and k.destination_stop_name is not distinct from r.destination_stop_name)");
+            jdbcTemplate.update("delete from run_num_counter where scope like 'day-%'");
+            System.out.println("Schema migration: " + migrated + " runs moved from day_of_week to days_of_week_mask, "
+                    + merged + " per-day copies merged");
+        }
+        if (dropLegacyColumns) {
+            jdbcTemplate.execute("alter table run drop column day_of_week");
+            System.out.println("Schema migration: run.day_of_week dropped");
+        }
+        return migrated;
+    }
+
+    // Indexes declared by an earlier version that no query reads; ddl-auto never drops an index itself
+    private void dropUnusedIndexes() {
+        jdbcTemplate.execute("drop index if exists idx_run_type_date");
+        jdbcTemplate.execute("drop index if exists idx_route_stop_stop");
+    }
+
+    private boolean columnExists(String table, String column) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists (select 1 from information_schema.columns " +
+                        "where table_schema = current_schema() and table_name = ? and column_name = ?)",
+                Boolean.class, table, column));
+    }
+}
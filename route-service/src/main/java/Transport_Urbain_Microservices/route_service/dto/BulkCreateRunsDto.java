@@ -0,0 +1,35 @@
+package Transport_Urbain_Microservices.route_service.dto;
+
+import Transport_Urbain_Microservices.route_service.entity.ScheduleType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+// Either an explicit list of runs (any routes) or a headway spec, not both
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkCreateRunsDto {
+
+    private List<CreateRunDTO> runs;
+
+    private HeadwaySpec headway;
+
+    // One run every headwayMinutes from firstDeparture up to lastDeparture included
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class HeadwaySpec {
+        private Long routeId;
+        private ScheduleType scheduleType;
+        private List<Integer> daysOfWeek; // REGULAR
+        private LocalDate specificDate; // SPECIAL
+        private LocalTime firstDeparture;
+        private LocalTime lastDeparture;
+        private Integer headwayMinutes;
+    }
+}
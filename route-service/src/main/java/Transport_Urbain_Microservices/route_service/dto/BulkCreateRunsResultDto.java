@@ -0,0 +1,15 @@
+package Transport_Urbain_Microservices.route_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkCreateRunsResultDto {
+    private int created;
+    private List<Long> runIds; // in request order
+}
@@ -26,6 +26,8 @@ public class CreateRunDTO {
     @Max(value = 7, message = "Day of week must be between 1 and 7")
     private Integer dayOfWeek;
 
+    private List<Integer> daysOfWeek; // optional, creates one regular run operating on all of these days
+
     private LocalDate specificDate;
 
     @NotNull(message = "Start time is required")
@@ -0,0 +1,17 @@
+package Transport_Urbain_Microservices.route_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Departures are identified by runId, routeId and departureTime (runId is negative for frequency-based runs)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DepartureBoardUpdateDto {
+    private Long stopId;
+    private List<StopDepartureDto> changed; // new departures, or departures whose predicted time changed
+    private List<StopDepartureDto> removed;
+}
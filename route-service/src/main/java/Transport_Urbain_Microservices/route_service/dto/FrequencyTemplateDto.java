@@ -0,0 +1,21 @@
+package Transport_Urbain_Microservices.route_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FrequencyTemplateDto {
+    private Long id;
+    private Long routeId;
+    private List<Integer> daysOfWeek;
+    private LocalTime startTime;
+    private LocalTime endTime;
+    private Integer headwayMinutes;
+    private String destinationStopName;
+}
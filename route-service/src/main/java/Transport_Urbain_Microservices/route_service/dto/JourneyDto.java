@@ -0,0 +1,38 @@
+package Transport_Urbain_Microservices.route_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JourneyDto {
+    private Long fromStopId;
+    private Long toStopId;
+    private LocalDate date;
+    private LocalTime departureTime;
+    private LocalTime arrivalTime;
+    private Integer transfers;
+    private List<LegDto> legs;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LegDto {
+        private Long runId;
+        private Long routeId;
+        private String routeNum;
+        private String routeName;
+        private Long fromStopId;
+        private String fromStopName;
+        private Long toStopId;
+        private String toStopName;
+        private LocalTime departureTime;
+        private LocalTime arrivalTime;
+    }
+}
@@ -0,0 +1,17 @@
+package Transport_Urbain_Microservices.route_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyStopDto {
+    private Long id;
+    private String name;
+    private Double lat;
+    private Double lon;
+    private String address;
+    private Double distanceMeters;
+}
@@ -0,0 +1,17 @@
+package Transport_Urbain_Microservices.route_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NetworkStatusDto {
+    private long servedVersion;
+    private boolean held; // committed edits are staged instead of published
+    private long unpublishedChanges;
+    private List<NetworkVersionDto> retainedVersions; // newest first
+}
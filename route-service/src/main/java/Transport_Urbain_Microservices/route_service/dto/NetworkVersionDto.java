@@ -0,0 +1,18 @@
+package Transport_Urbain_Microservices.route_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NetworkVersionDto {
+    private long version;
+    private Instant builtAt;
+    private int routes;
+    private int runs;
+    private boolean served; // the version readers currently get
+}
@@ -0,0 +1,15 @@
+package Transport_Urbain_Microservices.route_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PositionIngestResultDto {
+    private int accepted;
+    private int stale; // not newer than the latest position of the run
+    private int offRoute; // too far from the run's route
+    private int unknownRun; // no such stored run, or its route is not active
+}
@@ -0,0 +1,23 @@
+package Transport_Urbain_Microservices.route_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// The updated route and the number of rows each kind of statement changed
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouteChangeResultDto {
+    private RouteDto route;
+    private int stopsInserted;
+    private int stopsDeleted;
+    private int stopsReordered;
+    private int offsetsInserted;
+    private int offsetsUpdated;
+    private int offsetsDeleted;
+
+    public int getRowsAffected() {
+        return stopsInserted + stopsDeleted + stopsReordered + offsetsInserted + offsetsUpdated + offsetsDeleted;
+    }
+}
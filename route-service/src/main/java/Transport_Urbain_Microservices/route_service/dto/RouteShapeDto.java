@@ -0,0 +1,17 @@
+package Transport_Urbain_Microservices.route_service.dto;
+
+import Transport_Urbain_Microservices.route_service.entity.RouteShapeSource;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouteShapeDto {
+    private Long routeId;
+    private RouteShapeSource source;
+    private Integer zoom; // null for the full resolution shape
+    private int pointCount;
+    private String polyline; // Google encoded polyline, precision 5
+}
@@ -0,0 +1,30 @@
+package Transport_Urbain_Microservices.route_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+// Matrix layout of a route's day: the stops and their offsets are listed once, the runs as parallel arrays.
+// The arrival of run r at stop s is startTimes[r] + offsets[s] minutes.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouteTimetableDto {
+    private Long routeId;
+    private String routeNum;
+    private String routeName;
+    private LocalDate date;
+    private boolean specialDay;
+
+    private List<Long> stopIds;
+    private List<String> stopNames;
+    private List<Integer> offsets; // null where the route has no offset for the stop
+
+    private List<Long> runIds; // negative for departures of a frequency template
+    private List<Integer> runNums;
+    private List<LocalTime> startTimes;
+}
@@ -13,13 +13,14 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 public class RunDetailsDto {
-    private Long id;
+    private Long id; // negative for departures of a frequency template
     private Long routeId;
     private String routeNum;
     private String routeName;
     private String destinationStopName;
     private ScheduleType scheduleType;
-    private Integer dayOfWeek;
+    private Integer dayOfWeek; // set when the run operates on a single day
+    private List<Integer> daysOfWeek;
     private LocalDate specificDate;
     private Integer runNum;
     private LocalTime startTime;
@@ -33,5 +34,6 @@ public class RunDetailsDto {
         private String stopName;
         private Integer arrivalMinuteFromStart;
         private LocalTime actualArrivalTime;
+        private LocalTime predictedArrivalTime; // from the run's latest observed delay, null without live data
     }
 }
@@ -0,0 +1,23 @@
+package Transport_Urbain_Microservices.route_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RunPositionDto {
+    private Long runId;
+    private Long routeId;
+    private Instant timestamp;
+    private Double lat;
+    private Double lon;
+    private Integer delaySeconds; // positive when late
+    private Long previousStopId;
+    private Long nextStopId;
+    private List<VehiclePositionDto> recentPositions; // newest first
+}
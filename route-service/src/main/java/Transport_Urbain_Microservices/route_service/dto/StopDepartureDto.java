@@ -0,0 +1,20 @@
+package Transport_Urbain_Microservices.route_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StopDepartureDto {
+    private Long runId;
+    private Long routeId;
+    private String routeNum;
+    private String routeName;
+    private String destinationStopName;
+    private LocalTime departureTime;
+    private LocalTime predictedDepartureTime; // null without live data for the run
+}
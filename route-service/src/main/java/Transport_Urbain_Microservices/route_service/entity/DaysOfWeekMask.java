@@ -0,0 +1,50 @@
+package Transport_Urbain_Microservices.route_service.entity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// 7-bit set of service days: bit (d - 1) is set when day d (1=MONDAY to 7=SUNDAY) is included
+public final class DaysOfWeekMask {
+
+    public static final int ALL = 0x7F;
+
+    private DaysOfWeekMask() {
+    }
+
+    public static int of(int dayOfWeek) {
+        if (dayOfWeek < 1 || dayOfWeek > 7) {
+            throw new IllegalArgumentException("Day of week must be between 1 and 7");
+        }
+        return 1 << (dayOfWeek - 1);
+    }
+
+    public static int of(Collection<Integer> daysOfWeek) {
+        int mask = 0;
+        for (Integer day : daysOfWeek) {
+            if (day == null) {
+                throw new IllegalArgumentException("Day of week must be between 1 and 7");
+            }
+            mask |= of(day);
+        }
+        return mask;
+    }
+
+    public static boolean contains(int mask, int dayOfWeek) {
+        return (mask & (1 << (dayOfWeek - 1))) != 0;
+    }
+
+    public static boolean isValid(Integer mask) {
+        return mask != null && mask >= 1 && mask <= ALL;
+    }
+
+    public static List<Integer> toDays(int mask) {
+        List<Integer> days = new ArrayList<>(Integer.bitCount(mask));
+        for (int day = 1; day <= 7; day++) {
+            if (contains(mask, day)) {
+                days.add(day);
+            }
+        }
+        return days;
+    }
+}
@@ -0,0 +1,81 @@
+package Transport_Urbain_Microservices.route_service.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Headway-based regular schedule: one row stands for every departure of a route from startTime to
+// endTime every headwayMinutes, on each day of its mask. Expanded into runs in memory, never stored as Run rows.
+@Entity
+@Table(indexes = @Index(name = "idx_frequency_template_route", columnList = "route_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FrequencyTemplate {
+
+    // A template covers one day at most, so a longer headway has no second departure to space out
+    public static final int MAX_HEADWAY_MINUTES = 24 * 60 - 1;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "route_id", nullable = false)
+    private Route route;
+
+    private String destinationStopName;
+
+    @Column(nullable = false)
+    private Integer daysOfWeekMask; // DaysOfWeekMask bits of the days the template applies on
+
+    @Column(nullable = false)
+    private LocalTime startTime;
+
+    @Column(nullable = false)
+    private LocalTime endTime;
+
+    @Column(nullable = false)
+    private Integer headwayMinutes;
+
+    public boolean runsOn(int dayOfWeek) {
+        return DaysOfWeekMask.contains(daysOfWeekMask, dayOfWeek);
+    }
+
+    public List<LocalTime> departureTimes() {
+        return departureTimes(startTime, endTime, headwayMinutes);
+    }
+
+    // Departure times from startTime to endTime inclusive, counted in seconds of the day so they never wrap
+    public static List<LocalTime> departureTimes(LocalTime startTime, LocalTime endTime, int headwayMinutes) {
+        if (headwayMinutes < 1) {
+            throw new IllegalArgumentException("headwayMinutes must be positive");
+        }
+        int headwaySeconds = Math.min(headwayMinutes, 24 * 60) * 60; // no overflow, one step past the day at most
+        int last = endTime.toSecondOfDay();
+        List<LocalTime> times = new ArrayList<>();
+        for (int t = startTime.toSecondOfDay(); t <= last; t += headwaySeconds) {
+            times.add(LocalTime.ofSecondOfDay(t));
+        }
+        return times;
+    }
+
+    @PrePersist
+    @PreUpdate
+    private void validate() {
+        if (!DaysOfWeekMask.isValid(daysOfWeekMask)) {
+            throw new IllegalArgumentException("daysOfWeekMask must select at least one day between 1 and 7");
+        }
+        if (headwayMinutes == null || headwayMinutes < 1 || headwayMinutes > MAX_HEADWAY_MINUTES) {
+            throw new IllegalArgumentException("headwayMinutes must be between 1 and " + MAX_HEADWAY_MINUTES);
+        }
+        if (endTime.isBefore(startTime)) {
+            throw new IllegalArgumentException("endTime must not be before startTime");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package Transport_Urbain_Microservices.route_service.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// One row per import source (OSM file, schedule file): what was last imported and when.
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportManifest {
+
+    @Id
+    private String source;
+
+    private String location;
+
+    @Column(nullable = false, length = 200)
+    private String contentHash;
+
+    // Hash, size and modification time of the file alone, so an unchanged file is not read again to be hashed
+    @Column(length = 64)
+    private String fileHash;
+
+    private Long fileSize;
+
+    private Long fileLastModified;
+
+    private Long rowsWritten;
+
+    @Column(nullable = false)
+    private LocalDateTime importedAt;
+
+    private Long durationMillis;
+}
@@ -4,10 +4,15 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(indexes = @Index(name = "uk_route_gtfs_id", columnList = "gtfs_id", unique = true))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -22,6 +27,8 @@ public class Route {
 
     private Long osmId;
 
+    private String gtfsId; // GTFS route_id and stop sequence of the route variant it was imported from
+
     @Column(nullable = false)
     private String num;
 
@@ -32,6 +39,7 @@ public class Route {
     @Column(nullable = false)
     private RouteStatus status = RouteStatus.ACTIVE;
 
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @OneToMany(mappedBy = "route", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<RouteStop> routeStops;
 }
@@ -0,0 +1,32 @@
+package Transport_Urbain_Microservices.route_service.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+// Line of a route as a Google encoded polyline (1e-5 degree precision, a few bytes per point).
+// Kept apart from Route so that loading routes never reads their geometry.
+@Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouteShape {
+
+    @Id
+    private Long routeId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String polyline;
+
+    @Column(nullable = false)
+    private int pointCount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private RouteShapeSource source;
+}
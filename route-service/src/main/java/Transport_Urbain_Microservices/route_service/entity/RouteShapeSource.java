@@ -0,0 +1,6 @@
+package Transport_Urbain_Microservices.route_service.entity;
+
+public enum RouteShapeSource {
+    WAYS, // the way members of the OSM relation
+    STOPS // no way geometry was imported: straight lines between the route's stops
+}
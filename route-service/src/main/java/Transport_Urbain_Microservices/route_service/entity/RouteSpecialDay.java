@@ -0,0 +1,26 @@
+package Transport_Urbain_Microservices.route_service.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// A date on which one route only runs its SPECIAL runs, while the rest of the network keeps its regular
+// service (a SpecialDay applies to every route). Written by the GTFS import from calendar_dates.txt.
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(RouteSpecialDayId.class)
+public class RouteSpecialDay {
+
+    @Id
+    private Long routeId;
+
+    @Id
+    private LocalDate date;
+}
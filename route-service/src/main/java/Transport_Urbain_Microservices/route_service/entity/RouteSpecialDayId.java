@@ -0,0 +1,16 @@
+package Transport_Urbain_Microservices.route_service.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouteSpecialDayId implements Serializable {
+    private Long routeId;
+    private LocalDate date;
+}
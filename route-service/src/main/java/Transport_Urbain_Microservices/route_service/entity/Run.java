@@ -10,6 +10,7 @@ import java.time.LocalTime;
 import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "idx_run_route_type_date", columnList = "route_id, schedule_type, specific_date"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -29,7 +30,7 @@ public class Run {
     @Column(nullable = false)
     private ScheduleType scheduleType; //determines whether the run is regular or for a special date
 
-    private Integer dayOfWeek; // 1-7, NULL if special
+    private Integer daysOfWeekMask; // DaysOfWeekMask bits of the days the run operates on, NULL if special
 
     private LocalDate specificDate; // NULL if regular
 
@@ -42,14 +43,18 @@ public class Run {
     @PrePersist
     @PreUpdate
     private void validateScheduleType() {
-        if (scheduleType == ScheduleType.REGULAR && dayOfWeek == null) {
-            throw new IllegalStateException("dayOfWeek must be set for REGULAR schedule type");
+        if (scheduleType == ScheduleType.REGULAR && daysOfWeekMask == null) {
+            throw new IllegalStateException("daysOfWeekMask must be set for REGULAR schedule type");
         }
         if (scheduleType == ScheduleType.SPECIAL && specificDate == null) {
             throw new IllegalStateException("specificDate must be set for SPECIAL schedule type");
         }
-        if (dayOfWeek != null && (dayOfWeek < 1 || dayOfWeek > 7)) {
-            throw new IllegalArgumentException("dayOfWeek must be between 1 and 7");
+        if (daysOfWeekMask != null && !DaysOfWeekMask.isValid(daysOfWeekMask)) {
+            throw new IllegalArgumentException("daysOfWeekMask must select at least one day between 1 and 7");
         }
     }
+
+    public boolean runsOn(int dayOfWeek) {
+        return daysOfWeekMask != null && DaysOfWeekMask.contains(daysOfWeekMask, dayOfWeek);
+    }
 }
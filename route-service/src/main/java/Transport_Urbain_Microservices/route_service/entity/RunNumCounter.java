@@ -0,0 +1,29 @@
+package Transport_Urbain_Microservices.route_service.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Last run number handed out per route and numbering scope: "day-<1..7>" for regular runs,
+// the ISO date for special runs. Read and advanced under a row lock by RunNumCounterRepo.
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(RunNumCounterId.class)
+public class RunNumCounter {
+
+    @Id
+    private Long routeId;
+
+    @Id
+    @Column(length = 16)
+    private String scope;
+
+    @Column(nullable = false)
+    private Integer lastRunNum;
+}
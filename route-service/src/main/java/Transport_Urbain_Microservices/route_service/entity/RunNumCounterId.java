@@ -0,0 +1,15 @@
+package Transport_Urbain_Microservices.route_service.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RunNumCounterId implements Serializable {
+    private Long routeId;
+    private String scope;
+}
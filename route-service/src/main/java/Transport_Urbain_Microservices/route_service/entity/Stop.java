@@ -4,10 +4,15 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(indexes = @Index(name = "uk_stop_gtfs_id", columnList = "gtfs_id", unique = true))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -19,6 +24,8 @@ public class Stop {
 
     private Long osmId;
 
+    private String gtfsId; // stop_id of the GTFS feed the stop was imported from
+
     @Column(nullable = false)
     private String name;
 
@@ -0,0 +1,73 @@
+package Transport_Urbain_Microservices.route_service.geo;
+
+import java.util.Arrays;
+
+// Google's encoded polyline format: coordinates rounded to 1e-5 degrees, each one stored as the difference
+// with the previous point, zigzag-encoded (sign in the lowest bit) and written as 5-bit groups in printable
+// ASCII. Neighbouring points of a route differ by little, so most coordinates take 1 to 4 characters.
+// Points are passed as interleaved lat, lon values.
+public final class EncodedPolyline {
+
+    private static final double FACTOR = 1e5;
+
+    private EncodedPolyline() {
+    }
+
+    public static String encode(double[] points) {
+        StringBuilder encoded = new StringBuilder(points.length * 3);
+        long previousLat = 0;
+        long previousLon = 0;
+        for (int i = 0; i + 1 < points.length; i += 2) {
+            long lat = Math.round(points[i] * FACTOR);
+            long lon = Math.round(points[i + 1] * FACTOR);
+            append(encoded, lat - previousLat);
+            append(encoded, lon - previousLon);
+            previousLat = lat;
+            previousLon = lon;
+        }
+        return encoded.toString();
+    }
+
+    public static double[] decode(String encoded) {
+        double[] points = new double[encoded.length()]; // every value takes at least one character
+        int count = 0;
+        long lat = 0;
+        long lon = 0;
+        int index = 0;
+        long[] value = new long[1];
+        while (index < encoded.length()) {
+            index = read(encoded, index, value);
+            lat += value[0];
+            index = read(encoded, index, value);
+            lon += value[0];
+            points[count++] = lat / FACTOR;
+            points[count++] = lon / FACTOR;
+        }
+        return Arrays.copyOf(points, count);
+    }
+
+    private static void append(StringBuilder encoded, long delta) {
+        long value = delta < 0 ? ~(delta << 1) : delta << 1;
+        while (value >= 0x20) {
+            encoded.append((char) ((0x20 | (value & 0x1f)) + 63));
+            value >>= 5;
+        }
+        encoded.append((char) (value + 63));
+    }
+
+    private static int read(String encoded, int index, long[] value) {
+        long result = 0;
+        int shift = 0;
+        int chunk;
+        do {
+            if (index >= encoded.length()) {
+                throw new IllegalArgumentException("Truncated encoded polyline");
+            }
+            chunk = encoded.charAt(index++) - 63;
+            result |= (long) (chunk & 0x1f) << shift;
+            shift += 5;
+        } while (chunk >= 0x20);
+        value[0] = (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+        return index;
+    }
+}
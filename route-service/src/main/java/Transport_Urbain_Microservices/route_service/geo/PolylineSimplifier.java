@@ -0,0 +1,87 @@
+package Transport_Urbain_Microservices.route_service.geo;
+
+import java.util.Arrays;
+
+// Douglas–Peucker simplification of interleaved lat, lon points: keeps the end points, then recursively the
+// point farthest from the segment joining the kept ones, as long as it is farther than the tolerance.
+// Distances are in meters, in a local equirectangular projection like the rest of the geo code.
+public final class PolylineSimplifier {
+
+    private static final double METERS_PER_DEGREE = 111_320;
+    // Web Mercator ground resolution at the equator for zoom level 0 (256 pixel tiles)
+    private static final double METERS_PER_PIXEL_AT_ZOOM_0 = 156_543.03;
+
+    private PolylineSimplifier() {
+    }
+
+    // One screen pixel at the given latitude and zoom level: detail below that is not visible
+    public static double toleranceAtZoom(double latitude, int zoom) {
+        return METERS_PER_PIXEL_AT_ZOOM_0 * Math.cos(Math.toRadians(latitude)) / Math.pow(2, zoom);
+    }
+
+    public static double[] simplify(double[] points, double toleranceMeters) {
+        int n = points.length / 2;
+        if (n <= 2) {
+            return points;
+        }
+        double lonScale = METERS_PER_DEGREE * Math.cos(Math.toRadians(points[0]));
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            y[i] = points[2 * i] * METERS_PER_DEGREE;
+            x[i] = points[2 * i + 1] * lonScale;
+        }
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        double toleranceSquared = toleranceMeters * toleranceMeters;
+        // ranges still to split, as (first, last) pairs; iterative so long shapes cannot overflow the stack
+        int[] ranges = new int[2 * n + 2];
+        int top = 0;
+        ranges[top++] = 0;
+        ranges[top++] = n - 1;
+        while (top > 0) {
+            int last = ranges[--top];
+            int first = ranges[--top];
+            int farthest = -1;
+            double farthestSquared = toleranceSquared;
+            for (int i = first + 1; i < last; i++) {
+                double d = distanceToSegmentSquared(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (d > farthestSquared) {
+                    farthestSquared = d;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                ranges[top++] = first;
+                ranges[top++] = farthest;
+                ranges[top++] = farthest;
+                ranges[top++] = last;
+            }
+        }
+
+        double[] kept = new double[points.length];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                kept[count++] = points[2 * i];
+                kept[count++] = points[2 * i + 1];
+            }
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    // To the segment rather than the infinite line, so a route that loops back to its start is still simplified
+    private static double distanceToSegmentSquared(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double ex = ax + t * dx - px;
+        double ey = ay + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+}
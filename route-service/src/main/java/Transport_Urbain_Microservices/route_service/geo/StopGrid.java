@@ -0,0 +1,72 @@
+package Transport_Urbain_Microservices.route_service.geo;
+
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+// Uniform lat/lon grid over the stops of one timetable snapshot (cells of CELL_DEGREES, about 550 m
+// north-south). Built with the snapshot on the publishing thread and immutable afterwards, so queries only read it.
+public final class StopGrid {
+
+    private static final double CELL_DEGREES = 0.005;
+
+    private final Map<Long, List<TimetableSnapshot.StopEntry>> cells;
+
+    private StopGrid(Map<Long, List<TimetableSnapshot.StopEntry>> cells) {
+        this.cells = cells;
+    }
+
+    public static StopGrid build(Collection<TimetableSnapshot.StopEntry> stops) {
+        Map<Long, List<TimetableSnapshot.StopEntry>> cells = new HashMap<>();
+        for (TimetableSnapshot.StopEntry stop : stops) {
+            cells.computeIfAbsent(cellKey(stop.getLat(), stop.getLon()), k -> new ArrayList<>()).add(stop);
+        }
+        Map<Long, List<TimetableSnapshot.StopEntry>> frozen = new HashMap<>(cells.size() * 2);
+        cells.forEach((key, cell) -> frozen.put(key, List.copyOf(cell)));
+        return new StopGrid(frozen);
+    }
+
+    public void forEachInBox(double minLat, double minLon, double maxLat, double maxLon,
+                             Consumer<TimetableSnapshot.StopEntry> consumer) {
+        long minLatCell = cellIndex(minLat);
+        long maxLatCell = cellIndex(maxLat);
+        long minLonCell = cellIndex(minLon);
+        long maxLonCell = cellIndex(maxLon);
+        long boxCells = (maxLatCell - minLatCell + 1) * (maxLonCell - minLonCell + 1);
+
+        if (boxCells > cells.size()) {
+            // Large viewport: walking the occupied cells is cheaper than probing empty ones
+            for (List<TimetableSnapshot.StopEntry> cell : cells.values()) {
+                acceptWithin(cell, minLat, minLon, maxLat, maxLon, consumer);
+            }
+            return;
+        }
+        for (long latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+            for (long lonCell = minLonCell; lonCell <= maxLonCell; lonCell++) {
+                List<TimetableSnapshot.StopEntry> cell = cells.get((latCell << 32) | (lonCell & 0xffffffffL));
+                if (cell != null) {
+                    acceptWithin(cell, minLat, minLon, maxLat, maxLon, consumer);
+                }
+            }
+        }
+    }
+
+    private static void acceptWithin(List<TimetableSnapshot.StopEntry> cell, double minLat, double minLon,
+                                     double maxLat, double maxLon, Consumer<TimetableSnapshot.StopEntry> consumer) {
+        for (TimetableSnapshot.StopEntry stop : cell) {
+            if (stop.getLat() >= minLat && stop.getLat() <= maxLat
+                    && stop.getLon() >= minLon && stop.getLon() <= maxLon) {
+                consumer.accept(stop);
+            }
+        }
+    }
+
+    private static long cellIndex(double degrees) {
+        return (long) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(double lat, double lon) {
+        return (cellIndex(lat) << 32) | (cellIndex(lon) & 0xffffffffL);
+    }
+}
@@ -0,0 +1,67 @@
+package Transport_Urbain_Microservices.route_service.geo;
+
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshotHolder;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Nearest-stop and bounding-box queries over the StopGrid of the served timetable snapshot. The grid is built
+// with the snapshot, so queries only read it and always answer from the same version as the other read endpoints.
+@Component
+@RequiredArgsConstructor
+public class StopSpatialIndex {
+
+    private static final double EARTH_RADIUS_METERS = 6_371_000;
+    private static final double METERS_PER_DEGREE_LAT = 111_320;
+
+    private final TimetableSnapshotHolder snapshotHolder;
+
+    private StopGrid grid() {
+        return snapshotHolder.current().getStopGrid();
+    }
+
+    // k nearest stops within radiusMeters, closest first
+    public List<Neighbour> nearest(double lat, double lon, double radiusMeters, int limit) {
+        double latDelta = radiusMeters / METERS_PER_DEGREE_LAT;
+        double lonDelta = radiusMeters / (METERS_PER_DEGREE_LAT * Math.max(Math.cos(Math.toRadians(lat)), 0.01));
+
+        List<Neighbour> candidates = new ArrayList<>();
+        grid().forEachInBox(lat - latDelta, lon - lonDelta, lat + latDelta, lon + lonDelta, stop -> {
+            double distance = distanceMeters(lat, lon, stop.getLat(), stop.getLon());
+            if (distance <= radiusMeters) {
+                candidates.add(new Neighbour(stop, distance));
+            }
+        });
+        candidates.sort(Comparator.comparingDouble(Neighbour::getDistanceMeters));
+        return candidates.size() > limit ? List.copyOf(candidates.subList(0, limit)) : candidates;
+    }
+
+    public List<TimetableSnapshot.StopEntry> withinBox(double minLat, double minLon, double maxLat, double maxLon, int limit) {
+        List<TimetableSnapshot.StopEntry> result = new ArrayList<>();
+        grid().forEachInBox(minLat, minLon, maxLat, maxLon, stop -> {
+            if (result.size() < limit) {
+                result.add(stop);
+            }
+        });
+        return result;
+    }
+
+    static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.sqrt(a));
+    }
+
+    @Value
+    public static class Neighbour {
+        TimetableSnapshot.StopEntry stop;
+        double distanceMeters;
+    }
+}
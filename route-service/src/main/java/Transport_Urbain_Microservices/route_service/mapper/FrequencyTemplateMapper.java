@@ -0,0 +1,33 @@
+package Transport_Urbain_Microservices.route_service.mapper;
+
+import Transport_Urbain_Microservices.route_service.dto.FrequencyTemplateDto;
+import Transport_Urbain_Microservices.route_service.entity.DaysOfWeekMask;
+import Transport_Urbain_Microservices.route_service.entity.FrequencyTemplate;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+
+public class FrequencyTemplateMapper {
+
+    public static FrequencyTemplateDto toDto(FrequencyTemplate template) {
+        return new FrequencyTemplateDto(
+                template.getId(),
+                template.getRoute().getId(),
+                DaysOfWeekMask.toDays(template.getDaysOfWeekMask()),
+                template.getStartTime(),
+                template.getEndTime(),
+                template.getHeadwayMinutes(),
+                template.getDestinationStopName()
+        );
+    }
+
+    public static FrequencyTemplateDto toDto(TimetableSnapshot.TemplateEntry template) {
+        return new FrequencyTemplateDto(
+                template.getId(),
+                template.getRouteId(),
+                DaysOfWeekMask.toDays(template.getDaysOfWeekMask()),
+                template.getStartTime(),
+                template.getEndTime(),
+                template.getHeadwayMinutes(),
+                template.getDestinationStopName()
+        );
+    }
+}
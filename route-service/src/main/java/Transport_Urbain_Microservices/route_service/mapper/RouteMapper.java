@@ -6,14 +6,14 @@ import Transport_Urbain_Microservices.route_service.entity.RouteStop;
 import Transport_Urbain_Microservices.route_service.entity.RouteStopOffset;
 import Transport_Urbain_Microservices.route_service.repo.RouteStopOffsetRepo;
 import Transport_Urbain_Microservices.route_service.repo.RouteStopRepo;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Component
 @RequiredArgsConstructor
@@ -33,26 +33,33 @@ public class RouteMapper {
         // Get sorted route stops
         List<RouteStop> sortedRouteStops = routeStopRepo.findByRouteOrderByStopOrderAsc(route);
 
-        // Extract stop IDs in order
-        List<Long> routeStops = sortedRouteStops.stream()
-                .map(rs -> rs.getStop().getId())
-                .collect(Collectors.toList());
-        dto.setRouteStops(routeStops);
-
         // Get offsets and map by stop ID for lookup
-        List<RouteStopOffset> offsets = routeStopOffsetRepo.findByRoute(route);
-        Map<Long, Integer> offsetMap = offsets.stream()
-                .collect(Collectors.toMap(
-                        offset -> offset.getStop().getId(),
-                        RouteStopOffset::getCumulativeMinutesFromStart
-                ));
-
-        // Extract cumulative minutes in the same order as stops
-        List<Integer> cumulativeMinutes = sortedRouteStops.stream()
-                .map(rs -> offsetMap.get(rs.getStop().getId()))
-                .collect(Collectors.toList());
-        dto.setCumulativeMinutesFromStartForStops(cumulativeMinutes);
+        Map<Long, Integer> offsetMap = new HashMap<>();
+        for (RouteStopOffset offset : routeStopOffsetRepo.findByRoute(route)) {
+            offsetMap.put(offset.getStop().getId(), offset.getCumulativeMinutesFromStart());
+        }
 
+        // Extract stop IDs in order, and cumulative minutes in the same order as stops
+        List<Long> routeStops = new ArrayList<>(sortedRouteStops.size());
+        List<Integer> cumulativeMinutes = new ArrayList<>(sortedRouteStops.size());
+        for (RouteStop rs : sortedRouteStops) {
+            routeStops.add(rs.getStop().getId());
+            cumulativeMinutes.add(offsetMap.get(rs.getStop().getId()));
+        }
+        dto.setRouteStops(routeStops);
+        dto.setCumulativeMinutesFromStartForStops(cumulativeMinutes);
         return dto;
     }
-}
\ No newline at end of file
+
+    public RouteDto toDto(TimetableSnapshot.RouteTimetable route) {
+        return new RouteDto(
+                route.getId(),
+                route.getName(),
+                route.getNum(),
+                route.getDescription(),
+                route.getStatus(),
+                route.getStopIds(),
+                route.getCumulativeMinutes()
+        );
+    }
+}
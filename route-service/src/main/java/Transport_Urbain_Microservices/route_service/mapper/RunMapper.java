@@ -1,19 +1,22 @@
 package Transport_Urbain_Microservices.route_service.mapper;
 import Transport_Urbain_Microservices.route_service.dto.RunDetailsDto;
+import Transport_Urbain_Microservices.route_service.entity.DaysOfWeekMask;
 import Transport_Urbain_Microservices.route_service.entity.RouteStop;
 import Transport_Urbain_Microservices.route_service.entity.RouteStopOffset;
 import Transport_Urbain_Microservices.route_service.entity.Run;
 import Transport_Urbain_Microservices.route_service.entity.Stop;
+import Transport_Urbain_Microservices.route_service.realtime.VehiclePositionTracker;
 import Transport_Urbain_Microservices.route_service.repo.RouteStopOffsetRepo;
 import Transport_Urbain_Microservices.route_service.repo.RouteStopRepo;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Component
 @RequiredArgsConstructor
@@ -21,8 +24,15 @@ public class RunMapper {
 
     private final RouteStopRepo routeStopRepository;
     private final RouteStopOffsetRepo routeStopOffsetRepository;
+    private final VehiclePositionTracker vehiclePositionTracker;
 
     public RunDetailsDto toDetailsDto(Run run) {
+        List<RouteStop> routeStops = routeStopRepository.findByRouteOrderByStopOrderAsc(run.getRoute());
+        Map<Long, Integer> offsetMap = new HashMap<>();
+        for (RouteStopOffset offset : routeStopOffsetRepository.findByRoute(run.getRoute())) {
+            offsetMap.put(offset.getStop().getId(), offset.getCumulativeMinutesFromStart());
+        }
+
         RunDetailsDto dto = new RunDetailsDto();
         dto.setId(run.getId());
         dto.setRouteId(run.getRoute().getId());
@@ -30,33 +40,27 @@ public class RunMapper {
         dto.setRouteName(run.getRoute().getName());
         dto.setDestinationStopName(run.getDestinationStopName());
         dto.setScheduleType(run.getScheduleType());
-        dto.setDayOfWeek(run.getDayOfWeek());
+        setDays(dto, run.getDaysOfWeekMask());
         dto.setSpecificDate(run.getSpecificDate());
         dto.setRunNum(run.getRunNum());
         dto.setStartTime(run.getStartTime());
 
-        // Fetch ordered route stops for the route
-        List<RouteStop> routeStops = routeStopRepository.findByRouteOrderByStopOrderAsc(run.getRoute());
-
-        // Fetch all offsets for the route
-        List<RouteStopOffset> offsets = routeStopOffsetRepository.findByRoute(run.getRoute());
-
-        // Create a map for quick lookup of offsets by Stop
-        Map<Stop, Integer> offsetMap = offsets.stream()
-                .collect(Collectors.toMap(RouteStopOffset::getStop, RouteStopOffset::getCumulativeMinutesFromStart));
+        List<Long> stopIds = routeStops.stream().map(rs -> rs.getStop().getId()).toList();
+        int[] predictedDelays = vehiclePositionTracker.getPredictedDelays(run.getId(), stopIds);
 
         // Build the list of StopTimeDetailDTO
         List<RunDetailsDto.StopTimeDetailDTO> stopTimes = new ArrayList<>();
-        for (RouteStop rs : routeStops) {
-            Stop stop = rs.getStop();
-            Integer minutes = offsetMap.get(stop);
+        for (int i = 0; i < routeStops.size(); i++) {
+            Stop stop = routeStops.get(i).getStop();
+            Integer minutes = offsetMap.get(stop.getId());
             if (minutes != null) {
                 LocalTime arrival = run.getStartTime().plusMinutes(minutes.longValue());
                 RunDetailsDto.StopTimeDetailDTO detail = new RunDetailsDto.StopTimeDetailDTO(
                         stop.getId(),
                         stop.getName(),
                         minutes,
-                        arrival
+                        arrival,
+                        predicted(arrival, predictedDelays, i)
                 );
                 stopTimes.add(detail);
             }
@@ -65,4 +69,54 @@ public class RunMapper {
         dto.setStopTimes(stopTimes);
         return dto;
     }
-}
\ No newline at end of file
+
+    // live: whether the run's real-time predictions apply, i.e. the run is listed for today
+    public RunDetailsDto toDetailsDto(TimetableSnapshot.RunEntry run, TimetableSnapshot.RouteTimetable route, boolean live) {
+        RunDetailsDto dto = new RunDetailsDto();
+        dto.setId(run.getId());
+        dto.setRouteId(route.getId());
+        dto.setRouteNum(route.getNum());
+        dto.setRouteName(route.getName());
+        dto.setDestinationStopName(run.getDestinationStopName());
+        dto.setScheduleType(run.getScheduleType());
+        setDays(dto, run.getDaysOfWeekMask());
+        dto.setSpecificDate(run.getSpecificDate());
+        dto.setRunNum(run.getRunNum());
+        dto.setStartTime(run.getStartTime());
+
+        int[] predictedDelays = live ? vehiclePositionTracker.getPredictedDelays(run.getId(), route.getStopIds()) : null;
+        List<RunDetailsDto.StopTimeDetailDTO> stopTimes = new ArrayList<>(route.getStopIds().size());
+        for (int i = 0; i < route.getStopIds().size(); i++) {
+            Integer minutes = route.getCumulativeMinutes().get(i);
+            if (minutes != null) {
+                LocalTime arrival = run.getStartTime().plusMinutes(minutes.longValue());
+                stopTimes.add(new RunDetailsDto.StopTimeDetailDTO(
+                        route.getStopIds().get(i),
+                        route.getStopNamesInOrder().get(i),
+                        minutes,
+                        arrival,
+                        predicted(arrival, predictedDelays, i)
+                ));
+            }
+        }
+
+        dto.setStopTimes(stopTimes);
+        return dto;
+    }
+
+    private static LocalTime predicted(LocalTime scheduled, int[] predictedDelays, int stopIndex) {
+        if (predictedDelays == null || predictedDelays[stopIndex] == VehiclePositionTracker.NO_PREDICTION) {
+            return null;
+        }
+        return scheduled.plusSeconds(predictedDelays[stopIndex]);
+    }
+
+    private static void setDays(RunDetailsDto dto, Integer daysOfWeekMask) {
+        if (daysOfWeekMask == null) {
+            return;
+        }
+        List<Integer> days = DaysOfWeekMask.toDays(daysOfWeekMask);
+        dto.setDaysOfWeek(days);
+        dto.setDayOfWeek(days.size() == 1 ? days.getFirst() : null);
+    }
+}
@@ -2,6 +2,7 @@ package Transport_Urbain_Microservices.route_service.mapper;
 
 import Transport_Urbain_Microservices.route_service.dto.StopDto;
 import Transport_Urbain_Microservices.route_service.entity.Stop;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
 
 public class StopMapper {
 
@@ -15,4 +16,8 @@ public class StopMapper {
         return s;
     }
 
+    public static StopDto toDto(TimetableSnapshot.StopEntry stop) {
+        return new StopDto(stop.getId(), stop.getName(), stop.getLat(), stop.getLon(), stop.getAddress());
+    }
+
 }
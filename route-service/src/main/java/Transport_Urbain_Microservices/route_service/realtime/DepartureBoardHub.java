@@ -0,0 +1,308 @@
+package Transport_Urbain_Microservices.route_service.realtime;
+
+import Transport_Urbain_Microservices.route_service.dto.DepartureBoardUpdateDto;
+import Transport_Urbain_Microservices.route_service.dto.StopDepartureDto;
+import Transport_Urbain_Microservices.route_service.service.RunService;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshotHolder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Live departure boards over server-sent events. The subscribers of a stop share one topic: its board is
+// recomputed once per change, the difference with the previous board is serialized once, and that same
+// encoded event is queued to every subscriber. Each subscriber has a small bounded queue drained by its own
+// virtual thread, so a slow connection only holds up itself; once its queue is full it is dropped
+// (EventSource clients reconnect by themselves and start again from a full board).
+// A single thread refreshes the boards every flush interval, and only those that may have changed: after a new
+// timetable snapshot, when the minute changes, or when a run of a route serving the stop reported a position.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DepartureBoardHub {
+
+    private static final long HEARTBEAT_MILLIS = 15_000;
+    private static final long FAILURE_LOG_MILLIS = 60_000;
+
+    private final RunService runService;
+    private final TimetableSnapshotHolder snapshotHolder;
+    private final VehiclePositionTracker vehiclePositionTracker;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.realtime.board-size:10}")
+    private int boardSize;
+
+    @Value("${app.realtime.stream-queue-size:16}")
+    private int queueSize;
+
+    @Value("${app.realtime.stream-flush-millis:1000}")
+    private long flushMillis;
+
+    @Value("${app.realtime.stream-timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    private final Map<Long, Topic> topics = new ConcurrentHashMap<>();
+    private final Set<ResponseBodyEmitter.DataWithMediaType> heartbeat = SseEmitter.event().comment("keep-alive").build();
+    private ScheduledExecutorService flusher;
+    private long lastHeartbeat = System.currentTimeMillis();
+    // flusher thread only: a failing refresh fails again every flush, so it is logged once a minute at most
+    private long lastFailureLog;
+    private int suppressedFailures;
+
+    @PostConstruct
+    void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "departure-board-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        flusher.shutdownNow();
+        topics.values().forEach(topic -> topic.subscribers.forEach(Subscriber::close));
+    }
+
+    // The first event ("board") is the whole board, the following ones ("update") only what changed
+    public SseEmitter subscribe(Long stopId) {
+        long version = snapshotHolder.current().getVersion();
+        long minute = currentMinute();
+        List<StopDepartureDto> board = currentBoard(stopId); // rejects unknown stops before anything is kept
+
+        SseEmitter emitter = newEmitter();
+        Subscriber subscriber = new Subscriber(emitter, queueSize);
+        while (true) {
+            Topic topic = topics.computeIfAbsent(stopId, Topic::new);
+            synchronized (topic) {
+                if (topic.closed) {
+                    continue; // removed by the flusher meanwhile
+                }
+                if (topic.board == null) {
+                    topic.board = board;
+                    topic.version = version;
+                    topic.minute = minute;
+                }
+                try {
+                    // sent from the request thread: the emitter holds it until the response is set up
+                    emitter.send(encode("board", topic.board));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not start departure stream", e);
+                }
+                topic.subscribers.add(subscriber);
+                // the connection is already over here, only the writer has to stop
+                Runnable unsubscribe = () -> {
+                    subscriber.stopWriter();
+                    topic.subscribers.remove(subscriber);
+                };
+                emitter.onCompletion(unsubscribe);
+                emitter.onTimeout(unsubscribe);
+                emitter.onError(error -> unsubscribe.run());
+            }
+            subscriber.start();
+            return emitter;
+        }
+    }
+
+    // package-private for the tests, which record what is sent instead of writing a response
+    SseEmitter newEmitter() {
+        return new SseEmitter(TimeUnit.MINUTES.toMillis(timeoutMinutes));
+    }
+
+    // run by the flusher thread; package-private so the tests can drive it
+    void flush() {
+        // an exception escaping here would cancel every later run
+        try {
+            TimetableSnapshot snapshot = snapshotHolder.current();
+            long minute = currentMinute();
+            Set<Long> observedStops = new HashSet<>();
+            for (Long routeId : vehiclePositionTracker.drainObservedRoutes()) {
+                TimetableSnapshot.RouteTimetable route = snapshot.getRoute(routeId);
+                if (route != null) {
+                    observedStops.addAll(route.getStopIds());
+                }
+            }
+            boolean sendHeartbeat = System.currentTimeMillis() - lastHeartbeat >= HEARTBEAT_MILLIS;
+            if (sendHeartbeat) {
+                lastHeartbeat = System.currentTimeMillis();
+            }
+            for (Topic topic : topics.values()) {
+                boolean mayHaveChanged = topic.version != snapshot.getVersion() || topic.minute != minute
+                        || observedStops.contains(topic.stopId);
+                refresh(topic, mayHaveChanged, snapshot.getVersion(), minute, sendHeartbeat);
+            }
+        } catch (RuntimeException e) {
+            logFailure(e);
+        }
+    }
+
+    private void logFailure(RuntimeException e) {
+        long now = System.currentTimeMillis();
+        if (now - lastFailureLog < FAILURE_LOG_MILLIS) {
+            suppressedFailures++;
+            return;
+        }
+        log.warn("Departure board refresh failed ({} more failures since the last report)", suppressedFailures, e);
+        lastFailureLog = now;
+        suppressedFailures = 0;
+    }
+
+    private void refresh(Topic topic, boolean mayHaveChanged, long version, long minute, boolean sendHeartbeat) {
+        synchronized (topic) {
+            topic.subscribers.removeIf(Subscriber::isClosed);
+            if (topic.subscribers.isEmpty()) {
+                topic.closed = true;
+                topics.remove(topic.stopId, topic);
+                return;
+            }
+            if (mayHaveChanged) {
+                List<StopDepartureDto> board;
+                try {
+                    board = currentBoard(topic.stopId);
+                } catch (IllegalArgumentException e) {
+                    topic.subscribers.forEach(Subscriber::close); // the stop was deleted
+                    return;
+                }
+                DepartureBoardUpdateDto update = diff(topic.stopId, topic.board, board);
+                topic.board = board;
+                topic.version = version;
+                topic.minute = minute;
+                if (!update.getChanged().isEmpty() || !update.getRemoved().isEmpty()) {
+                    broadcast(topic, encode("update", update));
+                    return;
+                }
+            }
+            if (sendHeartbeat) {
+                broadcast(topic, heartbeat);
+            }
+        }
+    }
+
+    private void broadcast(Topic topic, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        for (Subscriber subscriber : topic.subscribers) {
+            if (!subscriber.offer(event)) {
+                subscriber.close(); // too slow to keep up
+                topic.subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    private List<StopDepartureDto> currentBoard(Long stopId) {
+        return runService.getNextDeparturesForStop(stopId, LocalDateTime.now(), boardSize);
+    }
+
+    private static DepartureBoardUpdateDto diff(Long stopId, List<StopDepartureDto> previous, List<StopDepartureDto> current) {
+        Map<DepartureKey, StopDepartureDto> before = new HashMap<>();
+        for (StopDepartureDto departure : previous) {
+            before.put(DepartureKey.of(departure), departure);
+        }
+        List<StopDepartureDto> changed = new ArrayList<>();
+        for (StopDepartureDto departure : current) {
+            StopDepartureDto old = before.remove(DepartureKey.of(departure));
+            if (!departure.equals(old)) {
+                changed.add(departure);
+            }
+        }
+        return new DepartureBoardUpdateDto(stopId, changed, new ArrayList<>(before.values()));
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> encode(String name, Object data) {
+        try {
+            return SseEmitter.event().name(name).data(objectMapper.writeValueAsString(data)).build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize departure board", e);
+        }
+    }
+
+    private static long currentMinute() {
+        LocalDateTime now = LocalDateTime.now();
+        return now.toLocalDate().toEpochDay() * 1440 + now.getHour() * 60L + now.getMinute();
+    }
+
+    private record DepartureKey(Long runId, Long routeId, LocalTime departureTime) {
+        static DepartureKey of(StopDepartureDto departure) {
+            return new DepartureKey(departure.getRunId(), departure.getRouteId(), departure.getDepartureTime());
+        }
+    }
+
+    private static final class Topic {
+        final Long stopId;
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        // guarded by the topic's monitor
+        List<StopDepartureDto> board;
+        long version;
+        long minute;
+        boolean closed;
+
+        Topic(Long stopId) {
+            this.stopId = stopId;
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue;
+        private volatile boolean closed;
+        private Thread writer;
+
+        Subscriber(SseEmitter emitter, int queueSize) {
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        boolean offer(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            return !closed && queue.offer(event);
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        synchronized void start() {
+            if (!closed) {
+                writer = Thread.ofVirtual().name("departure-stream").start(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!closed) {
+                    emitter.send(queue.take());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | IllegalStateException e) {
+                // the client went away; the container reports it and completes the emitter itself
+                stopWriter();
+            }
+        }
+
+        synchronized void close() {
+            if (!closed) {
+                stopWriter();
+                emitter.complete();
+            }
+        }
+
+        synchronized void stopWriter() {
+            closed = true;
+            if (writer != null && writer != Thread.currentThread()) {
+                writer.interrupt();
+            }
+        }
+    }
+}
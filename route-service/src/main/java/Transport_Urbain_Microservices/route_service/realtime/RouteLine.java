@@ -0,0 +1,140 @@
+package Transport_Urbain_Microservices.route_service.realtime;
+
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+// A route as the polyline through its stops that have both coordinates and an offset, in stop order.
+// Positions are snapped onto it as a progress value: segment index plus the fraction travelled along
+// that segment (2.25 is a quarter of the way from the third stop to the fourth).
+// Distances use a local equirectangular projection, accurate enough at the scale of a city.
+final class RouteLine {
+
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    private final List<Long> routeStopIds;
+    private final long[] stopIds;
+    private final int[] stopIndexes; // position of each point in the route's full stop list
+    private final double[] x;
+    private final double[] y;
+    private final int[] minutes;
+    private final double lonScale;
+
+    private RouteLine(List<Long> routeStopIds, long[] stopIds, int[] stopIndexes, double[] x, double[] y,
+                      int[] minutes, double lonScale) {
+        this.routeStopIds = routeStopIds;
+        this.stopIds = stopIds;
+        this.stopIndexes = stopIndexes;
+        this.x = x;
+        this.y = y;
+        this.minutes = minutes;
+        this.lonScale = lonScale;
+    }
+
+    // null when fewer than two stops of the route can be placed, positions cannot be snapped then
+    static RouteLine of(TimetableSnapshot.RouteTimetable route, Function<Long, TimetableSnapshot.StopEntry> stops) {
+        int size = route.getStopIds().size();
+        long[] stopIds = new long[size];
+        int[] stopIndexes = new int[size];
+        double[] lats = new double[size];
+        double[] lons = new double[size];
+        int[] minutes = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            Integer offset = route.getCumulativeMinutes().get(i);
+            TimetableSnapshot.StopEntry stop = stops.apply(route.getStopIds().get(i));
+            if (offset == null || stop == null) {
+                continue;
+            }
+            stopIds[count] = stop.getId();
+            stopIndexes[count] = i;
+            lats[count] = stop.getLat();
+            lons[count] = stop.getLon();
+            minutes[count] = offset;
+            count++;
+        }
+        if (count < 2) {
+            return null;
+        }
+        double meanLat = 0;
+        for (int i = 0; i < count; i++) {
+            meanLat += lats[i] / count;
+        }
+        double lonScale = METERS_PER_DEGREE * Math.cos(Math.toRadians(meanLat));
+        double[] x = new double[count];
+        double[] y = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = lons[i] * lonScale;
+            y[i] = lats[i] * METERS_PER_DEGREE;
+        }
+        return new RouteLine(route.getStopIds(), Arrays.copyOf(stopIds, count),
+                Arrays.copyOf(stopIndexes, count), x, y, Arrays.copyOf(minutes, count), lonScale);
+    }
+
+    List<Long> routeStopIds() {
+        return routeStopIds;
+    }
+
+    int pointCount() {
+        return x.length;
+    }
+
+    long stopId(int point) {
+        return stopIds[point];
+    }
+
+    // Index of the point in RouteTimetable.getStopIds()
+    int stopIndex(int point) {
+        return stopIndexes[point];
+    }
+
+    int minutes(int point) {
+        return minutes[point];
+    }
+
+    // Scheduled minutes from the first stop at the given progress, interpolated within the segment
+    double minutesAt(double progress) {
+        int segment = Math.min((int) progress, x.length - 2);
+        double fraction = progress - segment;
+        return minutes[segment] + fraction * (minutes[segment + 1] - minutes[segment]);
+    }
+
+    boolean hasSameStops(RouteLine other) {
+        return other != null && (other.routeStopIds == routeStopIds || other.routeStopIds.equals(routeStopIds));
+    }
+
+    // Progress of the closest point of the line, or -1 if it is farther than maxMeters.
+    // Segments from fromSegment onwards are tried first, so a route that passes the same street twice
+    // keeps moving forward; the whole line is searched only if nothing ahead is close enough.
+    double snap(double lat, double lon, int fromSegment, double maxMeters) {
+        double px = lon * lonScale;
+        double py = lat * METERS_PER_DEGREE;
+        double progress = closest(px, py, Math.max(0, fromSegment), maxMeters * maxMeters);
+        if (progress < 0 && fromSegment > 0) {
+            progress = closest(px, py, 0, maxMeters * maxMeters);
+        }
+        return progress;
+    }
+
+    private double closest(double px, double py, int fromSegment, double maxSquared) {
+        double best = maxSquared;
+        double bestProgress = -1;
+        for (int i = fromSegment; i < x.length - 1; i++) {
+            double dx = x[i + 1] - x[i];
+            double dy = y[i + 1] - y[i];
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0 ? 0 : ((px - x[i]) * dx + (py - y[i]) * dy) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+            double ex = x[i] + t * dx - px;
+            double ey = y[i] + t * dy - py;
+            double distanceSquared = ex * ex + ey * ey;
+            if (distanceSquared < best) {
+                best = distanceSquared;
+                bestProgress = i + t;
+            }
+        }
+        return bestProgress;
+    }
+}
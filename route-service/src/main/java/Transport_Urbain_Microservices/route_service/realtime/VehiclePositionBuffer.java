@@ -0,0 +1,170 @@
+package Transport_Urbain_Microservices.route_service.realtime;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The last positions of one run, in preallocated primitive arrays used as a ring: recording a position
+// allocates nothing. Writers are serialized per run; readers never lock. They copy what they need between
+// two reads of a sequence number (a seqlock) and retry in the rare case a write overlapped the copy.
+// Each accepted position also recomputes the predicted delay at the stops still ahead of the run.
+final class VehiclePositionBuffer {
+
+    static final int NO_PREDICTION = Integer.MIN_VALUE;
+
+    final long runId;
+    final long routeId;
+
+    private final long[] timestamps;
+    private final double[] lats;
+    private final double[] lons;
+    private final double[] progresses;
+    private final int[] delays;
+    // Aligned with predictionStops (the route's full stop list); NO_PREDICTION for passed stops and stops without offset
+    private int[] predictedDelays = new int[0];
+    private List<Long> predictionStops = List.of();
+    private final AtomicLong sequence = new AtomicLong(); // odd while a write is in progress
+    private long count;
+
+    // Writer side only: the line the stored progress values refer to
+    private RouteLine line;
+
+    VehiclePositionBuffer(long runId, long routeId, int capacity) {
+        this.runId = runId;
+        this.routeId = routeId;
+        this.timestamps = new long[capacity];
+        this.lats = new double[capacity];
+        this.lons = new double[capacity];
+        this.progresses = new double[capacity];
+        this.delays = new int[capacity];
+    }
+
+    // Snaps and stores one position, unless it is not newer than the latest one or too far from the route
+    synchronized Outcome record(RouteLine currentLine, long timestampMillis, double lat, double lon,
+                                int startSecondOfDay, int secondOfDay, double maxSnapMeters, double delayHalfLifeMinutes) {
+        if (!currentLine.hasSameStops(line)) {
+            reset(currentLine); // the route's stops changed: stored progress no longer means anything
+        }
+        line = currentLine;
+
+        int last = (int) ((count - 1) % timestamps.length);
+        if (count > 0 && timestampMillis <= timestamps[last]) {
+            return Outcome.STALE;
+        }
+        int fromSegment = count > 0 ? (int) progresses[last] - 1 : 0;
+        double progress = currentLine.snap(lat, lon, fromSegment, maxSnapMeters);
+        if (progress < 0) {
+            return Outcome.OFF_ROUTE;
+        }
+        double minutesAtProgress = currentLine.minutesAt(progress);
+        int scheduled = startSecondOfDay + (int) Math.round(minutesAtProgress * 60);
+        // a run scheduled before midnight can be observed after it, and the other way round
+        int delay = Math.floorMod(secondOfDay - scheduled + 43_200, 86_400) - 43_200;
+
+        int slot = (int) (count % timestamps.length);
+        long s = sequence.get();
+        sequence.set(s + 1);
+        VarHandle.storeStoreFence();
+        timestamps[slot] = timestampMillis;
+        lats[slot] = lat;
+        lons[slot] = lon;
+        progresses[slot] = progress;
+        delays[slot] = delay;
+        count++;
+        // The delay is carried to the stops ahead and fades with the scheduled travel time to each of them,
+        // halving every delayHalfLifeMinutes: slack in the timetable lets a late run catch up over time.
+        int passed = (int) progress;
+        for (int point = 0; point < currentLine.pointCount(); point++) {
+            double minutesAhead = currentLine.minutes(point) - minutesAtProgress;
+            predictedDelays[currentLine.stopIndex(point)] = point <= passed
+                    ? NO_PREDICTION
+                    : (int) Math.round(delay * Math.pow(0.5, minutesAhead / delayHalfLifeMinutes));
+        }
+        sequence.set(s + 2);
+        return Outcome.ACCEPTED;
+    }
+
+    private void reset(RouteLine newLine) {
+        int[] predictions = new int[newLine.routeStopIds().size()];
+        Arrays.fill(predictions, NO_PREDICTION);
+        long s = sequence.get();
+        sequence.set(s + 1);
+        VarHandle.storeStoreFence();
+        count = 0;
+        predictedDelays = predictions;
+        predictionStops = newLine.routeStopIds();
+        sequence.set(s + 2);
+    }
+
+    // Predicted delays aligned with routeStopIds, or null if nothing was observed since notBeforeMillis
+    // or the route's stops changed since the last observation
+    int[] predictedDelays(List<Long> routeStopIds, long notBeforeMillis) {
+        while (true) {
+            long before = sequence.get();
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long stored = count;
+            long latest = stored == 0 ? Long.MIN_VALUE : timestamps[(int) ((stored - 1) % timestamps.length)];
+            List<Long> stops = predictionStops;
+            int[] delays = latest < notBeforeMillis ? null : predictedDelays.clone();
+            VarHandle.loadLoadFence();
+            if (sequence.get() == before) {
+                return delays != null && sameStops(stops, routeStopIds) ? delays : null;
+            }
+        }
+    }
+
+    // Same as predictedDelays, for a single stop of the route; NO_PREDICTION when there is none
+    int predictedDelay(List<Long> routeStopIds, int stopIndex, long notBeforeMillis) {
+        while (true) {
+            long before = sequence.get();
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long stored = count;
+            long latest = stored == 0 ? Long.MIN_VALUE : timestamps[(int) ((stored - 1) % timestamps.length)];
+            List<Long> stops = predictionStops;
+            int[] delays = predictedDelays;
+            int delay = latest < notBeforeMillis || stopIndex >= delays.length ? NO_PREDICTION : delays[stopIndex];
+            VarHandle.loadLoadFence();
+            if (sequence.get() == before) {
+                return sameStops(stops, routeStopIds) ? delay : NO_PREDICTION;
+            }
+        }
+    }
+
+    private static boolean sameStops(List<Long> a, List<Long> b) {
+        return a == b || a.equals(b);
+    }
+
+    // Up to limit positions, newest first
+    Position[] recent(int limit) {
+        while (true) {
+            long before = sequence.get();
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long stored = count;
+            int size = (int) Math.min(Math.min(stored, timestamps.length), limit);
+            Position[] positions = new Position[size];
+            for (int i = 0; i < size; i++) {
+                int slot = (int) ((stored - 1 - i) % timestamps.length);
+                positions[i] = new Position(timestamps[slot], lats[slot], lons[slot], progresses[slot], delays[slot]);
+            }
+            VarHandle.loadLoadFence();
+            if (sequence.get() == before) {
+                return positions;
+            }
+        }
+    }
+
+    enum Outcome { ACCEPTED, STALE, OFF_ROUTE }
+
+    record Position(long timestampMillis, double lat, double lon, double progress, int delaySeconds) {
+    }
+}
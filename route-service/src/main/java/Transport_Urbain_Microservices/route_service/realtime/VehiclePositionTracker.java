@@ -0,0 +1,195 @@
+package Transport_Urbain_Microservices.route_service.realtime;
+
+import Transport_Urbain_Microservices.route_service.dto.PositionIngestResultDto;
+import Transport_Urbain_Microservices.route_service.dto.RunPositionDto;
+import Transport_Urbain_Microservices.route_service.dto.VehiclePositionDto;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshotHolder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Latest observed positions of the stored runs of active routes, kept in memory only.
+// Each position is snapped onto the run's route line (built from the current timetable snapshot and its
+// stop coordinates) and compared with the scheduled time at that point of the route to get the run's delay.
+// Times of day are read in the server's zone, like the departure endpoints do.
+// The predicted delays at the stops ahead are recomputed for the observed run only, when a position is accepted,
+// so reads just copy them.
+@Component
+@RequiredArgsConstructor
+public class VehiclePositionTracker {
+
+    public static final int NO_PREDICTION = VehiclePositionBuffer.NO_PREDICTION;
+
+    private final TimetableSnapshotHolder snapshotHolder;
+
+    @Value("${app.realtime.positions-per-run:32}")
+    private int positionsPerRun;
+
+    @Value("${app.realtime.max-snap-meters:250}")
+    private double maxSnapMeters;
+
+    @Value("${app.realtime.delay-half-life-minutes:20}")
+    private double delayHalfLifeMinutes;
+
+    // Predictions of a run that has not reported for longer are not used
+    @Value("${app.realtime.prediction-ttl-minutes:10}")
+    private long predictionTtlMinutes;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<Long, VehiclePositionBuffer> buffers = new ConcurrentHashMap<>();
+    private volatile RouteLines lines = new RouteLines(-1);
+    private volatile long lastAcceptedAt;
+    private final Set<Long> observedRoutes = ConcurrentHashMap.newKeySet();
+
+    public PositionIngestResultDto ingest(List<VehiclePositionDto> positions) {
+        TimetableSnapshot snapshot = snapshotHolder.current();
+        RouteLines lines = linesFor(snapshot);
+        int accepted = 0;
+        int stale = 0;
+        int offRoute = 0;
+        int unknownRun = 0;
+        for (VehiclePositionDto position : positions) {
+            TimetableSnapshot.RunEntry run = snapshot.getRun(position.getRunId());
+            TimetableSnapshot.RouteTimetable route = run == null ? null : snapshot.getRoute(run.getRouteId());
+            if (route == null || !route.isActive()) {
+                unknownRun++;
+                continue;
+            }
+            RouteLine line = lines.get(route, snapshot);
+            if (line == null) {
+                offRoute++; // none of the route's stops can be placed
+                continue;
+            }
+            VehiclePositionBuffer buffer = buffers.get(run.getId());
+            if (buffer == null) {
+                buffer = buffers.computeIfAbsent(run.getId(),
+                        id -> new VehiclePositionBuffer(id, run.getRouteId(), positionsPerRun));
+            }
+            Instant timestamp = position.getTimestamp();
+            switch (buffer.record(line, timestamp.toEpochMilli(), position.getLat(), position.getLon(),
+                    run.getStartTime().toSecondOfDay(), secondOfDay(timestamp), maxSnapMeters, delayHalfLifeMinutes)) {
+                case ACCEPTED -> {
+                    accepted++;
+                    if (!observedRoutes.contains(run.getRouteId())) {
+                        observedRoutes.add(run.getRouteId());
+                    }
+                }
+                case STALE -> stale++;
+                case OFF_ROUTE -> offRoute++;
+            }
+        }
+        if (accepted > 0) {
+            lastAcceptedAt = System.currentTimeMillis();
+        }
+        return new PositionIngestResultDto(accepted, stale, offRoute, unknownRun);
+    }
+
+    // null when no position has been accepted for the run
+    public RunPositionDto getPosition(Long runId, int history) {
+        VehiclePositionBuffer buffer = buffers.get(runId);
+        if (buffer == null) {
+            return null;
+        }
+        VehiclePositionBuffer.Position[] recent = buffer.recent(Math.max(1, history));
+        if (recent.length == 0) {
+            return null;
+        }
+        VehiclePositionBuffer.Position latest = recent[0];
+        List<VehiclePositionDto> recentPositions = new ArrayList<>(recent.length);
+        for (VehiclePositionBuffer.Position position : recent) {
+            recentPositions.add(new VehiclePositionDto(runId, position.lat(), position.lon(),
+                    Instant.ofEpochMilli(position.timestampMillis())));
+        }
+
+        Long previousStopId = null;
+        Long nextStopId = null;
+        TimetableSnapshot snapshot = snapshotHolder.current();
+        TimetableSnapshot.RouteTimetable route = snapshot.getRoute(buffer.routeId);
+        RouteLine line = route == null ? null : linesFor(snapshot).get(route, snapshot);
+        if (line != null) {
+            int segment = Math.min((int) latest.progress(), line.pointCount() - 1);
+            previousStopId = line.stopId(segment);
+            nextStopId = segment + 1 < line.pointCount() ? line.stopId(segment + 1) : null;
+        }
+        return new RunPositionDto(runId, buffer.routeId, Instant.ofEpochMilli(latest.timestampMillis()),
+                latest.lat(), latest.lon(), latest.delaySeconds(), previousStopId, nextStopId, recentPositions);
+    }
+
+    // Predicted delay in seconds at each stop of routeStopIds (NO_PREDICTION for stops already passed or without offset),
+    // or null when the run has not reported recently
+    public int[] getPredictedDelays(Long runId, List<Long> routeStopIds) {
+        VehiclePositionBuffer buffer = runId == null ? null : buffers.get(runId);
+        return buffer == null ? null : buffer.predictedDelays(routeStopIds, predictionNotBefore());
+    }
+
+    public int getPredictedDelay(Long runId, List<Long> routeStopIds, int stopIndex) {
+        VehiclePositionBuffer buffer = runId == null ? null : buffers.get(runId);
+        return buffer == null ? NO_PREDICTION : buffer.predictedDelay(routeStopIds, stopIndex, predictionNotBefore());
+    }
+
+    // Routes with a run that reported since the previous call
+    public Set<Long> drainObservedRoutes() {
+        Set<Long> drained = new HashSet<>();
+        for (Iterator<Long> it = observedRoutes.iterator(); it.hasNext(); ) {
+            drained.add(it.next());
+            it.remove();
+        }
+        return drained;
+    }
+
+    // Whether some run may currently have a prediction
+    public boolean hasRecentPositions() {
+        return lastAcceptedAt >= predictionNotBefore();
+    }
+
+    private long predictionNotBefore() {
+        return System.currentTimeMillis() - predictionTtlMinutes * 60_000;
+    }
+
+    // Route lines are rebuilt lazily whenever another snapshot is served (a rollback serves an older one),
+    // and runs that no longer exist are forgotten
+    private RouteLines linesFor(TimetableSnapshot snapshot) {
+        RouteLines current = lines;
+        if (current.version == snapshot.getVersion()) {
+            return current;
+        }
+        synchronized (this) {
+            if (lines.version != snapshot.getVersion()) {
+                lines = new RouteLines(snapshot.getVersion());
+                buffers.values().removeIf(buffer -> {
+                    TimetableSnapshot.RunEntry run = snapshot.getRun(buffer.runId);
+                    return run == null || !run.getRouteId().equals(buffer.routeId);
+                });
+            }
+            return lines;
+        }
+    }
+
+    private int secondOfDay(Instant timestamp) {
+        int offset = zone.getRules().getOffset(timestamp).getTotalSeconds();
+        return (int) Math.floorMod(timestamp.getEpochSecond() + offset, 86_400L);
+    }
+
+    private static final class RouteLines {
+        final long version;
+        final Map<Long, Optional<RouteLine>> byRoute = new ConcurrentHashMap<>();
+
+        RouteLines(long version) {
+            this.version = version;
+        }
+
+        RouteLine get(TimetableSnapshot.RouteTimetable route, TimetableSnapshot snapshot) {
+            Optional<RouteLine> line = byRoute.get(route.getId());
+            if (line == null) {
+                line = byRoute.computeIfAbsent(route.getId(), id -> Optional.ofNullable(RouteLine.of(route, snapshot::getStop)));
+            }
+            return line.orElse(null);
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package Transport_Urbain_Microservices.route_service.repo;
+
+import Transport_Urbain_Microservices.route_service.entity.FrequencyTemplate;
+import Transport_Urbain_Microservices.route_service.entity.Route;
+import Transport_Urbain_Microservices.route_service.entity.RouteShape;
+import Transport_Urbain_Microservices.route_service.entity.RouteSpecialDay;
+import Transport_Urbain_Microservices.route_service.entity.Run;
+import Transport_Urbain_Microservices.route_service.entity.Stop;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Cache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.Types;
+import java.util.*;
+
+// Plain JDBC access for the data loaders and bulk writes: bulk id lookups and batched inserts that bypass
+// the persistence context, so imports neither issue one statement per row nor grow the session.
+@Repository
+@RequiredArgsConstructor
+public class BulkImportRepo {
+
+    @Value("${app.import.batch-size:1000}")
+    private int batchSize;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public Map<Long, Long> findStopIdsByOsmId() {
+        Map<Long, Long> ids = new HashMap<>();
+        jdbcTemplate.query("select osm_id, id from stop where osm_id is not null",
+                (RowCallbackHandler) rs -> ids.put(rs.getLong(1), rs.getLong(2)));
+        return ids;
+    }
+
+    public Map<Long, Long> findStopIdsByOsmIds(Collection<Long> osmIds) {
+        Map<Long, Long> ids = new HashMap<>();
+        if (osmIds.isEmpty()) {
+            return ids;
+        }
+        jdbcTemplate.query(con -> {
+                    var ps = con.prepareStatement("select osm_id, id from stop where osm_id = any(?)");
+                    Array array = con.createArrayOf("bigint", osmIds.toArray());
+                    ps.setArray(1, array);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> ids.put(rs.getLong(1), rs.getLong(2)));
+        return ids;
+    }
+
+    public Map<Long, Long> findRouteIdsByOsmId() {
+        Map<Long, Long> ids = new HashMap<>();
+        jdbcTemplate.query("select osm_id, id from route where osm_id is not null",
+                (RowCallbackHandler) rs -> ids.put(rs.getLong(1), rs.getLong(2)));
+        return ids;
+    }
+
+    // A re-imported route gets the geometry of the current file
+    public void upsertRouteShapes(List<RouteShape> shapes) {
+        jdbcTemplate.batchUpdate(
+                "insert into route_shape (route_id, polyline, point_count, source) values (?, ?, ?, ?) " +
+                        "on conflict (route_id) do update set polyline = excluded.polyline, " +
+                        "point_count = excluded.point_count, source = excluded.source",
+                shapes,
+                batchSize,
+                (ps, shape) -> {
+                    ps.setLong(1, shape.getRouteId());
+                    ps.setString(2, shape.getPolyline());
+                    ps.setInt(3, shape.getPointCount());
+                    ps.setString(4, shape.getSource().name());
+                });
+    }
+
+    public void insertStops(List<Stop> stops) {
+        jdbcTemplate.batchUpdate(
+                "insert into stop (osm_id, name, lat, lon, address) values (?, ?, ?, ?, ?)",
+                stops,
+                batchSize,
+                (ps, stop) -> {
+                    if (stop.getOsmId() != null) {
+                        ps.setLong(1, stop.getOsmId());
+                    } else {
+                        ps.setNull(1, Types.BIGINT);
+                    }
+                    ps.setString(2, stop.getName());
+                    ps.setDouble(3, stop.getLat());
+                    ps.setDouble(4, stop.getLon());
+                    ps.setString(5, stop.getAddress());
+                });
+    }
+
+    public void insertRouteStops(List<RouteStopRow> rows) {
+        insertRouteStops("route_stop", rows);
+    }
+
+    private void insertRouteStops(String table, List<RouteStopRow> rows) {
+        jdbcTemplate.batchUpdate(
+                "insert into " + table + " (id_route, id_stop, stop_order) values (?, ?, ?)",
+                rows,
+                batchSize,
+                (ps, row) -> {
+                    ps.setLong(1, row.getRouteId());
+                    ps.setLong(2, row.getStopId());
+                    ps.setInt(3, row.getStopOrder());
+                });
+    }
+
+    public Set<Long> findRouteIdsWithRegularRuns() {
+        Set<Long> routeIds = new HashSet<>();
+        jdbcTemplate.query("select distinct route_id from run where schedule_type = 'REGULAR'",
+                (RowCallbackHandler) rs -> routeIds.add(rs.getLong(1)));
+        return routeIds;
+    }
+
+    // Deletes the REGULAR runs that earlier schedule imports stored one per departure of what is now each
+    // template: same route and destination, the n-th run leaving n - 1 headways after the start time. Runs added
+    // by hand off that grid are kept. The run number counters of the routes are reset with them.
+    public int deleteRunsExpandedFrom(List<FrequencyTemplate> templates) {
+        int[][] counts = jdbcTemplate.batchUpdate(
+                "delete from run where route_id = ? and schedule_type = 'REGULAR' " +
+                        "and destination_stop_name is not distinct from ? and start_time between ? and ? " +
+                        "and start_time = cast(? as time) + make_interval(mins => (run_num - 1) * ?)",
+                templates,
+                batchSize,
+                (ps, template) -> {
+                    ps.setLong(1, template.getRoute().getId());
+                    ps.setString(2, template.getDestinationStopName());
+                    ps.setObject(3, template.getStartTime());
+                    ps.setObject(4, template.getEndTime());
+                    ps.setObject(5, template.getStartTime());
+                    ps.setInt(6, template.getHeadwayMinutes());
+                });
+        jdbcTemplate.update(con -> {
+            var ps = con.prepareStatement("delete from run_num_counter where route_id = any(?)");
+            ps.setArray(1, con.createArrayOf("bigint", templates.stream().map(template -> template.getRoute().getId()).toArray()));
+            return ps;
+        });
+        return Arrays.stream(counts).flatMapToInt(Arrays::stream).filter(count -> count > 0).sum();
+    }
+
+    public void stageGtfsRuns(List<Run> runs) {
+        jdbcTemplate.batchUpdate(
+                "insert into gtfs_stage_run (route_id, destination_stop_name, schedule_type, days_of_week_mask, specific_date, run_num, start_time) " +
+                        "values (?, ?, ?, ?, ?, ?, ?)",
+                runs,
+                batchSize,
+                (ps, run) -> {
+                    ps.setLong(1, run.getRoute().getId());
+                    ps.setString(2, run.getDestinationStopName());
+                    ps.setString(3, run.getScheduleType().name());
+                    if (run.getDaysOfWeekMask() != null) {
+                        ps.setInt(4, run.getDaysOfWeekMask());
+                    } else {
+                        ps.setNull(4, Types.INTEGER);
+                    }
+                    ps.setObject(5, run.getSpecificDate());
+                    ps.setInt(6, run.getRunNum());
+                    ps.setObject(7, run.getStartTime());
+                });
+    }
+
+    public void insertRunsWithIds(List<Run> runs) {
+        jdbcTemplate.batchUpdate(
+                "insert into run (id, route_id, destination_stop_name, schedule_type, days_of_week_mask, specific_date, run_num, start_time) " +
+                        "values (?, ?, ?, ?, ?, ?, ?, ?)",
+                runs,
+                batchSize,
+                (ps, run) -> {
+                    ps.setLong(1, run.getId());
+                    ps.setLong(2, run.getRoute().getId());
+                    ps.setString(3, run.getDestinationStopName());
+                    ps.setString(4, run.getScheduleType().name());
+                    if (run.getDaysOfWeekMask() != null) {
+                        ps.setInt(5, run.getDaysOfWeekMask());
+                    } else {
+                        ps.setNull(5, Types.INTEGER);
+                    }
+                    ps.setObject(6, run.getSpecificDate());
+                    ps.setInt(7, run.getRunNum());
+                    ps.setObject(8, run.getStartTime());
+                });
+    }
+
+    // Inserts new offsets and updates changed ones in one batch; rows must be unique per (route, stop)
+    public void upsertRouteStopOffsets(List<RouteStopOffsetRow> rows) {
+        jdbcTemplate.batchUpdate(
+                "insert into route_stop_offset (id_route, id_stop, cumulative_minutes_from_start) values (?, ?, ?) " +
+                        "on conflict (id_route, id_stop) do update set cumulative_minutes_from_start = excluded.cumulative_minutes_from_start " +
+                        "where route_stop_offset.cumulative_minutes_from_start <> excluded.cumulative_minutes_from_start",
+                rows,
+                batchSize,
+                (ps, row) -> {
+                    ps.setLong(1, row.getRouteId());
+                    ps.setLong(2, row.getStopId());
+                    ps.setInt(3, row.getCumulativeMinutesFromStart());
+                });
+    }
+
+    // Reserves ids from the table's identity sequence, so rows can be written with known keys from parallel batches
+    public long[] allocateIds(String table, int count) {
+        long[] ids = new long[count];
+        if (count == 0) {
+            return ids;
+        }
+        int[] i = {0};
+        jdbcTemplate.query("select nextval(pg_get_serial_sequence(?, 'id')) from generate_series(1, ?)",
+                (RowCallbackHandler) rs -> ids[i[0]++] = rs.getLong(1),
+                table, count);
+        return ids;
+    }
+
+    public Map<String, Long> findStopIdsByGtfsId() {
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query("select gtfs_id, id from stop where gtfs_id is not null",
+                (RowCallbackHandler) rs -> ids.put(rs.getString(1), rs.getLong(2)));
+        return ids;
+    }
+
+    public Map<String, Long> findRouteIdsByGtfsId() {
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query("select gtfs_id, id from route where gtfs_id is not null",
+                (RowCallbackHandler) rs -> ids.put(rs.getString(1), rs.getLong(2)));
+        return ids;
+    }
+
+    public void stageGtfsStops(List<Stop> stops) {
+        jdbcTemplate.batchUpdate(
+                "insert into gtfs_stage_stop (id, gtfs_id, name, lat, lon, address) values (?, ?, ?, ?, ?, ?)",
+                stops,
+                batchSize,
+                (ps, stop) -> {
+                    ps.setLong(1, stop.getId());
+                    ps.setString(2, stop.getGtfsId());
+                    ps.setString(3, stop.getName());
+                    ps.setDouble(4, stop.getLat());
+                    ps.setDouble(5, stop.getLon());
+                    ps.setString(6, stop.getAddress());
+                });
+    }
+
+    public void stageGtfsRoutes(List<Route> routes) {
+        jdbcTemplate.batchUpdate(
+                "insert into gtfs_stage_route (id, gtfs_id, name, num, description, status) values (?, ?, ?, ?, ?, ?)",
+                routes,
+                batchSize,
+                (ps, route) -> {
+                    ps.setLong(1, route.getId());
+                    ps.setString(2, route.getGtfsId());
+                    ps.setString(3, route.getName());
+                    ps.setString(4, route.getNum());
+                    ps.setString(5, route.getDescription());
+                    ps.setString(6, route.getStatus().name());
+                });
+    }
+
+    public void stageGtfsRouteStops(List<RouteStopRow> rows) {
+        insertRouteStops("gtfs_stage_route_stop", rows);
+    }
+
+    public void stageGtfsRouteStopOffsets(List<RouteStopOffsetRow> rows) {
+        jdbcTemplate.batchUpdate(
+                "insert into gtfs_stage_route_stop_offset (id_route, id_stop, cumulative_minutes_from_start) values (?, ?, ?)",
+                rows,
+                batchSize,
+                (ps, row) -> {
+                    ps.setLong(1, row.getRouteId());
+                    ps.setLong(2, row.getStopId());
+                    ps.setInt(3, row.getCumulativeMinutesFromStart());
+                });
+    }
+
+    // A GTFS import writes every row into these unlogged copies of the tables (columns only, no keys), from
+    // parallel batches on separate connections; swapInGtfsStaging then applies them in one transaction.
+    // route_id columns of the staged rows refer to the staged routes.
+    private static final Map<String, String> GTFS_STAGING_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        GTFS_STAGING_COLUMNS.put("stop", "id, gtfs_id, name, lat, lon, address");
+        GTFS_STAGING_COLUMNS.put("route", "id, gtfs_id, name, num, description, status");
+        GTFS_STAGING_COLUMNS.put("route_stop", "id_route, id_stop, stop_order");
+        GTFS_STAGING_COLUMNS.put("route_stop_offset", "id_route, id_stop, cumulative_minutes_from_start");
+        GTFS_STAGING_COLUMNS.put("run", "route_id, destination_stop_name, schedule_type, days_of_week_mask, specific_date, run_num, start_time");
+        GTFS_STAGING_COLUMNS.put("frequency_template", "route_id, destination_stop_name, days_of_week_mask, start_time, end_time, headway_minutes");
+        GTFS_STAGING_COLUMNS.put("route_special_day", "route_id, date");
+    }
+
+    // Empty staging tables; those of an earlier failed import are replaced
+    public void createGtfsStaging() {
+        dropGtfsStaging();
+        GTFS_STAGING_COLUMNS.forEach((table, columns) -> jdbcTemplate.execute(
+                "create unlogged table gtfs_stage_" + table + " as select " + columns + " from " + table + " with no data"));
+    }
+
+    public void dropGtfsStaging() {
+        GTFS_STAGING_COLUMNS.keySet().forEach(table -> jdbcTemplate.execute("drop table if exists gtfs_stage_" + table));
+    }
+
+    // Replaces the previous import with the staged one, all or nothing: stops and routes are upserted on their
+    // GTFS key (an existing route keeps the status it was set to), everything below the feed's routes (route
+    // stops, offsets, runs, templates, route special days, run number counters and shapes) is replaced, and
+    // routes and unused stops that left the feed are deleted. Global special days left without any special run
+    // are dropped as well.
+    @Transactional
+    public void swapInGtfsStaging() {
+        jdbcTemplate.update("insert into stop (" + GTFS_STAGING_COLUMNS.get("stop") + ") " +
+                "select " + GTFS_STAGING_COLUMNS.get("stop") + " from gtfs_stage_stop " +
+                "on conflict (gtfs_id) do update set name = excluded.name, lat = excluded.lat, " +
+                "lon = excluded.lon, address = excluded.address");
+        jdbcTemplate.update("insert into route (" + GTFS_STAGING_COLUMNS.get("route") + ") " +
+                "select " + GTFS_STAGING_COLUMNS.get("route") + " from gtfs_stage_route " +
+                "on conflict (gtfs_id) do update set name = excluded.name, num = excluded.num, " +
+                "description = excluded.description");
+
+        String gtfsRoutes = "(select id from route where gtfs_id is not null)";
+        jdbcTemplate.update("delete from route_stop_offset where id_route in " + gtfsRoutes);
+        jdbcTemplate.update("delete from route_stop where id_route in " + gtfsRoutes);
+        jdbcTemplate.update("delete from run where route_id in " + gtfsRoutes);
+        jdbcTemplate.update("delete from frequency_template where route_id in " + gtfsRoutes);
+        jdbcTemplate.update("delete from route_special_day where route_id in " + gtfsRoutes);
+        jdbcTemplate.update("delete from run_num_counter where route_id in " + gtfsRoutes);
+        jdbcTemplate.update("delete from route_shape where route_id in " + gtfsRoutes);
+        jdbcTemplate.update("delete from route where gtfs_id is not null " +
+                "and gtfs_id not in (select gtfs_id from gtfs_stage_route)");
+
+        for (String table : List.of("route_stop", "run", "frequency_template")) {
+            String columns = GTFS_STAGING_COLUMNS.get(table);
+            jdbcTemplate.update("insert into " + table + " (" + columns + ") select " + columns + " from gtfs_stage_" + table);
+        }
+        // a stop served twice by a loop route keeps its last offset, as the per-batch upsert did
+        jdbcTemplate.update("insert into route_stop_offset (" + GTFS_STAGING_COLUMNS.get("route_stop_offset") + ") " +
+                "select distinct on (id_route, id_stop) " + GTFS_STAGING_COLUMNS.get("route_stop_offset") +
+                " from gtfs_stage_route_stop_offset order by id_route, id_stop, cumulative_minutes_from_start desc");
+        jdbcTemplate.update("insert into route_special_day (route_id, date) " +
+                "select distinct route_id, date from gtfs_stage_route_special_day");
+
+        // stops of a previous import that are no longer in the feed, unless a route still serves them
+        jdbcTemplate.update("delete from stop s where s.gtfs_id is not null " +
+                "and s.gtfs_id not in (select gtfs_id from gtfs_stage_stop) " +
+                "and not exists (select 1 from route_stop rs where rs.id_stop = s.id) " +
+                "and not exists (select 1 from route_stop_offset o where o.id_stop = s.id)");
+        jdbcTemplate.update("delete from special_day d where not exists " +
+                "(select 1 from run r where r.schedule_type = 'SPECIAL' and r.specific_date = d.date)");
+    }
+
+    public void stageGtfsFrequencyTemplates(List<FrequencyTemplate> templates) {
+        jdbcTemplate.batchUpdate(
+                "insert into gtfs_stage_frequency_template (route_id, destination_stop_name, days_of_week_mask, start_time, end_time, headway_minutes) " +
+                        "values (?, ?, ?, ?, ?, ?)",
+                templates,
+                batchSize,
+                (ps, template) -> {
+                    ps.setLong(1, template.getRoute().getId());
+                    ps.setString(2, template.getDestinationStopName());
+                    ps.setInt(3, template.getDaysOfWeekMask());
+                    ps.setObject(4, template.getStartTime());
+                    ps.setObject(5, template.getEndTime());
+                    ps.setInt(6, template.getHeadwayMinutes());
+                });
+    }
+
+    public void stageGtfsRouteSpecialDays(List<RouteSpecialDay> days) {
+        jdbcTemplate.batchUpdate(
+                "insert into gtfs_stage_route_special_day (route_id, date) values (?, ?)",
+                days,
+                batchSize,
+                (ps, day) -> {
+                    ps.setLong(1, day.getRouteId());
+                    ps.setObject(2, day.getDate());
+                });
+    }
+
+    // These writes are invisible to Hibernate, so entities, collections and query results cached
+    // before an import would otherwise be served stale until they expire
+    public void evictSecondLevelCache() {
+        entityManagerFactory.getCache().unwrap(Cache.class).evictAllRegions();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class RouteStopRow {
+        private final long routeId;
+        private final long stopId;
+        private final int stopOrder;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class RouteStopOffsetRow {
+        private final long routeId;
+        private final long stopId;
+        private final int cumulativeMinutesFromStart;
+    }
+}
@@ -0,0 +1,24 @@
+package Transport_Urbain_Microservices.route_service.repo;
+
+import Transport_Urbain_Microservices.route_service.entity.FrequencyTemplate;
+import Transport_Urbain_Microservices.route_service.entity.Route;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Set;
+
+public interface FrequencyTemplateRepo extends JpaRepository<FrequencyTemplate, Long> {
+    List<FrequencyTemplate> findByRoute(Route route);
+
+    List<FrequencyTemplate> findAllByOrderById();
+
+    @Query("select distinct f.route.id from FrequencyTemplate f")
+    Set<Long> findRouteIdsWithTemplates();
+
+    @Modifying
+    @Query("delete from FrequencyTemplate f where f.route.id = :routeId")
+    void deleteByRouteId(@Param("routeId") Long routeId);
+}
@@ -0,0 +1,7 @@
+package Transport_Urbain_Microservices.route_service.repo;
+
+import Transport_Urbain_Microservices.route_service.entity.ImportManifest;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ImportManifestRepo extends JpaRepository<ImportManifest, String> {
+}
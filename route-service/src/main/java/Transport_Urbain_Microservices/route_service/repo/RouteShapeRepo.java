@@ -0,0 +1,7 @@
+package Transport_Urbain_Microservices.route_service.repo;
+
+import Transport_Urbain_Microservices.route_service.entity.RouteShape;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface RouteShapeRepo extends JpaRepository<RouteShape, Long> {
+}
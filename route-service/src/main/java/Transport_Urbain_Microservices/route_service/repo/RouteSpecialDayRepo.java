@@ -0,0 +1,20 @@
+package Transport_Urbain_Microservices.route_service.repo;
+
+import Transport_Urbain_Microservices.route_service.entity.RouteSpecialDay;
+import Transport_Urbain_Microservices.route_service.entity.RouteSpecialDayId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+
+public interface RouteSpecialDayRepo extends JpaRepository<RouteSpecialDay, RouteSpecialDayId> {
+    @Modifying
+    @Query("delete from RouteSpecialDay d where d.routeId = :routeId")
+    void deleteByRouteId(@Param("routeId") Long routeId);
+
+    @Modifying
+    @Query("delete from RouteSpecialDay d where d.date = :date")
+    void deleteByDate(@Param("date") LocalDate date);
+}
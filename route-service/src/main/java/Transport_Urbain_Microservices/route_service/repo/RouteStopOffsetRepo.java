@@ -1,14 +1,19 @@
 package Transport_Urbain_Microservices.route_service.repo;
 
 import Transport_Urbain_Microservices.route_service.entity.*;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.List;
 import java.util.Optional;
 
 public interface RouteStopOffsetRepo extends JpaRepository<RouteStopOffset, RouteStopId> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<RouteStopOffset> findByRouteAndStop(Route route, Stop stop);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<RouteStopOffset> findByRoute(Route route);
 
     void deleteByRoute(Route route);
@@ -4,7 +4,12 @@ import Transport_Urbain_Microservices.route_service.entity.Route;
 import Transport_Urbain_Microservices.route_service.entity.RouteStop;
 import Transport_Urbain_Microservices.route_service.entity.RouteStopId;
 import Transport_Urbain_Microservices.route_service.entity.Stop;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
 import java.util.List;
@@ -12,7 +17,21 @@ import java.util.List;
 public interface RouteStopRepo extends JpaRepository<RouteStop, RouteStopId> {
     void deleteByRoute(Route route);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<RouteStop> findByRouteOrderByStopOrderAsc(Route route);
 
     List<RouteStop> findByStop(Stop stop);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("select rs from RouteStop rs join fetch rs.route join fetch rs.stop " +
+            "where rs.route in :routes order by rs.route.id, rs.stopOrder")
+    List<RouteStop> findByRouteInWithStopsOrdered(@Param("routes") Collection<Route> routes);
+
+    // Every route's ordered stops with their names and offsets, in one pass over idx_route_stop_route_order
+    @Query("select new Transport_Urbain_Microservices.route_service.repo.RouteStopTimeRow(" +
+            "rs.route.id, s.id, rs.stopOrder, s.name, o.cumulativeMinutesFromStart) " +
+            "from RouteStop rs join rs.stop s " +
+            "left join RouteStopOffset o on o.route = rs.route and o.stop = rs.stop " +
+            "order by rs.route.id, rs.stopOrder")
+    List<RouteStopTimeRow> findAllStopTimesOrdered();
 }
@@ -0,0 +1,6 @@
+package Transport_Urbain_Microservices.route_service.repo;
+
+// One stop of a route's pattern, flattened from route_stop, stop and route_stop_offset.
+// cumulativeMinutes is null when the stop has no offset yet.
+public record RouteStopTimeRow(Long routeId, Long stopId, Integer stopOrder, String stopName, Integer cumulativeMinutes) {
+}
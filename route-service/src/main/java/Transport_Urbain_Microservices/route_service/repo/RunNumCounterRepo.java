@@ -0,0 +1,116 @@
+package Transport_Urbain_Microservices.route_service.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+
+// Run numbering counters (the run_num_counter table). Allocation locks only the counter rows of the
+// scopes involved, so concurrent run creation on other routes, days or dates never waits, and nothing
+// counts the run table except the first time a scope is used.
+@Repository
+@RequiredArgsConstructor
+public class RunNumCounterRepo {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Locks the counters of the given scopes until the surrounding transaction ends and returns the last
+    // number used in each. Missing counters are first created from the runs already stored.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<RunNumScope, Integer> lock(Collection<RunNumScope> scopes) {
+        Map<RunNumScope, Integer> last = selectForUpdate(scopes);
+        if (last.size() < scopes.size()) {
+            // seeded in the same order as they are locked: the inserts also lock their rows
+            List<RunNumScope> missing = scopes.stream()
+                    .filter(scope -> !last.containsKey(scope))
+                    .sorted(Comparator.comparing(RunNumScope::routeId).thenComparing(RunNumScope::key))
+                    .toList();
+            seed(missing);
+            last.putAll(selectForUpdate(missing));
+        }
+        return last;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void update(Map<RunNumScope, Integer> lastRunNums) {
+        jdbcTemplate.batchUpdate(
+                "update run_num_counter set last_run_num = ? where route_id = ? and scope = ?",
+                new ArrayList<>(lastRunNums.entrySet()),
+                lastRunNums.size(),
+                (ps, entry) -> {
+                    ps.setInt(1, entry.getValue());
+                    ps.setLong(2, entry.getKey().routeId());
+                    ps.setString(3, entry.getKey().key());
+                });
+    }
+
+    public void deleteByRoute(long routeId) {
+        jdbcTemplate.update("delete from run_num_counter where route_id = ?", routeId);
+    }
+
+    // Rows are locked in key order, so transactions sharing some scopes cannot deadlock
+    private Map<RunNumScope, Integer> selectForUpdate(Collection<RunNumScope> scopes) {
+        Map<RunNumScope, RunNumScope> byKey = new HashMap<>();
+        scopes.forEach(scope -> byKey.put(scope, scope));
+        Map<RunNumScope, Integer> last = new HashMap<>();
+        jdbcTemplate.query(con -> {
+                    var ps = con.prepareStatement(
+                            "select c.route_id, c.scope, c.last_run_num from run_num_counter c " +
+                                    "join unnest(?, ?) as s(route_id, scope) on s.route_id = c.route_id and s.scope = c.scope " +
+                                    "order by c.route_id, c.scope for update of c");
+                    ps.setArray(1, con.createArrayOf("bigint", scopes.stream().map(RunNumScope::routeId).toArray()));
+                    ps.setArray(2, con.createArrayOf("varchar", scopes.stream().map(RunNumScope::key).toArray()));
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> last.put(
+                        RunNumScope.fromKey(rs.getLong(1), rs.getString(2)), rs.getInt(3)));
+        return last;
+    }
+
+    // A concurrent seed of the same scope waits on the primary key and is then skipped
+    private void seed(List<RunNumScope> scopes) {
+        jdbcTemplate.batchUpdate(
+                "insert into run_num_counter (route_id, scope, last_run_num) " +
+                        "select ?, ?, coalesce(max(run_num), 0) from run where route_id = ? and (" +
+                        "(schedule_type = 'REGULAR' and (days_of_week_mask & ?) <> 0) or " +
+                        "(schedule_type = 'SPECIAL' and specific_date = ?)) " +
+                        "on conflict do nothing",
+                scopes,
+                scopes.size(),
+                (ps, scope) -> {
+                    ps.setLong(1, scope.routeId());
+                    ps.setString(2, scope.key());
+                    ps.setLong(3, scope.routeId());
+                    ps.setInt(4, scope.dayOfWeek() > 0 ? 1 << (scope.dayOfWeek() - 1) : 0);
+                    ps.setObject(5, scope.specificDate());
+                });
+    }
+
+    // Runs are numbered per route and day of week when regular (specificDate null),
+    // per route and date when special (dayOfWeek 0)
+    public record RunNumScope(long routeId, int dayOfWeek, LocalDate specificDate) {
+
+        public static RunNumScope regular(long routeId, int dayOfWeek) {
+            return new RunNumScope(routeId, dayOfWeek, null);
+        }
+
+        public static RunNumScope special(long routeId, LocalDate date) {
+            return new RunNumScope(routeId, 0, date);
+        }
+
+        String key() {
+            return specificDate != null ? specificDate.toString() : "day-" + dayOfWeek;
+        }
+
+        static RunNumScope fromKey(long routeId, String key) {
+            return key.startsWith("day-")
+                    ? regular(routeId, Integer.parseInt(key.substring(4)))
+                    : special(routeId, LocalDate.parse(key));
+        }
+    }
+}
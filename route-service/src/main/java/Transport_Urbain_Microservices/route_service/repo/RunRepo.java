@@ -4,21 +4,19 @@ import Transport_Urbain_Microservices.route_service.dto.RunDetailsDto;
 import Transport_Urbain_Microservices.route_service.entity.Route;
 import Transport_Urbain_Microservices.route_service.entity.Run;
 import Transport_Urbain_Microservices.route_service.entity.ScheduleType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
-import java.time.LocalTime;
-import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface RunRepo extends JpaRepository<Run, Long> {
-    long countByRouteAndScheduleTypeAndDayOfWeek(
-            Route route,
-            ScheduleType scheduleType,
-            Integer dayOfWeek
-    );
-
     long countByRouteAndScheduleTypeAndSpecificDate(
             Route route,
             ScheduleType scheduleType,
@@ -27,25 +25,27 @@ public interface RunRepo extends JpaRepository<Run, Long> {
 
     List<Run> findByRouteAndScheduleTypeAndSpecificDateBetween(Route route, ScheduleType scheduleType, LocalDate specificDateAfter, LocalDate specificDateBefore);
 
-    List<Run> findByRouteAndScheduleTypeAndDayOfWeekIn(Route route, ScheduleType scheduleType, Collection<Integer> dayOfWeeks);
-
-    List<Run> findByScheduleTypeAndDayOfWeekIn(ScheduleType scheduleType, Collection<Integer> dayOfWeeks);
-
     List<Run> findByScheduleTypeAndSpecificDateBetween(ScheduleType scheduleType, LocalDate specificDateAfter, LocalDate specificDateBefore);
 
     List<Run> findAllByRoute(Route route);
 
     boolean existsByRouteAndScheduleType(Route route, ScheduleType scheduleType);
 
-    boolean existsByRouteAndScheduleTypeAndDayOfWeekAndStartTime(Route route, ScheduleType scheduleType, Integer dayOfWeek, LocalTime startTime);
-
     List<Run> findByRoute(Route route);
 
     List<Run> findByRouteAndScheduleTypeAndSpecificDate(Route route, ScheduleType scheduleType, LocalDate specificDate);
 
-    List<Run> findByRouteAndScheduleTypeAndDayOfWeek(Route route, ScheduleType scheduleType, Integer dayOfWeek);
-
     long countByScheduleTypeAndSpecificDate(ScheduleType scheduleType, LocalDate specificDate);
 
     List<Run> findByScheduleTypeAndSpecificDate(ScheduleType scheduleType, LocalDate specificDate);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new Transport_Urbain_Microservices.route_service.repo.RunRow(" +
+            "r.id, r.route.id, r.destinationStopName, r.scheduleType, r.daysOfWeekMask, r.specificDate, r.runNum, r.startTime) " +
+            "from Run r")
+    List<RunRow> findAllRows();
+
+    @Modifying
+    @Query("delete from Run r where r.route.id = :routeId")
+    void deleteByRouteId(@Param("routeId") Long routeId);
 }
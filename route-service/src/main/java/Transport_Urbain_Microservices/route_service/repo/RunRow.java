@@ -0,0 +1,17 @@
+package Transport_Urbain_Microservices.route_service.repo;
+
+import Transport_Urbain_Microservices.route_service.entity.ScheduleType;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+// Run columns only, without the entity, its Route proxy or a persistence context entry
+public record RunRow(Long id,
+                     Long routeId,
+                     String destinationStopName,
+                     ScheduleType scheduleType,
+                     Integer daysOfWeekMask,
+                     LocalDate specificDate,
+                     Integer runNum,
+                     LocalTime startTime) {
+}
@@ -1,10 +1,29 @@
 package Transport_Urbain_Microservices.route_service.repo;
 
 import Transport_Urbain_Microservices.route_service.entity.SpecialDay;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.List;
 
 public interface SpecialDayRepo extends JpaRepository<SpecialDay, LocalDate> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     boolean existsByDate(LocalDate date);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Override
+    List<SpecialDay> findAll();
+
+    // Safe under concurrent run creation for the same date; the query space lets Hibernate
+    // invalidate only the cached special day queries
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "special_day"))
+    @Query(value = "insert into special_day (date) values (:date) on conflict do nothing", nativeQuery = true)
+    void insertIfAbsent(@Param("date") LocalDate date);
 }
@@ -0,0 +1,31 @@
+package Transport_Urbain_Microservices.route_service.service;
+
+import Transport_Urbain_Microservices.route_service.timetable.NetworkPublishedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Monotonic version of the route/stop/run data served by the read endpoints. It is bumped by the
+// snapshot swap itself (NetworkPublishedEvent), never by the commit of a write: the version then only
+// moves once the data it stands for is being served, so a client can never pair it with older data.
+@Component
+public class DatasetVersion {
+
+    // Versions restart with the process, so the ETag also carries the start time
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong(1);
+
+    public long current() {
+        return version.get();
+    }
+
+    public String etag() {
+        return "\"" + epoch + "-" + version.get() + "\"";
+    }
+
+    @EventListener
+    public void onNetworkPublished(NetworkPublishedEvent event) {
+        version.incrementAndGet();
+    }
+}
@@ -0,0 +1,269 @@
+package Transport_Urbain_Microservices.route_service.service;
+
+import Transport_Urbain_Microservices.route_service.entity.DaysOfWeekMask;
+import Transport_Urbain_Microservices.route_service.entity.ScheduleType;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshotHolder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Writes the served network version (the timetable snapshot) as a GTFS zip directly to the given stream.
+// Nothing is read from the database, and rows are written as they are taken from the snapshot, so the
+// export only adds the per-route stop sequences and offsets (one small array pair per route) to memory.
+@Service
+@RequiredArgsConstructor
+public class GtfsExportService {
+
+    private static final String AGENCY_ID = "1";
+    private static final int ROUTE_TYPE_BUS = 3;
+    private static final DateTimeFormatter GTFS_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final TimetableSnapshotHolder snapshotHolder;
+
+    @Value("${app.gtfs.agency-name:Urban Mobility}")
+    private String agencyName;
+
+    @Value("${app.gtfs.agency-url:http://localhost}")
+    private String agencyUrl;
+
+    @Value("${app.gtfs.timezone:Africa/Casablanca}")
+    private String timezone;
+
+    @Value("${app.gtfs.calendar-days:90}")
+    private int calendarDays;
+
+    public void writeFeed(OutputStream out) throws IOException {
+        TimetableSnapshot snapshot = snapshotHolder.current();
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // Not closed per entry: closing the writer would close the zip
+        Writer writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 64 * 1024);
+
+        startEntry(zip, "agency.txt");
+        writeRow(writer, "agency_id", "agency_name", "agency_url", "agency_timezone");
+        writeRow(writer, AGENCY_ID, agencyName, agencyUrl, timezone);
+        endEntry(zip, writer);
+
+        startEntry(zip, "stops.txt");
+        writeRow(writer, "stop_id", "stop_name", "stop_lat", "stop_lon");
+        for (TimetableSnapshot.StopEntry stop : snapshot.getStops().values()) {
+            writeRow(writer, String.valueOf(stop.getId()), stop.getName(),
+                    String.valueOf(stop.getLat()), String.valueOf(stop.getLon()));
+        }
+        endEntry(zip, writer);
+
+        startEntry(zip, "routes.txt");
+        writeRow(writer, "route_id", "agency_id", "route_short_name", "route_long_name", "route_type");
+        for (TimetableSnapshot.RouteTimetable route : snapshot.getRoutes().values()) {
+            // inactive routes have no service, as in the run endpoints
+            if (route.isActive()) {
+                writeRow(writer, String.valueOf(route.getId()), AGENCY_ID, route.getNum(), route.getName(),
+                        String.valueOf(ROUTE_TYPE_BUS));
+            }
+        }
+        endEntry(zip, writer);
+
+        Map<Long, RoutePattern> patterns = loadPatterns(snapshot);
+        List<TimetableSnapshot.RunEntry> runs = snapshot.getStoredRuns().stream()
+                .filter(run -> isActive(snapshot, run.getRouteId()))
+                .toList();
+        List<TimetableSnapshot.TemplateEntry> templates = snapshot.getTemplates().stream()
+                .filter(t -> isActive(snapshot, t.getRouteId()))
+                .toList();
+
+        // Routes with special days of their own get their own regular services, skipping those dates
+        Map<Long, Set<LocalDate>> routeSpecialDays = snapshot.getRouteSpecialDays();
+        Map<String, RegularService> regularServices = new TreeMap<>();
+        Set<LocalDate> specialDates = new TreeSet<>();
+        startEntry(zip, "trips.txt");
+        writeRow(writer, "route_id", "service_id", "trip_id", "trip_headsign");
+        for (TimetableSnapshot.RunEntry run : runs) {
+            Long routeId = run.getRouteId();
+            String serviceId;
+            if (run.getScheduleType() == ScheduleType.SPECIAL) {
+                specialDates.add(run.getSpecificDate());
+                serviceId = specialServiceId(run.getSpecificDate());
+            } else {
+                serviceId = regularService(regularServices, run.getDaysOfWeekMask(), routeId, routeSpecialDays);
+            }
+            writeRow(writer, String.valueOf(routeId), serviceId, runTripId(run), run.getDestinationStopName());
+        }
+        for (TimetableSnapshot.TemplateEntry template : templates) {
+            Long routeId = template.getRouteId();
+            writeRow(writer, String.valueOf(routeId),
+                    regularService(regularServices, template.getDaysOfWeekMask(), routeId, routeSpecialDays),
+                    templateTripId(template), template.getDestinationStopName());
+        }
+        endEntry(zip, writer);
+
+        startEntry(zip, "stop_times.txt");
+        writeRow(writer, "trip_id", "arrival_time", "departure_time", "stop_id", "stop_sequence");
+        for (TimetableSnapshot.RunEntry run : runs) {
+            RoutePattern pattern = patterns.get(run.getRouteId());
+            if (pattern != null) {
+                writeStopTimes(writer, runTripId(run), run.getStartTime(), pattern);
+            }
+        }
+        for (TimetableSnapshot.TemplateEntry template : templates) {
+            RoutePattern pattern = patterns.get(template.getRouteId());
+            if (pattern != null) {
+                writeStopTimes(writer, templateTripId(template), template.getStartTime(), pattern);
+            }
+        }
+        endEntry(zip, writer);
+
+        if (!templates.isEmpty()) {
+            startEntry(zip, "frequencies.txt");
+            writeRow(writer, "trip_id", "start_time", "end_time", "headway_secs", "exact_times");
+            for (TimetableSnapshot.TemplateEntry template : templates) {
+                List<LocalTime> departures = template.departureTimes();
+                // GTFS end_time is exclusive, ours is the last departure itself
+                int end = departures.getLast().toSecondOfDay() + 1;
+                writeRow(writer, templateTripId(template), formatTime(template.getStartTime().toSecondOfDay()),
+                        formatTime(end), String.valueOf(template.getHeadwayMinutes() * 60), "1");
+            }
+            endEntry(zip, writer);
+        }
+
+        startEntry(zip, "calendar_dates.txt");
+        writeRow(writer, "service_id", "date", "exception_type");
+        // Regular services are listed date by date over the export window; special dates only run SPECIAL runs
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < calendarDays; i++) {
+            LocalDate date = today.plusDays(i);
+            if (snapshot.isSpecialDay(date)) {
+                continue;
+            }
+            int dayOfWeek = date.getDayOfWeek().getValue();
+            for (Map.Entry<String, RegularService> service : regularServices.entrySet()) {
+                if (DaysOfWeekMask.contains(service.getValue().daysOfWeekMask(), dayOfWeek)
+                        && !service.getValue().skippedDates().contains(date)) {
+                    writeRow(writer, service.getKey(), date.format(GTFS_DATE), "1");
+                }
+            }
+        }
+        for (LocalDate date : specialDates) {
+            writeRow(writer, specialServiceId(date), date.format(GTFS_DATE), "1");
+        }
+        endEntry(zip, writer);
+
+        zip.finish();
+        zip.flush();
+    }
+
+    private static boolean isActive(TimetableSnapshot snapshot, Long routeId) {
+        TimetableSnapshot.RouteTimetable route = snapshot.getRoute(routeId);
+        return route != null && route.isActive();
+    }
+
+    // Ordered stops of each active route that have an offset, as parallel arrays
+    private static Map<Long, RoutePattern> loadPatterns(TimetableSnapshot snapshot) {
+        Map<Long, RoutePattern> patterns = new HashMap<>();
+        for (TimetableSnapshot.RouteTimetable route : snapshot.getRoutes().values()) {
+            if (!route.isActive()) {
+                continue;
+            }
+            int timed = (int) route.getCumulativeMinutes().stream().filter(Objects::nonNull).count();
+            if (timed == 0) {
+                continue;
+            }
+            long[] stopIds = new long[timed];
+            int[] minutes = new int[timed];
+            int pos = 0;
+            for (int i = 0; i < route.getStopIds().size(); i++) {
+                Integer offset = route.getCumulativeMinutes().get(i);
+                if (offset != null) {
+                    stopIds[pos] = route.getStopIds().get(i);
+                    minutes[pos] = offset;
+                    pos++;
+                }
+            }
+            patterns.put(route.getId(), new RoutePattern(stopIds, minutes));
+        }
+        return patterns;
+    }
+
+    private void writeStopTimes(Writer writer, String tripId, LocalTime startTime, RoutePattern pattern) throws IOException {
+        int startSeconds = startTime.toSecondOfDay();
+        for (int i = 0; i < pattern.stopIds.length; i++) {
+            // past-midnight arrivals keep counting hours (25:10:00), as GTFS expects
+            String time = formatTime(startSeconds + pattern.minutes[i] * 60);
+            writeRow(writer, tripId, time, time, String.valueOf(pattern.stopIds[i]), String.valueOf(i + 1));
+        }
+    }
+
+    private static String runTripId(TimetableSnapshot.RunEntry run) {
+        return "run-" + run.getId();
+    }
+
+    private static String templateTripId(TimetableSnapshot.TemplateEntry template) {
+        return "freq-" + template.getId();
+    }
+
+    private static String regularService(Map<String, RegularService> services, int daysOfWeekMask, Long routeId,
+                                         Map<Long, Set<LocalDate>> routeSpecialDays) {
+        Set<LocalDate> skipped = routeSpecialDays.get(routeId);
+        String serviceId = skipped == null ? "regular-" + daysOfWeekMask : "regular-" + daysOfWeekMask + "-route-" + routeId;
+        services.computeIfAbsent(serviceId, k -> new RegularService(daysOfWeekMask, skipped == null ? Set.of() : skipped));
+        return serviceId;
+    }
+
+    private static String specialServiceId(LocalDate date) {
+        return "special-" + date.format(GTFS_DATE);
+    }
+
+    private static String formatTime(int seconds) {
+        return String.format("%02d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
+
+    private static void startEntry(ZipOutputStream zip, String name) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+    }
+
+    private static void endEntry(ZipOutputStream zip, Writer writer) throws IOException {
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    private static void writeRow(Writer writer, String... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escape(values[i]));
+        }
+        writer.write('\n');
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private record RegularService(int daysOfWeekMask, Set<LocalDate> skippedDates) {
+    }
+
+    private static class RoutePattern {
+        final long[] stopIds;
+        final int[] minutes;
+
+        RoutePattern(long[] stopIds, int[] minutes) {
+            this.stopIds = stopIds;
+            this.minutes = minutes;
+        }
+    }
+}
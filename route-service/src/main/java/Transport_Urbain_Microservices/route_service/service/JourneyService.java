@@ -0,0 +1,74 @@
+package Transport_Urbain_Microservices.route_service.service;
+
+import Transport_Urbain_Microservices.route_service.dto.JourneyDto;
+import Transport_Urbain_Microservices.route_service.exception.ResourceNotFoundException;
+import Transport_Urbain_Microservices.route_service.timetable.RaptorNetwork;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshotHolder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class JourneyService {
+
+    // The search allocates its per-round arrays up front, so the number of rounds a caller may ask for is bounded
+    public static final int MAX_TRANSFERS = 8;
+
+    private final TimetableSnapshotHolder snapshotHolder;
+
+    public JourneyDto planJourney(Long fromStopId, Long toStopId, LocalDateTime departAt, int maxTransfers) {
+        if (maxTransfers < 0 || maxTransfers > MAX_TRANSFERS) {
+            throw new IllegalArgumentException("maxTransfers must be between 0 and " + MAX_TRANSFERS);
+        }
+        TimetableSnapshot snapshot = snapshotHolder.current();
+        if (!snapshot.hasStop(fromStopId) || !snapshot.hasStop(toStopId)) {
+            throw new IllegalArgumentException("Stop not found");
+        }
+        LocalTime departureTime = departAt.toLocalTime().withSecond(0).withNano(0);
+        if (fromStopId.equals(toStopId)) {
+            return new JourneyDto(fromStopId, toStopId, departAt.toLocalDate(), departureTime, departureTime, 0, List.of());
+        }
+
+        RaptorNetwork network = snapshot.getRaptorNetwork(departAt.toLocalDate());
+        Integer origin = network.indexOfStop(fromStopId);
+        Integer target = network.indexOfStop(toStopId);
+        RaptorNetwork.Itinerary itinerary = origin == null || target == null ? null
+                : network.earliestArrival(origin, target, departAt.getHour() * 60 + departAt.getMinute(), maxTransfers + 1);
+        if (itinerary == null) {
+            throw new ResourceNotFoundException("No journey found from stop " + fromStopId + " to stop " + toStopId);
+        }
+
+        List<JourneyDto.LegDto> legs = new ArrayList<>(itinerary.getLegs().size());
+        for (RaptorNetwork.Leg leg : itinerary.getLegs()) {
+            TimetableSnapshot.RunEntry run = snapshot.getRuns().get(leg.getRunIndex());
+            TimetableSnapshot.RouteTimetable route = snapshot.getRoute(leg.getRouteId());
+            legs.add(new JourneyDto.LegDto(
+                    run.getId(),
+                    route.getId(),
+                    route.getNum(),
+                    route.getName(),
+                    leg.getFromStopId(),
+                    snapshot.getStopNames().get(leg.getFromStopId()),
+                    leg.getToStopId(),
+                    snapshot.getStopNames().get(leg.getToStopId()),
+                    LocalTime.MIDNIGHT.plusMinutes(leg.getDepartureMinute()),
+                    LocalTime.MIDNIGHT.plusMinutes(leg.getArrivalMinute())
+            ));
+        }
+        return new JourneyDto(
+                fromStopId,
+                toStopId,
+                departAt.toLocalDate(),
+                departureTime,
+                LocalTime.MIDNIGHT.plusMinutes(itinerary.getArrivalMinute()),
+                Math.max(0, legs.size() - 1),
+                legs
+        );
+    }
+}
@@ -0,0 +1,35 @@
+package Transport_Urbain_Microservices.route_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.function.Function;
+
+// Writes rows of a timetable snapshot as newline-delimited JSON. Each row is mapped and serialized on its own,
+// so no response-sized list of DTOs is ever built, and the output is flushed every CHUNK_SIZE rows.
+@Component
+@RequiredArgsConstructor
+public class NdjsonStreamer {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final ObjectMapper objectMapper;
+
+    public <E, D> void write(Collection<E> rows, Function<E, D> mapper, OutputStream out) throws IOException {
+        OutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        int written = 0;
+        for (E row : rows) {
+            buffered.write(objectMapper.writeValueAsBytes(mapper.apply(row)));
+            buffered.write('\n');
+            if (++written % CHUNK_SIZE == 0) {
+                buffered.flush();
+            }
+        }
+        buffered.flush();
+    }
+}
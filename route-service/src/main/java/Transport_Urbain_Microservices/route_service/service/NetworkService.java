@@ -0,0 +1,55 @@
+package Transport_Urbain_Microservices.route_service.service;
+
+import Transport_Urbain_Microservices.route_service.dto.NetworkStatusDto;
+import Transport_Urbain_Microservices.route_service.dto.NetworkVersionDto;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshotHolder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+// Edit sessions on the published network: hold publishing, stage any number of edits through the usual
+// write endpoints, then publish them as one version (or roll the served version back).
+// Rollback does not revert data: it only serves an older snapshot, the database keeps every committed write
+// and the next publish serves them again. Held state and retained versions live in memory only, so a restart
+// publishes whatever is committed.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NetworkService {
+
+    private final TimetableSnapshotHolder snapshotHolder;
+
+    public NetworkStatusDto getStatus() {
+        TimetableSnapshot served = snapshotHolder.current();
+        List<NetworkVersionDto> versions = snapshotHolder.getRetainedVersions().stream()
+                .map(snapshot -> new NetworkVersionDto(
+                        snapshot.getVersion(),
+                        snapshot.getBuiltAt(),
+                        snapshot.getRoutes().size(),
+                        snapshot.getRuns().size(),
+                        snapshot == served))
+                .toList();
+        return new NetworkStatusDto(served.getVersion(), snapshotHolder.isHeld(),
+                snapshotHolder.getUnpublishedChanges(), versions);
+    }
+
+    public NetworkStatusDto hold() {
+        snapshotHolder.hold();
+        return getStatus();
+    }
+
+    public NetworkStatusDto publish() {
+        TimetableSnapshot snapshot = snapshotHolder.publish();
+        log.info("Network version {} published", snapshot.getVersion());
+        return getStatus();
+    }
+
+    public NetworkStatusDto rollback(long version) {
+        snapshotHolder.rollback(version);
+        log.info("Network rolled back to version {}, publishing held", version);
+        return getStatus();
+    }
+}
@@ -0,0 +1,48 @@
+package Transport_Urbain_Microservices.route_service.service;
+
+import Transport_Urbain_Microservices.route_service.dto.PositionIngestResultDto;
+import Transport_Urbain_Microservices.route_service.dto.RunPositionDto;
+import Transport_Urbain_Microservices.route_service.dto.VehiclePositionDto;
+import Transport_Urbain_Microservices.route_service.exception.ResourceNotFoundException;
+import Transport_Urbain_Microservices.route_service.realtime.VehiclePositionTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class RealtimeService {
+
+    private static final int MAX_POSITIONS_PER_REQUEST = 50_000;
+    private static final int MAX_HISTORY = 256;
+
+    private final VehiclePositionTracker vehiclePositionTracker;
+
+    public PositionIngestResultDto ingestPositions(List<VehiclePositionDto> positions) {
+        if (positions == null || positions.isEmpty()) {
+            throw new IllegalArgumentException("At least one position is required");
+        }
+        if (positions.size() > MAX_POSITIONS_PER_REQUEST) {
+            throw new IllegalArgumentException("At most " + MAX_POSITIONS_PER_REQUEST + " positions can be sent at once");
+        }
+        for (VehiclePositionDto position : positions) {
+            if (position.getRunId() == null || position.getTimestamp() == null
+                    || position.getLat() == null || position.getLon() == null) {
+                throw new IllegalArgumentException("Each position needs a runId, lat, lon and timestamp");
+            }
+            if (position.getLat() < -90 || position.getLat() > 90 || position.getLon() < -180 || position.getLon() > 180) {
+                throw new IllegalArgumentException("Invalid coordinates for run " + position.getRunId());
+            }
+        }
+        return vehiclePositionTracker.ingest(positions);
+    }
+
+    public RunPositionDto getRunPosition(Long runId, int history) {
+        RunPositionDto position = vehiclePositionTracker.getPosition(runId, Math.min(history, MAX_HISTORY));
+        if (position == null) {
+            throw new ResourceNotFoundException("No position received for run " + runId);
+        }
+        return position;
+    }
+}
@@ -2,30 +2,53 @@ package Transport_Urbain_Microservices.route_service.service;
 
 import Transport_Urbain_Microservices.route_service.dto.*;
 import Transport_Urbain_Microservices.route_service.entity.*;
+import Transport_Urbain_Microservices.route_service.exception.ResourceNotFoundException;
+import Transport_Urbain_Microservices.route_service.geo.EncodedPolyline;
+import Transport_Urbain_Microservices.route_service.geo.PolylineSimplifier;
 import Transport_Urbain_Microservices.route_service.mapper.RouteMapper;
+import Transport_Urbain_Microservices.route_service.repo.FrequencyTemplateRepo;
 import Transport_Urbain_Microservices.route_service.repo.RouteRepo;
+import Transport_Urbain_Microservices.route_service.repo.RouteShapeRepo;
+import Transport_Urbain_Microservices.route_service.repo.RouteSpecialDayRepo;
 import Transport_Urbain_Microservices.route_service.repo.RouteStopOffsetRepo;
 import Transport_Urbain_Microservices.route_service.repo.RouteStopRepo;
+import Transport_Urbain_Microservices.route_service.repo.RunNumCounterRepo;
+import Transport_Urbain_Microservices.route_service.repo.RunRepo;
 import Transport_Urbain_Microservices.route_service.repo.StopRepo;
+import Transport_Urbain_Microservices.route_service.timetable.NetworkChangedEvent;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshotHolder;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class RouteService {
 
+    private static final int MAX_ZOOM = 22;
+
     private final RouteRepo  routeRepo;
     private final StopRepo stopRepo;
     private final RouteStopRepo routeStopRepo;
     private final RouteStopOffsetRepo  routeStopOffsetRepo;
+    private final RouteShapeRepo routeShapeRepo;
+    private final RouteSpecialDayRepo routeSpecialDayRepo;
+    private final RunNumCounterRepo runNumCounterRepo;
+    private final RunRepo runRepo;
+    private final FrequencyTemplateRepo frequencyTemplateRepo;
     private final RouteMapper routeMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final NdjsonStreamer ndjsonStreamer;
+    private final EntityManager entityManager;
+    private final TimetableSnapshotHolder snapshotHolder;
 
     @Transactional
     public RouteDto createRoute(RouteDto routeDto) {
@@ -78,6 +101,7 @@ public class RouteService {
             RouteStopOffset offset = new RouteStopOffset(rs.getRoute(), rs.getStop(), c);
             routeStopOffsetRepo.save(offset);
         }
+        eventPublisher.publishEvent(new NetworkChangedEvent("route created"));
 
         return routeMapper.toDto(savedRoute);
     }
@@ -91,11 +115,15 @@ public class RouteService {
         existingRoute.setNum(changeRouteInfoDto.getNum());
         existingRoute.setDescription(changeRouteInfoDto.getDescription());
         existingRoute = routeRepo.save(existingRoute);
+        eventPublisher.publishEvent(new NetworkChangedEvent("route info updated"));
         return routeMapper.toDto(existingRoute);
     }
 
+    // Only the differences with the stored stops and offsets are written: a stop inserted in the middle of
+    // a route costs one route stop and one offset insert plus the order updates of the stops after it.
+    // The statements are sent as JDBC batches (hibernate.jdbc.batch_size) when the transaction flushes.
     @Transactional
-    public RouteDto updateRouteStops(ChangeRouteStopsDto changeDto) {
+    public RouteChangeResultDto updateRouteStops(ChangeRouteStopsDto changeDto) {
         if (changeDto.getRouteStops().size() != changeDto.getCumulativeMinutesFromStartForStops().size()) {
             throw new IllegalArgumentException("Route stops and cumulative minutes lists must be the same size");
         }
@@ -104,48 +132,76 @@ public class RouteService {
                 ()-> new RuntimeException("Route with id " + changeDto.getId() + " not found")
         );
 
-
         for (int i = 0; i < changeDto.getCumulativeMinutesFromStartForStops().size()-1; i++) {
             if (changeDto.getCumulativeMinutesFromStartForStops().get(i)> changeDto.getCumulativeMinutesFromStartForStops().get(i+1)){
                 throw new IllegalArgumentException("CumulativeMinutesFromStart must be in ascending order");
             }
         }
 
-        routeStopOffsetRepo.deleteByRoute(route);
+        List<Long> stopIds = changeDto.getRouteStops();
+        Set<Long> wanted = new HashSet<>(stopIds);
+        if (wanted.size() != stopIds.size()) {
+            throw new IllegalArgumentException("A stop can appear only once in a route");
+        }
 
-        List<Stop> stops = stopRepo.findAllById(changeDto.getRouteStops());
-        if (stops.size() != changeDto.getRouteStops().size()) {
+        Map<Long, RouteStop> current = new HashMap<>();
+        for (RouteStop rs : route.getRouteStops()) {
+            current.put(rs.getStop().getId(), rs);
+        }
+        // Only stops that are new to the route have to be loaded
+        List<Long> addedIds = stopIds.stream().filter(id -> !current.containsKey(id)).toList();
+        Map<Long, Stop> addedStops = stopRepo.findAllById(addedIds).stream()
+                .collect(Collectors.toMap(Stop::getId, stop -> stop));
+        if (addedStops.size() != addedIds.size()) {
             throw new IllegalArgumentException("One or more stop IDs are invalid");
         }
 
-        Map<Long, Stop> stopMap = stops.stream().collect(Collectors.toMap(Stop::getId, stop -> stop));
-
-        route.getRouteStops().clear();
-
-        for (int i = 0; i < changeDto.getRouteStops().size(); i++) {
-            Long stopId = changeDto.getRouteStops().get(i);
-            Stop stop = stopMap.get(stopId);
-
-            RouteStop routeStop = new RouteStop();
-            routeStop.setRoute(route);
-            routeStop.setStop(stop);
-            routeStop.setStopOrder(i+1);
-
-            route.getRouteStops().add(routeStop);
+        RouteChangeResultDto result = new RouteChangeResultDto();
+        int sizeBefore = route.getRouteStops().size();
+        route.getRouteStops().removeIf(rs -> !wanted.contains(rs.getStop().getId()));
+        result.setStopsDeleted(sizeBefore - route.getRouteStops().size());
+
+        List<Stop> orderedStops = new ArrayList<>(stopIds.size());
+        for (int i = 0; i < stopIds.size(); i++) {
+            RouteStop existing = current.get(stopIds.get(i));
+            if (existing == null) {
+                RouteStop routeStop = new RouteStop(route, addedStops.get(stopIds.get(i)), i + 1);
+                route.getRouteStops().add(routeStop);
+                orderedStops.add(routeStop.getStop());
+                result.setStopsInserted(result.getStopsInserted() + 1);
+            } else {
+                if (existing.getStopOrder() != i + 1) {
+                    existing.setStopOrder(i + 1);
+                    result.setStopsReordered(result.getStopsReordered() + 1);
+                }
+                orderedStops.add(existing.getStop());
+            }
         }
-        Route updatedRoute = routeRepo.save(route);
 
-        List<RouteStop> sortedStops = updatedRoute.getRouteStops().stream()
-                .sorted(Comparator.comparing(RouteStop::getStopOrder))
-                .toList();
+        applyOffsets(route, orderedStops, changeDto.getCumulativeMinutesFromStartForStops(), result);
+        // A shape drawn through the stops follows them; one drawn along the streets waits for the next OSM import
+        routeShapeRepo.findById(route.getId())
+                .filter(shape -> shape.getSource() == RouteShapeSource.STOPS)
+                .ifPresent(shape -> {
+                    double[] points = stopPoints(orderedStops);
+                    shape.setPolyline(EncodedPolyline.encode(points));
+                    shape.setPointCount(points.length / 2);
+                });
+        eventPublisher.publishEvent(new NetworkChangedEvent("route stops updated"));
+        result.setRoute(routeMapper.toDto(route));
+        return result;
+    }
 
-        for (int i = 0; i < sortedStops.size(); i++) {
-            RouteStop rs = sortedStops.get(i);
-            Integer c = changeDto.getCumulativeMinutesFromStartForStops().get(i);
-            RouteStopOffset offset = new RouteStopOffset(rs.getRoute(), rs.getStop(), c);
-            routeStopOffsetRepo.save(offset);
+    private static double[] stopPoints(List<Stop> stops) {
+        double[] points = new double[stops.size() * 2];
+        int count = 0;
+        for (Stop stop : stops) {
+            if (stop.getLat() != null && stop.getLon() != null) {
+                points[count++] = stop.getLat();
+                points[count++] = stop.getLon();
+            }
         }
-        return routeMapper.toDto(updatedRoute);
+        return Arrays.copyOf(points, count);
     }
 
     @Transactional
@@ -154,11 +210,13 @@ public class RouteService {
                 ()-> new RuntimeException("Route with id " + changeRouteStatusDto.getId() + " not found")
         );
         existingRoute.setStatus(changeRouteStatusDto.getNewRouteStatus());
-        return routeMapper.toDto(routeRepo.save(existingRoute));
+        Route savedRoute = routeRepo.save(existingRoute);
+        eventPublisher.publishEvent(new NetworkChangedEvent("route status updated"));
+        return routeMapper.toDto(savedRoute);
     }
 
     @Transactional
-    public RouteDto updateRouteOffsets(ChangeRouteOffsetsDto updateDto) {
+    public RouteChangeResultDto updateRouteOffsets(ChangeRouteOffsetsDto updateDto) {
         Route route = routeRepo.findById(updateDto.getId()).orElseThrow(
                 () -> new RuntimeException("Route with id " + updateDto.getId() + " not found")
         );
@@ -168,41 +226,101 @@ public class RouteService {
                 throw new IllegalArgumentException("CumulativeMinutesFromStart must be in ascending order");
             }
         }
-        List<RouteStop> sortedStops = route.getRouteStops().stream()
+        List<Stop> orderedStops = route.getRouteStops().stream()
                 .sorted(Comparator.comparing(RouteStop::getStopOrder))
+                .map(RouteStop::getStop)
                 .toList();
 
-        if (sortedStops.size() != updateDto.getCumulativeMinutesFromStartForStops().size()) {
+        if (orderedStops.size() != updateDto.getCumulativeMinutesFromStartForStops().size()) {
             throw new IllegalArgumentException("Cumulative minutes list must match the number of stops in the route");
         }
-        routeStopOffsetRepo.deleteByRoute(route);
 
-        for (int i = 0; i < sortedStops.size(); i++) {
-            RouteStop rs = sortedStops.get(i);
-            Integer cum = updateDto.getCumulativeMinutesFromStartForStops().get(i);
-            RouteStopOffset offset = new RouteStopOffset(rs.getRoute(), rs.getStop(), cum);
-            routeStopOffsetRepo.save(offset);
+        RouteChangeResultDto result = new RouteChangeResultDto();
+        applyOffsets(route, orderedStops, updateDto.getCumulativeMinutesFromStartForStops(), result);
+        eventPublisher.publishEvent(new NetworkChangedEvent("route offsets updated"));
+        result.setRoute(routeMapper.toDto(route));
+        return result;
+    }
+
+    // Brings the route's offsets in line with the given stops and minutes: changed values are updated in place,
+    // missing ones inserted and offsets of stops no longer on the route deleted. Unchanged rows are not touched.
+    private void applyOffsets(Route route, List<Stop> orderedStops, List<Integer> minutes, RouteChangeResultDto result) {
+        Map<Long, RouteStopOffset> current = new HashMap<>();
+        for (RouteStopOffset offset : routeStopOffsetRepo.findByRoute(route)) {
+            current.put(offset.getStop().getId(), offset);
         }
-        return routeMapper.toDto(route);
+        for (int i = 0; i < orderedStops.size(); i++) {
+            Stop stop = orderedStops.get(i);
+            RouteStopOffset existing = current.remove(stop.getId());
+            if (existing == null) {
+                // persist rather than save: save would merge, and select every new row first
+                entityManager.persist(new RouteStopOffset(route, stop, minutes.get(i)));
+                result.setOffsetsInserted(result.getOffsetsInserted() + 1);
+            } else if (!existing.getCumulativeMinutesFromStart().equals(minutes.get(i))) {
+                existing.setCumulativeMinutesFromStart(minutes.get(i));
+                result.setOffsetsUpdated(result.getOffsetsUpdated() + 1);
+            }
+        }
+        // what is left belongs to stops that were removed from the route
+        routeStopOffsetRepo.deleteAll(current.values());
+        result.setOffsetsDeleted(current.size());
     }
 
+    // Reads are served from the published network version, so edits staged meanwhile are not visible yet
     public RouteDto getRouteById(Long routeId) {
-        Route existingRoute = routeRepo.findById(routeId).orElseThrow(
-                ()-> new RuntimeException("Route with id " + routeId + " not found")
-        );
-        return routeMapper.toDto(existingRoute);
+        TimetableSnapshot.RouteTimetable route = snapshotHolder.current().getRoute(routeId);
+        if (route == null) {
+            throw new RuntimeException("Route with id " + routeId + " not found");
+        }
+        return routeMapper.toDto(route);
     }
 
     public List<RouteDto> getAllRoutes(){
-        List<Route> routes = routeRepo.findAll();
-        return routes.stream().map(routeMapper::toDto).toList();
+        return snapshotHolder.current().getRoutes().values().stream()
+                .map(routeMapper::toDto)
+                .toList();
+    }
+
+    public List<RouteDto> getRoutesPage(Long afterId, int limit) {
+        return snapshotHolder.current().getRoutesPage(afterId != null ? afterId : 0L, limit).stream()
+                .map(routeMapper::toDto)
+                .toList();
+    }
+
+    // Without a zoom level the stored shape is returned as is; with one, points that would fall within
+    // one screen pixel of the simplified line are dropped
+    public RouteShapeDto getRouteShape(Long routeId, Integer zoom) {
+        if (zoom != null && (zoom < 0 || zoom > MAX_ZOOM)) {
+            throw new IllegalArgumentException("Zoom must be between 0 and " + MAX_ZOOM);
+        }
+        TimetableSnapshot.ShapeEntry shape = snapshotHolder.current().getShape(routeId);
+        if (shape == null) {
+            throw new ResourceNotFoundException("No shape for route " + routeId);
+        }
+        if (zoom == null || shape.getPointCount() <= 2) {
+            return new RouteShapeDto(routeId, shape.getSource(), zoom, shape.getPointCount(), shape.getPolyline());
+        }
+        double[] points = EncodedPolyline.decode(shape.getPolyline());
+        double[] simplified = PolylineSimplifier.simplify(points, PolylineSimplifier.toleranceAtZoom(points[0], zoom));
+        return new RouteShapeDto(routeId, shape.getSource(), zoom, simplified.length / 2, EncodedPolyline.encode(simplified));
+    }
+
+    public void streamAllRoutes(OutputStream out) throws IOException {
+        ndjsonStreamer.write(snapshotHolder.current().getRoutes().values(), routeMapper::toDto, out);
     }
 
     @Transactional
     public boolean deleteRouteById(Long routeId){
         try{
             routeRepo.findById(routeId).ifPresent(routeStopOffsetRepo::deleteByRoute);
+            routeShapeRepo.deleteById(routeId);
+            routeSpecialDayRepo.deleteByRouteId(routeId);
+            // runs and templates reference the route; counters only once its runs are gone
+            runRepo.deleteByRouteId(routeId);
+            frequencyTemplateRepo.deleteByRouteId(routeId);
+            runNumCounterRepo.deleteByRoute(routeId);
             routeRepo.deleteById(routeId);
+            eventPublisher.publishEvent(new NetworkChangedEvent("route deleted"));
             return true;
         } catch (Exception e) {
             return false;
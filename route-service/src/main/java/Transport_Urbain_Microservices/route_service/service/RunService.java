@@ -1,111 +1,260 @@
 package Transport_Urbain_Microservices.route_service.service;
 
+import Transport_Urbain_Microservices.route_service.dto.BulkCreateRunsDto;
+import Transport_Urbain_Microservices.route_service.dto.BulkCreateRunsResultDto;
 import Transport_Urbain_Microservices.route_service.dto.CreateRunDTO;
+import Transport_Urbain_Microservices.route_service.dto.FrequencyTemplateDto;
+import Transport_Urbain_Microservices.route_service.dto.RouteTimetableDto;
 import Transport_Urbain_Microservices.route_service.dto.RunDetailsDto;
+import Transport_Urbain_Microservices.route_service.dto.StopDepartureDto;
 import Transport_Urbain_Microservices.route_service.entity.*;
+import Transport_Urbain_Microservices.route_service.exception.InvalidRunDataException;
 import Transport_Urbain_Microservices.route_service.exception.ResourceNotFoundException;
+import Transport_Urbain_Microservices.route_service.mapper.FrequencyTemplateMapper;
 import Transport_Urbain_Microservices.route_service.mapper.RunMapper;
+import Transport_Urbain_Microservices.route_service.realtime.VehiclePositionTracker;
 import Transport_Urbain_Microservices.route_service.repo.*;
+import Transport_Urbain_Microservices.route_service.timetable.NetworkChangedEvent;
+import Transport_Urbain_Microservices.route_service.timetable.StopDepartureIndex;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshotHolder;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class RunService{
 
+    static final int MAX_BULK_RUNS = 50_000;
+    // How far back a departure board looks for late runs that have not left the stop yet
+    private static final int LIVE_LOOKBACK_MINUTES = 30;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
     private final RunMapper runMapper;
 
     private final RunRepo runRepo;
     private final RouteRepo routeRepo;
-    private final StopRepo stopRepo;
     private final RouteStopRepo routeStopRepo;
     private final SpecialDayRepo specialDayRepo;
+    private final RouteSpecialDayRepo routeSpecialDayRepo;
+    private final FrequencyTemplateRepo frequencyTemplateRepo;
+    private final TimetableSnapshotHolder snapshotHolder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final NdjsonStreamer ndjsonStreamer;
+    private final BulkImportRepo bulkImportRepo;
+    private final RunNumCounterRepo runNumCounterRepo;
+    private final VehiclePositionTracker vehiclePositionTracker;
 
     public RunDetailsDto getRunById(Long runId){
-        Run run = runRepo.findById(runId)
-                .orElseThrow(() -> new ResourceNotFoundException("Run not found"));
-        return runMapper.toDetailsDto(run);
+        // stored runs and departures of frequency templates alike
+        TimetableSnapshot snapshot = snapshotHolder.current();
+        TimetableSnapshot.RunEntry run = snapshot.getRun(runId);
+        if (run == null) {
+            throw new ResourceNotFoundException("Run not found");
+        }
+        return runMapper.toDetailsDto(run, snapshot.getRoute(run.getRouteId()), true);
     }
 
     public List<RunDetailsDto> getAllRuns(){
-        List<Run> runs = runRepo.findAll();
-        return runs.stream().map(runMapper::toDetailsDto).toList();
+        TimetableSnapshot snapshot = snapshotHolder.current();
+        return toDetailsDtos(snapshot, snapshot.getRuns(), true);
+    }
+
+    // Pages and streams go through the same runs as getAllRuns, by id: the departures of frequency templates,
+    // whose ids are negative, before the stored runs
+    public List<RunDetailsDto> getRunsPage(Long afterId, int limit) {
+        TimetableSnapshot snapshot = snapshotHolder.current();
+        return toDetailsDtos(snapshot, snapshot.getRunsPage(afterId != null ? afterId : Long.MIN_VALUE, limit), true);
+    }
+
+    public void streamAllRuns(OutputStream out) throws IOException {
+        TimetableSnapshot snapshot = snapshotHolder.current();
+        ndjsonStreamer.write(snapshot.getRuns(),
+                run -> runMapper.toDetailsDto(run, snapshot.getRoute(run.getRouteId()), true), out);
     }
 
     public List<RunDetailsDto> getAllRunsForRoute(Long routeId) {
-        Route route = routeRepo.findById(routeId)
-                .orElseThrow(() -> new IllegalArgumentException("Route not found"));
-        if (route.getStatus() != RouteStatus.ACTIVE) {
+        TimetableSnapshot snapshot = snapshotHolder.current();
+        TimetableSnapshot.RouteTimetable route = snapshot.getRoute(routeId);
+        if (route == null) {
+            throw new IllegalArgumentException("Route not found");
+        }
+        if (!route.isActive()) {
             return List.of(); // Empty list if suspended or under maintenance
         }
-        return runRepo.findByRoute(route).stream().map(runMapper::toDetailsDto).toList();
+        return toDetailsDtos(snapshot, snapshot.getRunsForRoute(routeId), true);
     }
 
     public List<RunDetailsDto> getAllRunsForRouteForGivenDay(Long routeId, LocalDate givenDay) {
-        Route route = routeRepo.findById(routeId)
-                .orElseThrow(() -> new IllegalArgumentException("Route not found"));
-        if (route.getStatus() != RouteStatus.ACTIVE) {
-            return List.of(); // Empty list if suspended or under maintenance
+        TimetableSnapshot snapshot = snapshotHolder.current();
+        TimetableSnapshot.RouteTimetable route = snapshot.getRoute(routeId);
+        if (route == null) {
+            throw new IllegalArgumentException("Route not found");
         }
-        boolean isSpecial = specialDayRepo.existsById(givenDay);
-        if (isSpecial) {
-            return runRepo.findByRouteAndScheduleTypeAndSpecificDate(route, ScheduleType.SPECIAL, givenDay)
-                    .stream()
-                    .map(runMapper::toDetailsDto)
-                    .toList();
-        } else {
-            int dayOfWeek = givenDay.getDayOfWeek().getValue(); // 1=MONDAY to 7=SUNDAY
-            return runRepo.findByRouteAndScheduleTypeAndDayOfWeek(route, ScheduleType.REGULAR, dayOfWeek)
-                    .stream()
-                    .map(runMapper::toDetailsDto)
-                    .toList();
+        if (!route.isActive()) {
+            return List.of(); // Empty list if suspended or under maintenance
         }
+        return toDetailsDtos(snapshot, snapshot.getRunsForRouteOnDay(routeId, givenDay), givenDay.equals(LocalDate.now()));
     }
 
     public List<RunDetailsDto> getAllRunsForStop(Long stopId) {
-        Stop stop = stopRepo.findById(stopId)
-                .orElseThrow(() -> new IllegalArgumentException("Stop not found"));
-        List<Route> routes = routeStopRepo.findByStop(stop).stream()
-                .map(RouteStop::getRoute)
-                .filter(route -> route.getStatus() == RouteStatus.ACTIVE)
-                .distinct()
-                .toList();
-        List<Run> runs = new ArrayList<>();
-        for (Route route : routes) {
-            runs.addAll(runRepo.findByRoute(route));
+        TimetableSnapshot snapshot = snapshotHolder.current();
+        if (!snapshot.hasStop(stopId)) {
+            throw new IllegalArgumentException("Stop not found");
+        }
+        List<TimetableSnapshot.RunEntry> runs = new ArrayList<>();
+        for (Long routeId : snapshot.getRouteIdsForStop(stopId)) {
+            if (snapshot.getRoute(routeId).isActive()) {
+                runs.addAll(snapshot.getRunsForRoute(routeId));
+            }
         }
-        return runs.stream().map(runMapper::toDetailsDto).toList();
+        return toDetailsDtos(snapshot, runs, true);
     }
 
     public List<RunDetailsDto> getAllRunsForStopForGivenDay(Long stopId, LocalDate givenDay) {
-        Stop stop = stopRepo.findById(stopId)
-                .orElseThrow(() -> new IllegalArgumentException("Stop not found"));
-        List<Route> routes = routeStopRepo.findByStop(stop).stream()
-                .map(RouteStop::getRoute)
-                .filter(route -> route.getStatus() == RouteStatus.ACTIVE) // Filter active routes only
-                .distinct()
-                .toList();
-        List<Run> runs = new ArrayList<>();
-        boolean isSpecial = specialDayRepo.existsByDate(givenDay);
-        for (Route route : routes) {
-            if (isSpecial) {
-                runs.addAll(runRepo.findByRouteAndScheduleTypeAndSpecificDate(route, ScheduleType.SPECIAL, givenDay));
-            } else {
-                int dayOfWeek = givenDay.getDayOfWeek().getValue();
-                runs.addAll(runRepo.findByRouteAndScheduleTypeAndDayOfWeek(route, ScheduleType.REGULAR, dayOfWeek));
+        TimetableSnapshot snapshot = snapshotHolder.current();
+        if (!snapshot.hasStop(stopId)) {
+            throw new IllegalArgumentException("Stop not found");
+        }
+        List<TimetableSnapshot.RunEntry> runs = new ArrayList<>();
+        for (Long routeId : snapshot.getRouteIdsForStop(stopId)) {
+            if (snapshot.getRoute(routeId).isActive()) { // Filter active routes only
+                runs.addAll(snapshot.getRunsForRouteOnDay(routeId, givenDay));
             }
         }
-        return runs.stream().map(runMapper::toDetailsDto).toList();
+        return toDetailsDtos(snapshot, runs, givenDay.equals(LocalDate.now()));
+    }
+
+    public List<StopDepartureDto> getNextDeparturesForStop(Long stopId, LocalDateTime at, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        TimetableSnapshot snapshot = snapshotHolder.current();
+        if (!snapshot.hasStop(stopId)) {
+            throw new IllegalArgumentException("Stop not found");
+        }
+        LocalDate day = at.toLocalDate();
+        int atMinute = at.getHour() * 60 + at.getMinute();
+        boolean live = day.equals(LocalDate.now());
+        int fromMinute = live ? atMinute - LIVE_LOOKBACK_MINUTES : atMinute;
+
+        // The board of a day also lists the runs of the day before still going after midnight, and goes on into
+        // the next day when fewer than limit departures are left. Minutes of those days are shifted onto this one.
+        StopDepartureIndex.Departures[] days = {
+                snapshot.getDepartures(stopId, day.minusDays(1)),
+                snapshot.getDepartures(stopId, day),
+                snapshot.getDepartures(stopId, day.plusDays(1))};
+        int[] shifts = {-MINUTES_PER_DAY, 0, MINUTES_PER_DAY};
+        int[] next = new int[days.length];
+        for (int d = 0; d < days.length; d++) {
+            next[d] = days[d].firstAtOrAfter(fromMinute - shifts[d]);
+        }
+
+        // Departures are taken in scheduled order until limit of them are due at or after the requested minute;
+        // with live data, late runs scheduled a little earlier are included and the board is ordered by predicted time
+        List<BoardEntry> entries = new ArrayList<>();
+        int dueAfter = 0;
+        while (dueAfter < limit) {
+            int d = -1;
+            for (int candidate = 0; candidate < days.length; candidate++) {
+                if (next[candidate] < days[candidate].size() && (d < 0
+                        || days[candidate].getMinutes()[next[candidate]] + shifts[candidate]
+                        < days[d].getMinutes()[next[d]] + shifts[d])) {
+                    d = candidate;
+                }
+            }
+            if (d < 0) {
+                break;
+            }
+            StopDepartureIndex.Departures departures = days[d];
+            int i = next[d]++;
+            int minute = departures.getMinutes()[i] + shifts[d];
+            TimetableSnapshot.RunEntry run = snapshot.getRuns().get(departures.getRunIndexes()[i]);
+            TimetableSnapshot.RouteTimetable route = snapshot.getRoute(run.getRouteId());
+            int scheduledSecond = minute * 60;
+            // the next day's runs have not started yet, so their vehicles are still on today's trips
+            int delay = live && shifts[d] <= 0
+                    ? vehiclePositionTracker.getPredictedDelay(run.getId(), route.getStopIds(), departures.getStopIndexes()[i])
+                    : VehiclePositionTracker.NO_PREDICTION;
+            int expectedSecond = delay == VehiclePositionTracker.NO_PREDICTION ? scheduledSecond : scheduledSecond + delay;
+            if (minute >= atMinute) {
+                dueAfter++;
+            } else if (expectedSecond < atMinute * 60) {
+                continue; // already gone
+            }
+            entries.add(new BoardEntry(expectedSecond, new StopDepartureDto(
+                    run.getId(),
+                    route.getId(),
+                    route.getNum(),
+                    route.getName(),
+                    run.getDestinationStopName(),
+                    LocalTime.MIDNIGHT.plusSeconds(scheduledSecond),
+                    delay == VehiclePositionTracker.NO_PREDICTION ? null : LocalTime.MIDNIGHT.plusSeconds(expectedSecond)
+            )));
+        }
+        entries.sort(Comparator.comparingInt(BoardEntry::expectedSecond));
+        return entries.stream().limit(limit).map(BoardEntry::departure).toList();
+    }
+
+    private record BoardEntry(int expectedSecond, StopDepartureDto departure) {
+    }
+
+    public RouteTimetableDto getRouteTimetable(Long routeId, LocalDate day) {
+        TimetableSnapshot snapshot = snapshotHolder.current();
+        TimetableSnapshot.RouteTimetable route = snapshot.getRoute(routeId);
+        if (route == null) {
+            throw new IllegalArgumentException("Route not found");
+        }
+        // Same runs as getAllRunsForRouteForGivenDay, in departure order
+        List<TimetableSnapshot.RunEntry> runs = route.isActive()
+                ? new ArrayList<>(snapshot.getRunsForRouteOnDay(routeId, day))
+                : new ArrayList<>();
+        runs.sort(Comparator.comparing(TimetableSnapshot.RunEntry::getStartTime));
+        List<Long> runIds = new ArrayList<>(runs.size());
+        List<Integer> runNums = new ArrayList<>(runs.size());
+        List<LocalTime> startTimes = new ArrayList<>(runs.size());
+        for (TimetableSnapshot.RunEntry run : runs) {
+            runIds.add(run.getId());
+            runNums.add(run.getRunNum());
+            startTimes.add(run.getStartTime());
+        }
+        return new RouteTimetableDto(
+                route.getId(),
+                route.getNum(),
+                route.getName(),
+                day,
+                snapshot.isSpecialDay(routeId, day),
+                route.getStopIds(),
+                route.getStopNamesInOrder(),
+                route.getCumulativeMinutes(),
+                runIds,
+                runNums,
+                startTimes
+        );
+    }
+
+    private List<RunDetailsDto> toDetailsDtos(TimetableSnapshot snapshot, List<TimetableSnapshot.RunEntry> runs, boolean live) {
+        return runs.stream()
+                .map(run -> runMapper.toDetailsDto(run, snapshot.getRoute(run.getRouteId()), live))
+                .toList();
     }
 
     @Transactional
     public void deleteRunById(Long runId) {
+        if (TimetableSnapshot.RunEntry.isTemplateRunId(runId)) {
+            throw new IllegalArgumentException("Departures of a frequency template are removed with their template");
+        }
         Run run = runRepo.findById(runId)
                 .orElseThrow(() -> new IllegalArgumentException("Run not found"));
         if (run.getScheduleType() == ScheduleType.SPECIAL) {
@@ -118,6 +267,7 @@ public class RunService{
         } else {
             runRepo.delete(run);
         }
+        eventPublisher.publishEvent(new NetworkChangedEvent("run deleted"));
     }
 
     @Transactional
@@ -125,10 +275,20 @@ public class RunService{
         List<Run> specialRuns = runRepo.findByScheduleTypeAndSpecificDate(ScheduleType.SPECIAL, date);
         runRepo.deleteAll(specialRuns);
         specialDayRepo.deleteById(date);
+        routeSpecialDayRepo.deleteByDate(date);
+        eventPublisher.publishEvent(new NetworkChangedEvent("special runs deleted"));
     }
 
     @Transactional
     public RunDetailsDto createRun(CreateRunDTO createRunDTO) {
+        if (createRunDTO.getScheduleType() == ScheduleType.SPECIAL) {
+            if (createRunDTO.getSpecificDate() == null) {
+                throw new InvalidRunDataException("Special runs require a specific date");
+            }
+        } else if ((createRunDTO.getDaysOfWeek() == null || createRunDTO.getDaysOfWeek().isEmpty())
+                && createRunDTO.getDayOfWeek() == null) {
+            throw new InvalidRunDataException("Regular runs require at least one day of week");
+        }
         Run run = new Run();
         Route route = routeRepo.findById(createRunDTO.getRouteId()).orElseThrow(
                 () -> new ResourceNotFoundException("Route not found")
@@ -140,18 +300,206 @@ public class RunService{
         run.setScheduleType(createRunDTO.getScheduleType());
         if(createRunDTO.getScheduleType() == ScheduleType.SPECIAL) {
             run.setSpecificDate(createRunDTO.getSpecificDate());
-            run.setDayOfWeek(null);
-            run.setRunNum((int)runRepo.countByRouteAndScheduleTypeAndSpecificDate(route, ScheduleType.SPECIAL, createRunDTO.getSpecificDate()) + 1);
-            if (!specialDayRepo.existsById(createRunDTO.getSpecificDate())) {
-                specialDayRepo.save(new SpecialDay(createRunDTO.getSpecificDate()));
-            }
+            run.setDaysOfWeekMask(null);
+            specialDayRepo.insertIfAbsent(createRunDTO.getSpecificDate());
         } else {
-            run.setDayOfWeek(createRunDTO.getDayOfWeek());
+            if (createRunDTO.getDaysOfWeek() != null && !createRunDTO.getDaysOfWeek().isEmpty()) {
+                run.setDaysOfWeekMask(DaysOfWeekMask.of(createRunDTO.getDaysOfWeek()));
+            } else {
+                run.setDaysOfWeekMask(DaysOfWeekMask.of(createRunDTO.getDayOfWeek()));
+            }
             run.setSpecificDate(null);
-            run.setRunNum((int)runRepo.countByRouteAndScheduleTypeAndDayOfWeek(route, ScheduleType.REGULAR, createRunDTO.getDayOfWeek()) + 1);
         }
         run.setStartTime(createRunDTO.getStartTime());
+        assignRunNums(List.of(run));
         Run savedRun = runRepo.save(run);
+        eventPublisher.publishEvent(new NetworkChangedEvent("run created"));
         return runMapper.toDetailsDto(savedRun);
     }
+
+    // Numbers are assigned in memory from one lock of the involved counters and all rows go out as JDBC batches,
+    // in the same transaction: the per-run stop and save queries of createRun are not repeated.
+    @Transactional
+    public BulkCreateRunsResultDto createRunsInBulk(BulkCreateRunsDto dto) {
+        List<CreateRunDTO> requested = expandBulkRequest(dto);
+        if (requested.size() > MAX_BULK_RUNS) {
+            throw new InvalidRunDataException("At most " + MAX_BULK_RUNS + " runs can be created at once");
+        }
+
+        Set<Long> routeIds = new HashSet<>();
+        Set<LocalDate> specialDates = new HashSet<>();
+        for (CreateRunDTO run : requested) {
+            if (run.getRouteId() == null || run.getScheduleType() == null || run.getStartTime() == null) {
+                throw new InvalidRunDataException("Route, schedule type and start time are required for every run");
+            }
+            routeIds.add(run.getRouteId());
+            if (run.getScheduleType() == ScheduleType.SPECIAL) {
+                if (run.getSpecificDate() == null) {
+                    throw new InvalidRunDataException("Special runs require a specific date");
+                }
+                specialDates.add(run.getSpecificDate());
+            }
+        }
+
+        List<Route> routes = routeRepo.findAllById(routeIds);
+        if (routes.size() != routeIds.size()) {
+            throw new ResourceNotFoundException("Route not found");
+        }
+        Map<Long, Route> routesById = new HashMap<>();
+        routes.forEach(route -> routesById.put(route.getId(), route));
+        // ordered by route then stop order, so the last row seen per route is its terminus
+        Map<Long, String> destinations = new HashMap<>();
+        for (RouteStop rs : routeStopRepo.findByRouteInWithStopsOrdered(routes)) {
+            destinations.put(rs.getRoute().getId(), rs.getStop().getName());
+        }
+
+        List<Run> runs = new ArrayList<>(requested.size());
+        for (CreateRunDTO dtoRun : requested) {
+            Route route = routesById.get(dtoRun.getRouteId());
+            if (!destinations.containsKey(route.getId())) {
+                throw new InvalidRunDataException("Route " + route.getId() + " has no stops");
+            }
+            Run run = new Run();
+            run.setRoute(route);
+            run.setDestinationStopName(destinations.get(route.getId()));
+            run.setScheduleType(dtoRun.getScheduleType());
+            if (dtoRun.getScheduleType() == ScheduleType.SPECIAL) {
+                run.setSpecificDate(dtoRun.getSpecificDate());
+            } else if (dtoRun.getDaysOfWeek() != null && !dtoRun.getDaysOfWeek().isEmpty()) {
+                run.setDaysOfWeekMask(DaysOfWeekMask.of(dtoRun.getDaysOfWeek()));
+            } else if (dtoRun.getDayOfWeek() != null) {
+                run.setDaysOfWeekMask(DaysOfWeekMask.of(dtoRun.getDayOfWeek()));
+            } else {
+                throw new InvalidRunDataException("Regular runs require at least one day of week");
+            }
+            run.setStartTime(dtoRun.getStartTime());
+            runs.add(run);
+        }
+
+        assignRunNums(runs);
+
+        long[] ids = bulkImportRepo.allocateIds("run", runs.size());
+        List<Long> runIds = new ArrayList<>(runs.size());
+        for (int i = 0; i < runs.size(); i++) {
+            runs.get(i).setId(ids[i]);
+            runIds.add(ids[i]);
+        }
+        bulkImportRepo.insertRunsWithIds(runs);
+
+        specialDates.forEach(specialDayRepo::insertIfAbsent);
+
+        eventPublisher.publishEvent(new NetworkChangedEvent("runs created in bulk"));
+        return new BulkCreateRunsResultDto(runs.size(), runIds);
+    }
+
+    private List<CreateRunDTO> expandBulkRequest(BulkCreateRunsDto dto) {
+        boolean hasRuns = dto.getRuns() != null && !dto.getRuns().isEmpty();
+        BulkCreateRunsDto.HeadwaySpec spec = dto.getHeadway();
+        if (hasRuns == (spec != null)) {
+            throw new InvalidRunDataException("Either a list of runs or a headway spec is required");
+        }
+        if (hasRuns) {
+            return dto.getRuns();
+        }
+        if (spec.getFirstDeparture() == null || spec.getLastDeparture() == null || spec.getHeadwayMinutes() == null) {
+            throw new InvalidRunDataException("First departure, last departure and headway are required");
+        }
+        if (spec.getHeadwayMinutes() < 1) {
+            throw new InvalidRunDataException("Headway must be at least one minute");
+        }
+        if (spec.getLastDeparture().isBefore(spec.getFirstDeparture())) {
+            throw new InvalidRunDataException("Last departure must not be before the first departure");
+        }
+        List<CreateRunDTO> runs = new ArrayList<>();
+        int last = spec.getLastDeparture().toSecondOfDay();
+        for (int t = spec.getFirstDeparture().toSecondOfDay(); t <= last; t += spec.getHeadwayMinutes() * 60) {
+            runs.add(new CreateRunDTO(spec.getRouteId(), spec.getScheduleType(), null, spec.getDaysOfWeek(),
+                    spec.getSpecificDate(), LocalTime.ofSecondOfDay(t)));
+        }
+        return runs;
+    }
+
+    // Regular runs are numbered after the busiest of their days, so the number stays unique on every day they
+    // operate; special runs after the others of that date. Several runs are numbered in departure order.
+    // Departures of frequency templates are numbered after the stored runs when the snapshot is built.
+    // The counters stay locked until the caller's transaction commits.
+    private void assignRunNums(List<Run> runs) {
+        Set<RunNumCounterRepo.RunNumScope> scopes = new HashSet<>();
+        for (Run run : runs) {
+            scopes.addAll(runNumScopes(run));
+        }
+        Map<RunNumCounterRepo.RunNumScope, Integer> lastRunNum = runNumCounterRepo.lock(scopes);
+
+        List<Run> inDepartureOrder = new ArrayList<>(runs);
+        inDepartureOrder.sort(Comparator.comparing(Run::getStartTime));
+        for (Run run : inDepartureOrder) {
+            List<RunNumCounterRepo.RunNumScope> runScopes = runNumScopes(run);
+            int runNum = 1;
+            for (RunNumCounterRepo.RunNumScope scope : runScopes) {
+                runNum = Math.max(runNum, lastRunNum.get(scope) + 1);
+            }
+            for (RunNumCounterRepo.RunNumScope scope : runScopes) {
+                lastRunNum.put(scope, runNum);
+            }
+            run.setRunNum(runNum);
+        }
+        runNumCounterRepo.update(lastRunNum);
+    }
+
+    private static List<RunNumCounterRepo.RunNumScope> runNumScopes(Run run) {
+        long routeId = run.getRoute().getId();
+        if (run.getScheduleType() == ScheduleType.SPECIAL) {
+            return List.of(RunNumCounterRepo.RunNumScope.special(routeId, run.getSpecificDate()));
+        }
+        return DaysOfWeekMask.toDays(run.getDaysOfWeekMask()).stream()
+                .map(day -> RunNumCounterRepo.RunNumScope.regular(routeId, day))
+                .toList();
+    }
+
+    @Transactional
+    public FrequencyTemplateDto createFrequencyTemplate(FrequencyTemplateDto dto) {
+        Route route = routeRepo.findById(dto.getRouteId()).orElseThrow(
+                () -> new ResourceNotFoundException("Route not found")
+        );
+        if (dto.getDaysOfWeek() == null || dto.getDaysOfWeek().isEmpty()) {
+            throw new InvalidRunDataException("At least one day of week is required");
+        }
+        if (dto.getStartTime() == null || dto.getEndTime() == null || dto.getHeadwayMinutes() == null) {
+            throw new InvalidRunDataException("Start time, end time and headway are required");
+        }
+        if (dto.getHeadwayMinutes() < 1 || dto.getHeadwayMinutes() > FrequencyTemplate.MAX_HEADWAY_MINUTES) {
+            throw new InvalidRunDataException("Headway must be between 1 and " + FrequencyTemplate.MAX_HEADWAY_MINUTES + " minutes");
+        }
+        FrequencyTemplate template = new FrequencyTemplate();
+        template.setRoute(route);
+        template.setDaysOfWeekMask(DaysOfWeekMask.of(dto.getDaysOfWeek()));
+        template.setStartTime(dto.getStartTime());
+        template.setEndTime(dto.getEndTime());
+        template.setHeadwayMinutes(dto.getHeadwayMinutes());
+        if (dto.getDestinationStopName() != null) {
+            template.setDestinationStopName(dto.getDestinationStopName());
+        } else {
+            List<RouteStop> orderedStops = routeStopRepo.findByRouteOrderByStopOrderAsc(route);
+            template.setDestinationStopName(orderedStops.isEmpty() ? null : orderedStops.getLast().getStop().getName());
+        }
+        FrequencyTemplate saved = frequencyTemplateRepo.save(template);
+        eventPublisher.publishEvent(new NetworkChangedEvent("frequency template created"));
+        return FrequencyTemplateMapper.toDto(saved);
+    }
+
+    public List<FrequencyTemplateDto> getFrequencyTemplatesForRoute(Long routeId) {
+        TimetableSnapshot snapshot = snapshotHolder.current();
+        if (snapshot.getRoute(routeId) == null) {
+            throw new IllegalArgumentException("Route not found");
+        }
+        return snapshot.getTemplatesForRoute(routeId).stream().map(FrequencyTemplateMapper::toDto).toList();
+    }
+
+    @Transactional
+    public void deleteFrequencyTemplateById(Long templateId) {
+        FrequencyTemplate template = frequencyTemplateRepo.findById(templateId)
+                .orElseThrow(() -> new IllegalArgumentException("Frequency template not found"));
+        frequencyTemplateRepo.delete(template);
+        eventPublisher.publishEvent(new NetworkChangedEvent("frequency template deleted"));
+    }
 }
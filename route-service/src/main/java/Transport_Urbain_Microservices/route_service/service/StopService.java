@@ -1,22 +1,39 @@
 package Transport_Urbain_Microservices.route_service.service;
 
+import Transport_Urbain_Microservices.route_service.dto.NearbyStopDto;
 import Transport_Urbain_Microservices.route_service.dto.StopDto;
 import Transport_Urbain_Microservices.route_service.entity.Route;
 import Transport_Urbain_Microservices.route_service.entity.Stop;
+import Transport_Urbain_Microservices.route_service.geo.StopSpatialIndex;
 import Transport_Urbain_Microservices.route_service.mapper.StopMapper;
+import Transport_Urbain_Microservices.route_service.realtime.DepartureBoardHub;
 import Transport_Urbain_Microservices.route_service.repo.StopRepo;
+import Transport_Urbain_Microservices.route_service.timetable.NetworkChangedEvent;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshotHolder;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class StopService {
 
+    private static final int MAX_NEARBY_RADIUS_METERS = 10_000;
+
     private final StopRepo stopRepo;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StopSpatialIndex stopSpatialIndex;
+    private final TimetableSnapshotHolder snapshotHolder;
+    private final NdjsonStreamer ndjsonStreamer;
+    private final DepartureBoardHub departureBoardHub;
 
     @Transactional
     public StopDto createStop(StopDto stopDto) {
@@ -25,7 +42,9 @@ public class StopService {
         newStop.setAddress(stopDto.getAddress());
         newStop.setLat(stopDto.getLat());
         newStop.setLon(stopDto.getLon());
-        return StopMapper.toDto(stopRepo.save(newStop));
+        StopDto savedStop = StopMapper.toDto(stopRepo.save(newStop));
+        eventPublisher.publishEvent(new NetworkChangedEvent("stop created"));
+        return savedStop;
     }
 
     @Transactional
@@ -37,29 +56,74 @@ public class StopService {
         existingStop.setAddress(stopDto.getAddress());
         existingStop.setLat(stopDto.getLat());
         existingStop.setLon(stopDto.getLon());
-        return StopMapper.toDto(stopRepo.save(existingStop));
+        StopDto savedStop = StopMapper.toDto(stopRepo.save(existingStop));
+        eventPublisher.publishEvent(new NetworkChangedEvent("stop updated"));
+        return savedStop;
     }
 
+    // Reads are served from the published timetable snapshot, like the route and run reads
     public StopDto getStopById(Long id) {
-        Stop existingStop = stopRepo.findById(id).orElseThrow(
-                ()->{return new RuntimeException("Stop with id "+id+" not found");}
-        );
-        return StopMapper.toDto(existingStop);
+        TimetableSnapshot.StopEntry stop = snapshotHolder.current().getStop(id);
+        if (stop == null) {
+            throw new RuntimeException("Stop with id " + id + " not found");
+        }
+        return StopMapper.toDto(stop);
     }
 
     public List<StopDto> getAllStops() {
-        List<Stop> stops = stopRepo.findAll();
-        return stops.stream().map(StopMapper::toDto).toList();
+        return snapshotHolder.current().getStops().values().stream().map(StopMapper::toDto).toList();
+    }
+
+    public List<StopDto> getStopsPage(Long afterId, int limit) {
+        return snapshotHolder.current().getStopsPage(afterId != null ? afterId : 0L, limit).stream()
+                .map(StopMapper::toDto)
+                .toList();
+    }
+
+    public void streamAllStops(OutputStream out) throws IOException {
+        ndjsonStreamer.write(snapshotHolder.current().getStops().values(), StopMapper::toDto, out);
+    }
+
+    public List<NearbyStopDto> getNearbyStops(double lat, double lon, double radiusMeters, int limit) {
+        if (radiusMeters <= 0 || radiusMeters > MAX_NEARBY_RADIUS_METERS) {
+            throw new IllegalArgumentException("Radius must be between 0 and " + MAX_NEARBY_RADIUS_METERS + " meters");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        return stopSpatialIndex.nearest(lat, lon, radiusMeters, limit).stream()
+                .map(n -> new NearbyStopDto(
+                        n.getStop().getId(),
+                        n.getStop().getName(),
+                        n.getStop().getLat(),
+                        n.getStop().getLon(),
+                        n.getStop().getAddress(),
+                        n.getDistanceMeters()))
+                .toList();
+    }
+
+    public List<StopDto> getStopsInBoundingBox(double minLat, double minLon, double maxLat, double maxLon, int limit) {
+        if (minLat > maxLat || minLon > maxLon) {
+            throw new IllegalArgumentException("Bounding box minimum must not exceed its maximum");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        return stopSpatialIndex.withinBox(minLat, minLon, maxLat, maxLon, limit).stream()
+                .map(StopMapper::toDto)
+                .toList();
     }
 
     public void deleteStopById(Long id) {
         try {
             stopRepo.deleteById(id);
+            eventPublisher.publishEvent(new NetworkChangedEvent("stop deleted"));
         } catch (DataIntegrityViolationException ex) {
             throw new IllegalStateException("Cannot delete stop because it is used by one or more routes.", ex);
         }
     }
 
-
-
+    public SseEmitter streamDepartures(Long stopId) {
+        return departureBoardHub.subscribe(stopId);
+    }
 }
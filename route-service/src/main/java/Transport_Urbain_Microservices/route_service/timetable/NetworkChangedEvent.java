@@ -0,0 +1,12 @@
+package Transport_Urbain_Microservices.route_service.timetable;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published by the write services whenever routes, stops or runs change,
+// so that the in-memory timetable can be rebuilt once the transaction commits.
+@Getter
+@AllArgsConstructor
+public class NetworkChangedEvent {
+    private final String reason;
+}
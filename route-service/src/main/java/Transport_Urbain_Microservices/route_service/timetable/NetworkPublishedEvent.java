@@ -0,0 +1,12 @@
+package Transport_Urbain_Microservices.route_service.timetable;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published by TimetableSnapshotHolder once readers are served another network version
+// (a newly built one, or a retained one after a rollback).
+@Getter
+@AllArgsConstructor
+public class NetworkPublishedEvent {
+    private final long version;
+}
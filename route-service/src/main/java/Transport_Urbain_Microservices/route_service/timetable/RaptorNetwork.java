@@ -0,0 +1,304 @@
+package Transport_Urbain_Microservices.route_service.timetable;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+import java.util.*;
+
+// Array-based view of one service day for round-based (RAPTOR) earliest-arrival searches.
+// Each active route is one pattern: its timed stops in stopOrder, the aligned offsets and the
+// start minutes of the day's runs, sorted. All runs of a route share the same offsets, so they
+// never overtake each other and the earliest catchable run is found with a binary search.
+public class RaptorNetwork {
+
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    private final long[] stopIds;
+    private final Map<Long, Integer> stopIndexes;
+    private final long[] routeIds;
+    private final int[][] routeStops;
+    private final int[][] routeOffsets;
+    private final int[][] tripStarts;
+    private final int[][] tripRunIndexes;
+    private final int[][] stopRoutes;
+    private final int[][] stopRoutePositions;
+
+    private RaptorNetwork(long[] stopIds, Map<Long, Integer> stopIndexes, long[] routeIds,
+                          int[][] routeStops, int[][] routeOffsets, int[][] tripStarts, int[][] tripRunIndexes) {
+        this.stopIds = stopIds;
+        this.stopIndexes = stopIndexes;
+        this.routeIds = routeIds;
+        this.routeStops = routeStops;
+        this.routeOffsets = routeOffsets;
+        this.tripStarts = tripStarts;
+        this.tripRunIndexes = tripRunIndexes;
+
+        int[] counts = new int[stopIds.length];
+        for (int[] stops : routeStops) {
+            for (int s : stops) {
+                counts[s]++;
+            }
+        }
+        this.stopRoutes = new int[stopIds.length][];
+        this.stopRoutePositions = new int[stopIds.length][];
+        for (int s = 0; s < stopIds.length; s++) {
+            stopRoutes[s] = new int[counts[s]];
+            stopRoutePositions[s] = new int[counts[s]];
+            counts[s] = 0;
+        }
+        for (int r = 0; r < routeStops.length; r++) {
+            for (int pos = 0; pos < routeStops[r].length; pos++) {
+                int s = routeStops[r][pos];
+                stopRoutes[s][counts[s]] = r;
+                stopRoutePositions[s][counts[s]] = pos;
+                counts[s]++;
+            }
+        }
+    }
+
+    static RaptorNetwork build(TimetableSnapshot snapshot, LocalDate day) {
+        Map<Long, Integer> stopIndexes = new HashMap<>();
+        List<Long> stopIds = new ArrayList<>();
+        List<Long> routeIds = new ArrayList<>();
+        List<int[]> routeStops = new ArrayList<>();
+        List<int[]> routeOffsets = new ArrayList<>();
+        List<int[]> tripStarts = new ArrayList<>();
+        List<int[]> tripRunIndexes = new ArrayList<>();
+
+        // Position of each run in snapshot.getRuns()
+        Map<TimetableSnapshot.RunEntry, Integer> runIndexes = new IdentityHashMap<>();
+        for (int i = 0; i < snapshot.getRuns().size(); i++) {
+            runIndexes.put(snapshot.getRuns().get(i), i);
+        }
+
+        for (TimetableSnapshot.RouteTimetable route : snapshot.getRoutes().values()) {
+            if (!route.isActive()) {
+                continue;
+            }
+            List<TimetableSnapshot.RunEntry> runs = snapshot.getRunsForRouteOnDay(route.getId(), day);
+            if (runs.isEmpty()) {
+                continue;
+            }
+
+            int timedStops = 0;
+            for (Integer minutes : route.getCumulativeMinutes()) {
+                if (minutes != null) {
+                    timedStops++;
+                }
+            }
+            if (timedStops < 2) {
+                continue;
+            }
+            int[] stops = new int[timedStops];
+            int[] offsets = new int[timedStops];
+            int pos = 0;
+            for (int i = 0; i < route.getStopIds().size(); i++) {
+                Integer minutes = route.getCumulativeMinutes().get(i);
+                if (minutes == null) {
+                    continue;
+                }
+                Long stopId = route.getStopIds().get(i);
+                Integer index = stopIndexes.get(stopId);
+                if (index == null) {
+                    index = stopIds.size();
+                    stopIndexes.put(stopId, index);
+                    stopIds.add(stopId);
+                }
+                stops[pos] = index;
+                offsets[pos] = minutes;
+                pos++;
+            }
+
+            long[] keys = new long[runs.size()];
+            for (int t = 0; t < runs.size(); t++) {
+                TimetableSnapshot.RunEntry run = runs.get(t);
+                int start = run.getStartTime().getHour() * 60 + run.getStartTime().getMinute();
+                keys[t] = ((long) start << 32) | runIndexes.get(run);
+            }
+            Arrays.sort(keys);
+            int[] starts = new int[keys.length];
+            int[] runIndexesByTrip = new int[keys.length];
+            for (int t = 0; t < keys.length; t++) {
+                starts[t] = (int) (keys[t] >>> 32);
+                runIndexesByTrip[t] = (int) keys[t];
+            }
+
+            routeIds.add(route.getId());
+            routeStops.add(stops);
+            routeOffsets.add(offsets);
+            tripStarts.add(starts);
+            tripRunIndexes.add(runIndexesByTrip);
+        }
+
+        return new RaptorNetwork(
+                stopIds.stream().mapToLong(Long::longValue).toArray(),
+                Map.copyOf(stopIndexes),
+                routeIds.stream().mapToLong(Long::longValue).toArray(),
+                routeStops.toArray(new int[0][]),
+                routeOffsets.toArray(new int[0][]),
+                tripStarts.toArray(new int[0][]),
+                tripRunIndexes.toArray(new int[0][])
+        );
+    }
+
+    public Integer indexOfStop(Long stopId) {
+        return stopIndexes.get(stopId);
+    }
+
+    // Earliest arrival at target leaving origin no earlier than departureMinute, using at most maxRounds runs.
+    // Returns null when the target cannot be reached that day.
+    public Itinerary earliestArrival(int origin, int target, int departureMinute, int maxRounds) {
+        int n = stopIds.length;
+        int[][] arrival = new int[maxRounds + 1][];
+        int[][] boardedRoute = new int[maxRounds + 1][];
+        int[][] boardedTrip = new int[maxRounds + 1][];
+        int[][] boardedPos = new int[maxRounds + 1][];
+        int[][] alightedPos = new int[maxRounds + 1][];
+
+        int[] best = new int[n];
+        Arrays.fill(best, UNREACHED);
+        arrival[0] = new int[n];
+        Arrays.fill(arrival[0], UNREACHED);
+        arrival[0][origin] = departureMinute;
+        best[origin] = departureMinute;
+
+        boolean[] marked = new boolean[n];
+        marked[origin] = true;
+        int[] queue = new int[routeStops.length];
+        int rounds = 0;
+
+        for (int k = 1; k <= maxRounds; k++) {
+            // Collect routes serving a stop improved in the previous round, from the earliest such stop
+            Arrays.fill(queue, -1);
+            boolean anyMarked = false;
+            for (int p = 0; p < n; p++) {
+                if (!marked[p]) {
+                    continue;
+                }
+                marked[p] = false;
+                anyMarked = true;
+                for (int j = 0; j < stopRoutes[p].length; j++) {
+                    int r = stopRoutes[p][j];
+                    int pos = stopRoutePositions[p][j];
+                    if (queue[r] == -1 || pos < queue[r]) {
+                        queue[r] = pos;
+                    }
+                }
+            }
+            if (!anyMarked) {
+                break;
+            }
+
+            arrival[k] = arrival[k - 1].clone();
+            boardedRoute[k] = new int[n];
+            Arrays.fill(boardedRoute[k], -1);
+            boardedTrip[k] = new int[n];
+            boardedPos[k] = new int[n];
+            alightedPos[k] = new int[n];
+            rounds = k;
+
+            for (int r = 0; r < routeStops.length; r++) {
+                if (queue[r] == -1) {
+                    continue;
+                }
+                int[] stops = routeStops[r];
+                int[] offsets = routeOffsets[r];
+                int[] starts = tripStarts[r];
+                int trip = -1;
+                int boardAt = -1;
+                for (int i = queue[r]; i < stops.length; i++) {
+                    int s = stops[i];
+                    if (trip != -1) {
+                        int t = starts[trip] + offsets[i];
+                        if (t < best[s] && t < best[target]) {
+                            arrival[k][s] = t;
+                            best[s] = t;
+                            boardedRoute[k][s] = r;
+                            boardedTrip[k][s] = trip;
+                            boardedPos[k][s] = boardAt;
+                            alightedPos[k][s] = i;
+                            marked[s] = true;
+                        }
+                    }
+                    int previous = arrival[k - 1][s];
+                    if (previous != UNREACHED && (trip == -1 || previous < starts[trip] + offsets[i])) {
+                        int candidate = firstStartAtOrAfter(starts, previous - offsets[i]);
+                        if (candidate < starts.length && (trip == -1 || candidate < trip)) {
+                            trip = candidate;
+                            boardAt = i;
+                        }
+                    }
+                }
+            }
+        }
+
+        int bestRound = -1;
+        int bestArrival = UNREACHED;
+        for (int k = 0; k <= rounds; k++) {
+            if (arrival[k][target] < bestArrival) {
+                bestArrival = arrival[k][target];
+                bestRound = k;
+            }
+        }
+        if (bestRound == -1) {
+            return null;
+        }
+
+        LinkedList<Leg> legs = new LinkedList<>();
+        int s = target;
+        int k = bestRound;
+        while (k > 0) {
+            while (k > 0 && boardedRoute[k][s] == -1) {
+                k--; // reached in an earlier round, with the same arrival time
+            }
+            if (k == 0) {
+                break;
+            }
+            int r = boardedRoute[k][s];
+            int trip = boardedTrip[k][s];
+            int from = boardedPos[k][s];
+            int to = alightedPos[k][s];
+            legs.addFirst(new Leg(
+                    routeIds[r],
+                    tripRunIndexes[r][trip],
+                    stopIds[routeStops[r][from]],
+                    stopIds[routeStops[r][to]],
+                    tripStarts[r][trip] + routeOffsets[r][from],
+                    tripStarts[r][trip] + routeOffsets[r][to]
+            ));
+            s = routeStops[r][from];
+            k--;
+        }
+        return new Itinerary(bestArrival, List.copyOf(legs));
+    }
+
+    private static int firstStartAtOrAfter(int[] starts, int minute) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < minute) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Value
+    public static class Itinerary {
+        int arrivalMinute;
+        List<Leg> legs;
+    }
+
+    @Value
+    public static class Leg {
+        long routeId;
+        int runIndex;
+        long fromStopId;
+        long toStopId;
+        int departureMinute;
+        int arrivalMinute;
+    }
+}
@@ -0,0 +1,179 @@
+package Transport_Urbain_Microservices.route_service.timetable;
+
+import Transport_Urbain_Microservices.route_service.entity.ScheduleType;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Per stop and day type (weekday 1-7 or special date), the departures of active routes as three parallel
+// primitive arrays sorted by minute of day: the departure minute, the index of the run in TimetableSnapshot.getRuns()
+// and the position of the stop on the run's route (a loop route serves a stop at several positions).
+// Minutes are not wrapped at midnight, so late runs keep their order.
+public class StopDepartureIndex {
+
+    private static final Departures NONE = new Departures(new int[0], new int[0], new int[0]);
+
+    private final Map<Long, Departures[]> regularByStop;
+    private final Map<Long, Map<LocalDate, Departures>> specialByStop;
+
+    private StopDepartureIndex(Map<Long, Departures[]> regularByStop, Map<Long, Map<LocalDate, Departures>> specialByStop) {
+        this.regularByStop = regularByStop;
+        this.specialByStop = specialByStop;
+    }
+
+    public Departures forStop(Long stopId, LocalDate day, boolean specialDay) {
+        if (specialDay) {
+            Map<LocalDate, Departures> byDate = specialByStop.get(stopId);
+            return byDate == null ? NONE : byDate.getOrDefault(day, NONE);
+        }
+        Departures[] byWeekday = regularByStop.get(stopId);
+        return byWeekday == null ? NONE : byWeekday[day.getDayOfWeek().getValue() - 1];
+    }
+
+    // On a date special for some routes only, their SPECIAL runs of that date replace their regular runs
+    public Departures forStop(Long stopId, LocalDate day, Set<Long> specialRouteIds, List<TimetableSnapshot.RunEntry> runs) {
+        Departures regular = forStop(stopId, day, false);
+        Departures special = forStop(stopId, day, true);
+        int[] minutes = new int[regular.size() + special.size()];
+        int[] runIndexes = new int[minutes.length];
+        int[] stopIndexes = new int[minutes.length];
+        int count = 0;
+        int r = 0;
+        int s = 0;
+        while (r < regular.size() || s < special.size()) {
+            boolean fromRegular = s == special.size() || (r < regular.size()
+                    && (regular.minutes[r] < special.minutes[s]
+                    || (regular.minutes[r] == special.minutes[s] && regular.runIndexes[r] < special.runIndexes[s])));
+            Departures from = fromRegular ? regular : special;
+            int i = fromRegular ? r++ : s++;
+            boolean specialRoute = specialRouteIds.contains(runs.get(from.runIndexes[i]).getRouteId());
+            if (specialRoute != fromRegular) {
+                minutes[count] = from.minutes[i];
+                runIndexes[count] = from.runIndexes[i];
+                stopIndexes[count] = from.stopIndexes[i];
+                count++;
+            }
+        }
+        return new Departures(Arrays.copyOf(minutes, count), Arrays.copyOf(runIndexes, count),
+                Arrays.copyOf(stopIndexes, count));
+    }
+
+    static StopDepartureIndex build(Map<Long, TimetableSnapshot.RouteTimetable> routes, List<TimetableSnapshot.RunEntry> runs) {
+        Map<Long, LongBuffer[]> regular = new HashMap<>();
+        Map<Long, Map<LocalDate, LongBuffer>> special = new HashMap<>();
+
+        for (int runIndex = 0; runIndex < runs.size(); runIndex++) {
+            TimetableSnapshot.RunEntry run = runs.get(runIndex);
+            TimetableSnapshot.RouteTimetable route = routes.get(run.getRouteId());
+            if (route == null || !route.isActive()) {
+                continue;
+            }
+            int startMinute = run.getStartTime().getHour() * 60 + run.getStartTime().getMinute();
+            for (int i = 0; i < route.getStopIds().size(); i++) {
+                Integer offset = route.getCumulativeMinutes().get(i);
+                if (offset == null) {
+                    continue;
+                }
+                Long stopId = route.getStopIds().get(i);
+                long key = ((long) (startMinute + offset) << 48) | ((long) runIndex << 16) | i;
+                if (run.getScheduleType() == ScheduleType.SPECIAL) {
+                    special.computeIfAbsent(stopId, k -> new HashMap<>())
+                            .computeIfAbsent(run.getSpecificDate(), k -> new LongBuffer())
+                            .add(key);
+                } else if (run.getDaysOfWeekMask() != null) {
+                    LongBuffer[] byWeekday = regular.computeIfAbsent(stopId, k -> new LongBuffer[7]);
+                    for (int d = 0; d < 7; d++) {
+                        if ((run.getDaysOfWeekMask() & (1 << d)) == 0) {
+                            continue;
+                        }
+                        if (byWeekday[d] == null) {
+                            byWeekday[d] = new LongBuffer();
+                        }
+                        byWeekday[d].add(key);
+                    }
+                }
+            }
+        }
+
+        Map<Long, Departures[]> regularByStop = new HashMap<>(regular.size() * 2);
+        regular.forEach((stopId, buffers) -> {
+            Departures[] byWeekday = new Departures[7];
+            for (int d = 0; d < 7; d++) {
+                byWeekday[d] = buffers[d] == null ? NONE : buffers[d].toDepartures();
+            }
+            regularByStop.put(stopId, byWeekday);
+        });
+        Map<Long, Map<LocalDate, Departures>> specialByStop = new HashMap<>(special.size() * 2);
+        special.forEach((stopId, byDate) -> {
+            Map<LocalDate, Departures> frozen = new HashMap<>();
+            byDate.forEach((date, buffer) -> frozen.put(date, buffer.toDepartures()));
+            specialByStop.put(stopId, frozen);
+        });
+        return new StopDepartureIndex(regularByStop, specialByStop);
+    }
+
+    @Getter
+    public static final class Departures {
+        private final int[] minutes;
+        private final int[] runIndexes;
+        private final int[] stopIndexes;
+
+        private Departures(int[] minutes, int[] runIndexes, int[] stopIndexes) {
+            this.minutes = minutes;
+            this.runIndexes = runIndexes;
+            this.stopIndexes = stopIndexes;
+        }
+
+        public int size() {
+            return minutes.length;
+        }
+
+        // Index of the first departure at or after the given minute (size() if there is none)
+        public int firstAtOrAfter(int minute) {
+            int low = 0;
+            int high = minutes.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (minutes[mid] < minute) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    // Departure minute in the high 16 bits, run index in the next 32 and stop position in the low 16: sorting the
+    // keys sorts by minute, then run
+    private static final class LongBuffer {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        Departures toDepartures() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            int[] minutes = new int[size];
+            int[] runIndexes = new int[size];
+            int[] stopIndexes = new int[size];
+            for (int i = 0; i < size; i++) {
+                minutes[i] = (int) (sorted[i] >>> 48);
+                runIndexes[i] = (int) (sorted[i] >>> 16);
+                stopIndexes[i] = (int) (sorted[i] & 0xFFFF);
+            }
+            return new Departures(minutes, runIndexes, stopIndexes);
+        }
+    }
+}
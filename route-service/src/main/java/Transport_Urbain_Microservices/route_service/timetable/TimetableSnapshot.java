@@ -0,0 +1,339 @@
+package Transport_Urbain_Microservices.route_service.timetable;
+
+import Transport_Urbain_Microservices.route_service.entity.DaysOfWeekMask;
+import Transport_Urbain_Microservices.route_service.entity.FrequencyTemplate;
+import Transport_Urbain_Microservices.route_service.entity.RouteShapeSource;
+import Transport_Urbain_Microservices.route_service.entity.RouteStatus;
+import Transport_Urbain_Microservices.route_service.entity.ScheduleType;
+import Transport_Urbain_Microservices.route_service.geo.StopGrid;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Value;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Immutable, versioned view of the whole network (stops, routes, offsets, shapes, runs, frequency templates
+// and special days). A new instance is built after every write (or once per staged batch of writes) and swapped
+// in by TimetableSnapshotHolder, so readers never see a half-updated timetable and never touch the database.
+// Every read endpoint is served from it: what is served is always exactly one published version.
+@Getter
+public class TimetableSnapshot {
+
+    private final long version;
+    private final Instant builtAt = Instant.now();
+    private final NavigableMap<Long, StopEntry> stops;
+    private final Map<Long, String> stopNames;
+    private final StopGrid stopGrid;
+    private final NavigableMap<Long, RouteTimetable> routes;
+    private final Map<Long, ShapeEntry> shapes;
+    private final List<RunEntry> runs; // by id, so the runs expanded from frequency templates come first
+    @Getter(AccessLevel.NONE)
+    private final int templateRunCount;
+    private final List<TemplateEntry> templates;
+    private final Set<LocalDate> specialDays;
+    // Dates special for some routes only, on which the other routes keep their regular runs
+    private final Map<Long, Set<LocalDate>> routeSpecialDays;
+    @Getter(AccessLevel.NONE)
+    private final Map<LocalDate, Set<Long>> routesSpecialOnDate;
+
+    private final Map<Long, RunEntry> runsById;
+    private final Map<Long, List<RunEntry>> runsByRoute;
+    @Getter(AccessLevel.NONE)
+    private final Map<Long, List<TemplateEntry>> templatesByRoute;
+    private final Map<Long, Map<Integer, List<RunEntry>>> regularRunsByRoute;
+    private final Map<Long, Map<LocalDate, List<RunEntry>>> specialRunsByRoute;
+    private final Map<Long, List<Long>> routeIdsByStop;
+    private final StopDepartureIndex departureIndex;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, RaptorNetwork> raptorNetworks = new ConcurrentHashMap<>();
+
+    public TimetableSnapshot(long version,
+                             Collection<StopEntry> stops,
+                             Collection<RouteTimetable> routes,
+                             Collection<ShapeEntry> shapes,
+                             Collection<RunEntry> runs,
+                             Collection<TemplateEntry> templates,
+                             Collection<LocalDate> specialDays,
+                             Map<Long, ? extends Collection<LocalDate>> routeSpecialDays) {
+        this.version = version;
+        NavigableMap<Long, StopEntry> stopsById = new TreeMap<>();
+        Map<Long, String> names = new HashMap<>();
+        for (StopEntry stop : stops) {
+            stopsById.put(stop.getId(), stop);
+            names.put(stop.getId(), stop.getName());
+        }
+        this.stops = Collections.unmodifiableNavigableMap(stopsById);
+        this.stopNames = Map.copyOf(names);
+        this.stopGrid = StopGrid.build(this.stops.values());
+        Map<Long, ShapeEntry> shapesByRoute = new HashMap<>();
+        shapes.forEach(shape -> shapesByRoute.put(shape.getRouteId(), shape));
+        this.shapes = Map.copyOf(shapesByRoute);
+        this.specialDays = Set.copyOf(specialDays);
+        Map<Long, Set<LocalDate>> datesByRoute = new HashMap<>();
+        Map<LocalDate, Set<Long>> routesByDate = new HashMap<>();
+        routeSpecialDays.forEach((routeId, dates) -> {
+            datesByRoute.put(routeId, Set.copyOf(dates));
+            for (LocalDate date : dates) {
+                routesByDate.computeIfAbsent(date, k -> new HashSet<>()).add(routeId);
+            }
+        });
+        this.routeSpecialDays = Map.copyOf(datesByRoute);
+        Map<LocalDate, Set<Long>> frozenRoutesByDate = new HashMap<>();
+        routesByDate.forEach((date, routeIds) -> frozenRoutesByDate.put(date, Set.copyOf(routeIds)));
+        this.routesSpecialOnDate = Map.copyOf(frozenRoutesByDate);
+
+        NavigableMap<Long, RouteTimetable> routesById = new TreeMap<>();
+        Map<Long, SortedSet<Long>> routesByStop = new HashMap<>();
+        for (RouteTimetable route : routes) {
+            routesById.put(route.getId(), route);
+            for (Long stopId : route.getStopIds()) {
+                routesByStop.computeIfAbsent(stopId, k -> new TreeSet<>()).add(route.getId());
+            }
+        }
+        this.routes = Collections.unmodifiableNavigableMap(routesById);
+        Map<Long, List<Long>> routeIds = new HashMap<>();
+        routesByStop.forEach((stopId, ids) -> routeIds.put(stopId, List.copyOf(ids)));
+        this.routeIdsByStop = Map.copyOf(routeIds);
+
+        List<RunEntry> sortedRuns = new ArrayList<>(runs);
+        // Ids of template runs are negative and stable across versions, so pages keyed on id follow this order
+        sortedRuns.sort(Comparator.comparing(RunEntry::getId));
+        this.runs = List.copyOf(sortedRuns);
+        this.templateRunCount = (int) this.runs.stream().filter(RunEntry::isFromTemplate).count();
+
+        List<TemplateEntry> sortedTemplates = new ArrayList<>(templates);
+        sortedTemplates.sort(Comparator.comparing(TemplateEntry::getId));
+        this.templates = List.copyOf(sortedTemplates);
+        Map<Long, List<TemplateEntry>> templatesOfRoute = new HashMap<>();
+        for (TemplateEntry template : this.templates) {
+            templatesOfRoute.computeIfAbsent(template.getRouteId(), k -> new ArrayList<>()).add(template);
+        }
+        this.templatesByRoute = freeze(templatesOfRoute);
+
+        Map<Long, RunEntry> byId = new HashMap<>();
+        Map<Long, List<RunEntry>> byRoute = new HashMap<>();
+        Map<Long, Map<Integer, List<RunEntry>>> regular = new HashMap<>();
+        Map<Long, Map<LocalDate, List<RunEntry>>> special = new HashMap<>();
+        for (RunEntry run : this.runs) {
+            byId.put(run.getId(), run);
+            byRoute.computeIfAbsent(run.getRouteId(), k -> new ArrayList<>()).add(run);
+            if (run.getScheduleType() == ScheduleType.SPECIAL) {
+                special.computeIfAbsent(run.getRouteId(), k -> new HashMap<>())
+                        .computeIfAbsent(run.getSpecificDate(), k -> new ArrayList<>())
+                        .add(run);
+            } else if (run.getDaysOfWeekMask() != null) {
+                // A run operating on several days is listed under each of them, without being copied
+                Map<Integer, List<RunEntry>> byDay = regular.computeIfAbsent(run.getRouteId(), k -> new HashMap<>());
+                for (int day = 1; day <= 7; day++) {
+                    if (run.runsOn(day)) {
+                        byDay.computeIfAbsent(day, k -> new ArrayList<>()).add(run);
+                    }
+                }
+            }
+        }
+        this.runsById = Map.copyOf(byId);
+        this.runsByRoute = freeze(byRoute);
+        this.regularRunsByRoute = freezeNested(regular);
+        this.specialRunsByRoute = freezeNested(special);
+        this.departureIndex = StopDepartureIndex.build(this.routes, this.runs);
+    }
+
+    public RouteTimetable getRoute(Long routeId) {
+        return routes.get(routeId);
+    }
+
+    // Routes by id, the first limit of them with an id greater than afterId
+    public List<RouteTimetable> getRoutesPage(long afterId, int limit) {
+        return routes.tailMap(afterId, false).values().stream().limit(limit).toList();
+    }
+
+    public boolean hasStop(Long stopId) {
+        return stops.containsKey(stopId);
+    }
+
+    public StopEntry getStop(Long stopId) {
+        return stops.get(stopId);
+    }
+
+    // Stops by id, the first limit of them with an id greater than afterId
+    public List<StopEntry> getStopsPage(long afterId, int limit) {
+        return stops.tailMap(afterId, false).values().stream().limit(limit).toList();
+    }
+
+    public ShapeEntry getShape(Long routeId) {
+        return shapes.get(routeId);
+    }
+
+    public boolean isSpecialDay(LocalDate date) {
+        return specialDays.contains(date);
+    }
+
+    // Whether the route only runs its SPECIAL runs on the date
+    public boolean isSpecialDay(Long routeId, LocalDate date) {
+        return specialDays.contains(date) || routeSpecialDays.getOrDefault(routeId, Set.of()).contains(date);
+    }
+
+    // Stored runs and runs expanded from frequency templates alike
+    public RunEntry getRun(Long runId) {
+        return runsById.get(runId);
+    }
+
+    // The stored runs, by id; departures of frequency templates are listed through the templates themselves
+    public List<RunEntry> getStoredRuns() {
+        return runs.subList(templateRunCount, runs.size());
+    }
+
+    // Runs by id, the first limit of them with an id greater than afterId
+    public List<RunEntry> getRunsPage(long afterId, int limit) {
+        int low = 0;
+        int high = runs.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (runs.get(mid).getId() <= afterId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return runs.subList(low, Math.min(runs.size(), low + Math.max(limit, 0)));
+    }
+
+    public List<TemplateEntry> getTemplatesForRoute(Long routeId) {
+        return templatesByRoute.getOrDefault(routeId, List.of());
+    }
+
+    public List<RunEntry> getRunsForRoute(Long routeId) {
+        return runsByRoute.getOrDefault(routeId, List.of());
+    }
+
+    // Same rule as the repository-backed lookup: special dates use SPECIAL runs, other dates the weekday's REGULAR runs.
+    public List<RunEntry> getRunsForRouteOnDay(Long routeId, LocalDate day) {
+        if (isSpecialDay(routeId, day)) {
+            return specialRunsByRoute.getOrDefault(routeId, Map.of()).getOrDefault(day, List.of());
+        }
+        int dayOfWeek = day.getDayOfWeek().getValue();
+        return regularRunsByRoute.getOrDefault(routeId, Map.of()).getOrDefault(dayOfWeek, List.of());
+    }
+
+    public StopDepartureIndex.Departures getDepartures(Long stopId, LocalDate day) {
+        Set<Long> specialRouteIds = routesSpecialOnDate.get(day);
+        if (specialRouteIds != null && !isSpecialDay(day)) {
+            return departureIndex.forStop(stopId, day, specialRouteIds, runs);
+        }
+        return departureIndex.forStop(stopId, day, isSpecialDay(day));
+    }
+
+    // Built on first use for each day type and kept for the lifetime of this snapshot
+    public RaptorNetwork getRaptorNetwork(LocalDate day) {
+        String key = isSpecialDay(day) || routesSpecialOnDate.containsKey(day)
+                ? day.toString()
+                : "weekday-" + day.getDayOfWeek().getValue();
+        return raptorNetworks.computeIfAbsent(key, k -> RaptorNetwork.build(this, day));
+    }
+
+    public List<Long> getRouteIdsForStop(Long stopId) {
+        return routeIdsByStop.getOrDefault(stopId, List.of());
+    }
+
+    private static <K, V> Map<K, List<V>> freeze(Map<K, List<V>> source) {
+        Map<K, List<V>> frozen = new HashMap<>();
+        source.forEach((key, values) -> frozen.put(key, List.copyOf(values)));
+        return Map.copyOf(frozen);
+    }
+
+    private static <K, K2, V> Map<K, Map<K2, List<V>>> freezeNested(Map<K, Map<K2, List<V>>> source) {
+        Map<K, Map<K2, List<V>>> frozen = new HashMap<>();
+        source.forEach((key, inner) -> frozen.put(key, freeze(inner)));
+        return Map.copyOf(frozen);
+    }
+
+    @Value
+    public static class StopEntry {
+        Long id;
+        String name;
+        Double lat;
+        Double lon;
+        String address;
+    }
+
+    @Value
+    public static class ShapeEntry {
+        Long routeId;
+        RouteShapeSource source;
+        int pointCount;
+        String polyline;
+    }
+
+    @Value
+    public static class RouteTimetable {
+        Long id;
+        String num;
+        String name;
+        String description;
+        RouteStatus status;
+        // All stops of the route in stopOrder, and the aligned offsets (null where no offset is defined)
+        List<Long> stopIds;
+        List<Integer> cumulativeMinutes;
+        List<String> stopNamesInOrder;
+
+        public boolean isActive() {
+            return status == RouteStatus.ACTIVE;
+        }
+    }
+
+    @Value
+    public static class RunEntry {
+        private static final int MINUTES_PER_DAY = 1440; // bound on the departures of a template, one a minute at most
+
+        Long id;
+        Long routeId;
+        String destinationStopName;
+        ScheduleType scheduleType;
+        Integer daysOfWeekMask;
+        LocalDate specificDate;
+        Integer runNum;
+        LocalTime startTime;
+
+        public boolean runsOn(int dayOfWeek) {
+            return daysOfWeekMask != null && DaysOfWeekMask.contains(daysOfWeekMask, dayOfWeek);
+        }
+
+        public boolean isFromTemplate() {
+            return isTemplateRunId(id);
+        }
+
+        // Stored runs have positive ids. A template departure is identified by its template, its index in the
+        // template's departures and the first day of the days it is listed for, so its id stays the same across
+        // snapshots for as long as the template and the templates sharing those days are unchanged.
+        public static long templateRunId(long templateId, int departureIndex, int firstDay) {
+            return -((templateId * MINUTES_PER_DAY + departureIndex) * 8 + firstDay);
+        }
+
+        public static boolean isTemplateRunId(Long runId) {
+            return runId != null && runId < 0;
+        }
+    }
+
+    @Value
+    public static class TemplateEntry {
+        Long id;
+        Long routeId;
+        String destinationStopName;
+        int daysOfWeekMask;
+        LocalTime startTime;
+        LocalTime endTime;
+        int headwayMinutes;
+
+        public boolean runsOn(int dayOfWeek) {
+            return DaysOfWeekMask.contains(daysOfWeekMask, dayOfWeek);
+        }
+
+        public List<LocalTime> departureTimes() {
+            return FrequencyTemplate.departureTimes(startTime, endTime, headwayMinutes);
+        }
+    }
+}
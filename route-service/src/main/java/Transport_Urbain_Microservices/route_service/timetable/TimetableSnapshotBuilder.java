@@ -0,0 +1,180 @@
+package Transport_Urbain_Microservices.route_service.timetable;
+
+import Transport_Urbain_Microservices.route_service.entity.*;
+import Transport_Urbain_Microservices.route_service.repo.*;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Component
+@RequiredArgsConstructor
+public class TimetableSnapshotBuilder {
+
+    private final RouteRepo routeRepo;
+    private final StopRepo stopRepo;
+    private final RouteStopRepo routeStopRepo;
+    private final RouteShapeRepo routeShapeRepo;
+    private final RunRepo runRepo;
+    private final SpecialDayRepo specialDayRepo;
+    private final RouteSpecialDayRepo routeSpecialDayRepo;
+    private final FrequencyTemplateRepo frequencyTemplateRepo;
+
+    // Runs in its own read-only transaction: it is invoked after the writing transaction has committed.
+    // One query per table, whatever the size of the network; route patterns and runs are read as flat rows.
+    // Runs and templates of routes that are not ACTIVE are kept, as GET /run lists them: the departure,
+    // journey and per-route readers skip them through RouteTimetable.isActive().
+    @Transactional(readOnly = true, propagation = Propagation.REQUIRES_NEW)
+    public TimetableSnapshot build(long version) {
+        List<TimetableSnapshot.StopEntry> stops = stopRepo.findAll().stream()
+                .map(stop -> new TimetableSnapshot.StopEntry(
+                        stop.getId(), stop.getName(), stop.getLat(), stop.getLon(), stop.getAddress()))
+                .toList();
+
+        // rows arrive ordered by route, then stop order
+        Map<Long, List<RouteStopTimeRow>> stopTimesByRoute = new HashMap<>();
+        for (RouteStopTimeRow row : routeStopRepo.findAllStopTimesOrdered()) {
+            stopTimesByRoute.computeIfAbsent(row.routeId(), k -> new ArrayList<>()).add(row);
+        }
+
+        List<TimetableSnapshot.RouteTimetable> routes = new ArrayList<>();
+        for (Route route : routeRepo.findAll()) {
+            List<RouteStopTimeRow> rows = stopTimesByRoute.getOrDefault(route.getId(), List.of());
+            List<Long> stopIds = new ArrayList<>(rows.size());
+            List<Integer> minutes = new ArrayList<>(rows.size());
+            List<String> names = new ArrayList<>(rows.size());
+            for (RouteStopTimeRow row : rows) {
+                stopIds.add(row.stopId());
+                minutes.add(row.cumulativeMinutes());
+                names.add(row.stopName());
+            }
+            routes.add(new TimetableSnapshot.RouteTimetable(
+                    route.getId(),
+                    route.getNum(),
+                    route.getName(),
+                    route.getDescription(),
+                    route.getStatus(),
+                    Collections.unmodifiableList(stopIds),
+                    Collections.unmodifiableList(minutes),
+                    Collections.unmodifiableList(names)
+            ));
+        }
+
+        List<TimetableSnapshot.ShapeEntry> shapes = routeShapeRepo.findAll().stream()
+                .map(shape -> new TimetableSnapshot.ShapeEntry(
+                        shape.getRouteId(), shape.getSource(), shape.getPointCount(), shape.getPolyline()))
+                .toList();
+
+        List<TimetableSnapshot.RunEntry> runs = new ArrayList<>();
+        // highest run number of the stored regular runs, per route and weekday (index day - 1)
+        Map<Long, int[]> lastStoredRunNum = new HashMap<>();
+        for (RunRow run : runRepo.findAllRows()) {
+            runs.add(new TimetableSnapshot.RunEntry(
+                    run.id(),
+                    run.routeId(),
+                    run.destinationStopName(),
+                    run.scheduleType(),
+                    run.daysOfWeekMask(),
+                    run.specificDate(),
+                    run.runNum(),
+                    run.startTime()
+            ));
+            if (run.scheduleType() == ScheduleType.REGULAR && run.daysOfWeekMask() != null && run.runNum() != null) {
+                int[] lastByDay = lastStoredRunNum.computeIfAbsent(run.routeId(), k -> new int[7]);
+                for (int day : DaysOfWeekMask.toDays(run.daysOfWeekMask())) {
+                    lastByDay[day - 1] = Math.max(lastByDay[day - 1], run.runNum());
+                }
+            }
+        }
+
+        // Headway templates are expanded here, in memory only, into runs with a synthetic (negative) id.
+        // Days served by the same set of templates share one run per departure, carrying the mask of those days.
+        List<TimetableSnapshot.TemplateEntry> allTemplates = frequencyTemplateRepo.findAllByOrderById().stream()
+                .map(template -> new TimetableSnapshot.TemplateEntry(
+                        template.getId(),
+                        template.getRoute().getId(),
+                        template.getDestinationStopName(),
+                        template.getDaysOfWeekMask(),
+                        template.getStartTime(),
+                        template.getEndTime(),
+                        template.getHeadwayMinutes()))
+                .toList();
+        Map<Long, List<TimetableSnapshot.TemplateEntry>> templatesByRoute = allTemplates.stream()
+                .collect(Collectors.groupingBy(TimetableSnapshot.TemplateEntry::getRouteId));
+        templatesByRoute.forEach((routeId, templates) ->
+                runs.addAll(expandTemplates(templates, lastStoredRunNum.getOrDefault(routeId, new int[7]))));
+
+        List<LocalDate> specialDays = specialDayRepo.findAll().stream()
+                .map(SpecialDay::getDate)
+                .toList();
+
+        Map<Long, List<LocalDate>> routeSpecialDays = routeSpecialDayRepo.findAll().stream()
+                .collect(Collectors.groupingBy(RouteSpecialDay::getRouteId,
+                        Collectors.mapping(RouteSpecialDay::getDate, Collectors.toList())));
+
+        return new TimetableSnapshot(version, stops, routes, shapes, runs, allTemplates, specialDays, routeSpecialDays);
+    }
+
+    // Template departures are numbered after the stored runs of their days, in departure order, so run numbers
+    // stay unique per route and day whichever of templates and runs were created first. Stored runs are numbered
+    // from their counters and never look at templates: adding a run renumbers the template departures after it.
+    static List<TimetableSnapshot.RunEntry> expandTemplates(List<TimetableSnapshot.TemplateEntry> templates,
+                                                            int[] lastStoredRunNumByDay) {
+        // keyed by the indexes of the templates running that day
+        Map<List<Integer>, Integer> daysByTemplateSet = new LinkedHashMap<>();
+        for (int day = 1; day <= 7; day++) {
+            List<Integer> onDay = new ArrayList<>();
+            for (int i = 0; i < templates.size(); i++) {
+                if (templates.get(i).runsOn(day)) {
+                    onDay.add(i);
+                }
+            }
+            if (!onDay.isEmpty()) {
+                daysByTemplateSet.merge(onDay, DaysOfWeekMask.of(day), (a, b) -> a | b);
+            }
+        }
+
+        List<TimetableSnapshot.RunEntry> runs = new ArrayList<>();
+        daysByTemplateSet.forEach((onDays, mask) -> {
+            List<Integer> days = DaysOfWeekMask.toDays(mask);
+            int firstDay = days.getFirst();
+            // one run number for all the days of the set: after the stored runs of the busiest of them
+            int runNum = 0;
+            for (int day : days) {
+                runNum = Math.max(runNum, lastStoredRunNumByDay[day - 1]);
+            }
+
+            List<TemplateDeparture> departures = new ArrayList<>();
+            for (Integer i : onDays) {
+                List<LocalTime> times = templates.get(i).departureTimes();
+                for (int d = 0; d < times.size(); d++) {
+                    departures.add(new TemplateDeparture(templates.get(i), d, times.get(d)));
+                }
+            }
+            // ties keep template order, as the templates are listed by id
+            departures.sort(Comparator.comparing(TemplateDeparture::time));
+            for (TemplateDeparture departure : departures) {
+                TimetableSnapshot.TemplateEntry template = departure.template();
+                runs.add(new TimetableSnapshot.RunEntry(
+                        TimetableSnapshot.RunEntry.templateRunId(template.getId(), departure.index(), firstDay),
+                        template.getRouteId(),
+                        template.getDestinationStopName(),
+                        ScheduleType.REGULAR,
+                        mask,
+                        null,
+                        ++runNum,
+                        departure.time()
+                ));
+            }
+        });
+        return runs;
+    }
+
+    private record TemplateDeparture(TimetableSnapshot.TemplateEntry template, int index, LocalTime time) {
+    }
+}
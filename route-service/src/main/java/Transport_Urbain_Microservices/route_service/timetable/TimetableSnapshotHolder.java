@@ -0,0 +1,157 @@
+package Transport_Urbain_Microservices.route_service.timetable;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Publishes network versions: each version is an immutable TimetableSnapshot, and publishing one is a single
+// reference swap, so readers keep the version they started with and never wait for a build.
+// By default every committed write publishes a new version, built in the background shortly after the commit. An edit session can hold publishing instead:
+// writes are then only staged (committed, but not served) and published together as one version.
+// The last few published versions are retained so the served one can be rolled back.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Order(3) // after OsmDataLoader and ScheduleDataLoader
+public class TimetableSnapshotHolder implements ApplicationRunner {
+
+    private final TimetableSnapshotBuilder snapshotBuilder;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.timetable.retained-versions:3}")
+    private int retainedVersions;
+
+    private final AtomicReference<TimetableSnapshot> current = new AtomicReference<>();
+    private final AtomicLong versionSequence = new AtomicLong();
+    // Committed writes; a build includes every write counted before it started
+    private final AtomicLong changeSequence = new AtomicLong();
+    private final AtomicBoolean buildQueued = new AtomicBoolean();
+    private volatile long builtChanges;
+    private volatile boolean held;
+
+    private final ExecutorService publisher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "timetable-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // guarded by this
+    private final Deque<TimetableSnapshot> retained = new ArrayDeque<>(); // newest first
+
+    public TimetableSnapshot current() {
+        TimetableSnapshot snapshot = current.get();
+        if (snapshot == null) {
+            snapshot = rebuild();
+        }
+        return snapshot;
+    }
+
+    // Rebuilds are serialized so versions are published in order; readers are never blocked,
+    // they keep using the previous snapshot until the reference is swapped.
+    public synchronized TimetableSnapshot rebuild() {
+        long changes = changeSequence.get();
+        TimetableSnapshot snapshot = snapshotBuilder.build(versionSequence.incrementAndGet());
+        retained.addFirst(snapshot);
+        while (retained.size() > Math.max(1, retainedVersions)) {
+            retained.removeLast();
+        }
+        swap(snapshot);
+        builtChanges = changes; // after the swap: no unpublished changes means they are served
+        return snapshot;
+    }
+
+    // Only counts the write and queues a build on the publisher thread, so the write request returns at commit.
+    // At most one build is queued: writes committed before it starts are all picked up by it, and writes
+    // committed while it runs queue the next one, so a burst of writes costs a few builds.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNetworkChanged(NetworkChangedEvent event) {
+        changeSequence.incrementAndGet();
+        if (!held && buildQueued.compareAndSet(false, true)) {
+            publisher.execute(this::catchUp);
+        }
+    }
+
+    private void catchUp() {
+        buildQueued.set(false);
+        try {
+            synchronized (this) {
+                if (!held && builtChanges < changeSequence.get()) {
+                    rebuild();
+                }
+            }
+        } catch (RuntimeException e) {
+            // the changes stay counted as unpublished and go out with the next build
+            log.error("Timetable snapshot build failed", e);
+        }
+    }
+
+    // Stops publishing committed writes until publish() is called; readers stay on the current version
+    public synchronized void hold() {
+        held = true;
+    }
+
+    // Builds one version from everything committed so far and resumes publishing each write
+    public synchronized TimetableSnapshot publish() {
+        held = false;
+        return rebuild();
+    }
+
+    // Serves a retained version again. This does not revert data: the writes made since stay in the database
+    // and are served again by the next publish() (or after a restart), so publishing is held until they are
+    // corrected through the write endpoints.
+    public synchronized TimetableSnapshot rollback(long version) {
+        TimetableSnapshot snapshot = retained.stream()
+                .filter(s -> s.getVersion() == version)
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Network version " + version + " is not retained"));
+        held = true;
+        swap(snapshot);
+        return snapshot;
+    }
+
+    public synchronized List<TimetableSnapshot> getRetainedVersions() {
+        return List.copyOf(retained);
+    }
+
+    public boolean isHeld() {
+        return held;
+    }
+
+    // Writes committed since the last build, not served yet
+    public long getUnpublishedChanges() {
+        return changeSequence.get() - builtChanges;
+    }
+
+    @PreDestroy
+    void stop() {
+        publisher.shutdownNow();
+    }
+
+    private void swap(TimetableSnapshot snapshot) {
+        current.set(snapshot);
+        eventPublisher.publishEvent(new NetworkPublishedEvent(snapshot.getVersion()));
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        TimetableSnapshot snapshot = rebuild();
+        log.info("Timetable snapshot v{} built: {} routes, {} runs",
+                snapshot.getVersion(), snapshot.getRoutes().size(), snapshot.getRuns().size());
+    }
+}
@@ -0,0 +1,68 @@
+package Transport_Urbain_Microservices.route_service.config;
+
+import Transport_Urbain_Microservices.route_service.service.DatasetVersion;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Requests are given the producible media types that handler mapping would have recorded for the chosen mapping
+class DatasetETagInterceptorTest {
+
+	private final DatasetVersion datasetVersion = new DatasetVersion();
+	private final DatasetETagInterceptor interceptor = new DatasetETagInterceptor(datasetVersion);
+
+	@Test
+	void jsonAndNdjsonRepresentationsHaveDifferentTags() {
+		MockHttpServletResponse json = handle(get(MediaType.APPLICATION_JSON), interceptor);
+		MockHttpServletResponse ndjson = handle(get(MediaType.APPLICATION_NDJSON), interceptor);
+
+		assertNotEquals(json.getHeader("ETag"), ndjson.getHeader("ETag"));
+		assertEquals("Accept", json.getHeader("Vary"));
+		assertEquals("Accept", ndjson.getHeader("Vary"));
+
+		// the JSON tag does not validate the NDJSON representation
+		MockHttpServletRequest revalidation = get(MediaType.APPLICATION_NDJSON);
+		revalidation.addHeader("If-None-Match", json.getHeader("ETag"));
+		assertEquals(200, handle(revalidation, interceptor).getStatus());
+		revalidation = get(MediaType.APPLICATION_NDJSON);
+		revalidation.addHeader("If-None-Match", ndjson.getHeader("ETag"));
+		assertEquals(304, handle(revalidation, interceptor).getStatus());
+	}
+
+	@Test
+	void singleRepresentationsKeepTheDatasetTag() {
+		MockHttpServletResponse response = handle(new MockHttpServletRequest("GET", "/route/1"), interceptor);
+		assertEquals(datasetVersion.etag(), response.getHeader("ETag"));
+		assertNull(response.getHeader("Vary"));
+	}
+
+	@Test
+	void timetablesAreTaggedOnlyForAGivenDate() {
+		DatasetETagInterceptor timetable = new DatasetETagInterceptor(datasetVersion,
+				request -> request.getParameter("date") == null);
+		assertNull(handle(new MockHttpServletRequest("GET", "/route/1/timetable"), timetable).getHeader("ETag"));
+
+		MockHttpServletRequest dated = new MockHttpServletRequest("GET", "/route/1/timetable");
+		dated.setParameter("date", "2026-10-19");
+		assertEquals(datasetVersion.etag(), handle(dated, timetable).getHeader("ETag"));
+	}
+
+	private static MockHttpServletRequest get(MediaType produces) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/route");
+		request.addHeader("Accept", produces.toString());
+		request.setAttribute(HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE, Set.of(produces));
+		return request;
+	}
+
+	private static MockHttpServletResponse handle(MockHttpServletRequest request, DatasetETagInterceptor interceptor) {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		interceptor.preHandle(request, response, new Object());
+		return response;
+	}
+}
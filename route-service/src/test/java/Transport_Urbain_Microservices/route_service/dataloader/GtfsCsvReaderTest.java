@@ -0,0 +1,65 @@
+package Transport_Urbain_Microservices.route_service.dataloader;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GtfsCsvReaderTest {
+
+	@Test
+	void readsRecordsByHeaderName() throws IOException {
+		try (GtfsCsvReader csv = reader("stop_id,stop_name\nS1,Alpha\nS2,Beta\n")) {
+			int id = csv.column("stop_id");
+			int name = csv.column("stop_name");
+			assertTrue(csv.next());
+			assertEquals("S1", csv.get(id));
+			assertEquals("Alpha", csv.get(name));
+			assertTrue(csv.next());
+			assertEquals("S2", csv.get(id));
+			assertFalse(csv.next());
+		}
+	}
+
+	@Test
+	void handlesQuotesBomAndCrlf() throws IOException {
+		try (GtfsCsvReader csv = reader("\uFEFFtrip_id, trip_headsign\r\nT1,\"Dest, \"\"X\"\"\"\r\nT2,\"two\nlines\"\r\n")) {
+			int headsign = csv.column("trip_headsign");
+			assertEquals(0, csv.column("trip_id"));
+			assertTrue(csv.next());
+			assertEquals("Dest, \"X\"", csv.get(headsign));
+			assertTrue(csv.next());
+			assertEquals("two\nlines", csv.get(headsign));
+			assertFalse(csv.next());
+		}
+	}
+
+	@Test
+	void missingColumnsAndEmptyValuesAreNull() throws IOException {
+		try (GtfsCsvReader csv = reader("a,b,c\n1,,\n\n2\n")) {
+			assertEquals(-1, csv.column("d"));
+			assertTrue(csv.next());
+			assertEquals("1", csv.get(0));
+			assertNull(csv.get(1));
+			assertNull(csv.get(csv.column("d")));
+			assertTrue(csv.next()); // the blank line is skipped
+			assertEquals("2", csv.get(0));
+			assertNull(csv.get(2));
+			assertFalse(csv.next());
+		}
+	}
+
+	@Test
+	void rejectsUnterminatedQuotes() throws IOException {
+		try (GtfsCsvReader csv = reader("a\n\"open\n")) {
+			assertThrows(IOException.class, csv::next);
+		}
+	}
+
+	private static GtfsCsvReader reader(String content) throws IOException {
+		return new GtfsCsvReader(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+	}
+}
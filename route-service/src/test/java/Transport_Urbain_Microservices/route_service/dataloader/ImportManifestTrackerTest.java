@@ -0,0 +1,70 @@
+package Transport_Urbain_Microservices.route_service.dataloader;
+
+import Transport_Urbain_Microservices.route_service.entity.ImportManifest;
+import Transport_Urbain_Microservices.route_service.repo.ImportManifestRepo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// The manifest of "osm" records the hash "recorded" for a file of 5 bytes last modified at 1_000_000 ms
+class ImportManifestTrackerTest {
+
+	private static final long MODIFIED = 1_000_000;
+
+	@TempDir
+	Path dir;
+
+	private final ImportManifestRepo repo = mock(ImportManifestRepo.class);
+	private final ImportManifestTracker tracker = new ImportManifestTracker(repo);
+
+	@Test
+	void unchangedFileReusesTheRecordedHash() throws IOException {
+		manifest();
+		ImportManifestTracker.SourceFile file = tracker.hash("osm", new FileSystemResource(file("hello", MODIFIED)));
+		assertEquals("recorded", file.hash());
+		assertEquals(5L, file.size());
+		assertEquals(MODIFIED, file.lastModified());
+	}
+
+	@Test
+	void touchedOrResizedFilesAreHashedAgain() throws IOException {
+		manifest();
+		String touched = tracker.hash("osm", new FileSystemResource(file("hello", MODIFIED + 1000))).hash();
+		String resized = tracker.hash("osm", new FileSystemResource(file("hello!", MODIFIED))).hash();
+		assertNotEquals("recorded", touched);
+		assertNotEquals("recorded", resized);
+		assertNotEquals(touched, resized);
+	}
+
+	@Test
+	void resourcesWithoutMetadataAreAlwaysHashed() throws IOException {
+		manifest();
+		ImportManifestTracker.SourceFile file = tracker.hash("osm", new ByteArrayResource("hello".getBytes()));
+		assertNotEquals("recorded", file.hash());
+		assertEquals(file.hash(), tracker.hash("other", new FileSystemResource(file("hello", MODIFIED))).hash());
+	}
+
+	private void manifest() {
+		when(repo.findById("osm")).thenReturn(Optional.of(new ImportManifest("osm", "file", "recorded", "recorded",
+				5L, MODIFIED, 1L, LocalDateTime.now(), 1L)));
+	}
+
+	private Path file(String content, long lastModified) throws IOException {
+		Path path = Files.createTempFile(dir, "source", ".json");
+		Files.writeString(path, content);
+		Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified));
+		return path;
+	}
+}
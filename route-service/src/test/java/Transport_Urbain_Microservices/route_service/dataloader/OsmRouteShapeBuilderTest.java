@@ -0,0 +1,39 @@
+package Transport_Urbain_Microservices.route_service.dataloader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OsmRouteShapeBuilderTest {
+
+	@Test
+	void joinsWaysDrawnInTravelOrderAndKeepsSharedNodesOnce() {
+		double[] first = {0, 0, 0, 1};
+		double[] second = {0, 1, 0, 2};
+		assertArrayEquals(new double[]{0, 0, 0, 1, 0, 2}, OsmRouteShapeBuilder.join(List.of(first, second)));
+	}
+
+	@Test
+	void turnsWaysDrawnAgainstTravelDirection() {
+		double[] first = {0, 1, 0, 0}; // drawn towards the start of the route
+		double[] second = {0, 2, 0, 1}; // drawn backwards too
+		assertArrayEquals(new double[]{0, 0, 0, 1, 0, 2}, OsmRouteShapeBuilder.join(List.of(first, second)));
+	}
+
+	@Test
+	void bridgesGapsBetweenWays() {
+		double[] first = {0, 0, 0, 1};
+		double[] second = {0, 3, 0, 2}; // a way is missing between 1 and 2
+		assertArrayEquals(new double[]{0, 0, 0, 1, 0, 2, 0, 3}, OsmRouteShapeBuilder.join(List.of(first, second)));
+	}
+
+	@Test
+	void skipsMissingAndEmptyWays() {
+		double[] way = {0, 0, 0, 1};
+		assertArrayEquals(way, OsmRouteShapeBuilder.join(Arrays.asList(null, new double[0], way)));
+		assertEquals(0, OsmRouteShapeBuilder.join(List.of()).length);
+	}
+}
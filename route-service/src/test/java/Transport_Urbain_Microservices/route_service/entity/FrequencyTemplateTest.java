@@ -0,0 +1,38 @@
+package Transport_Urbain_Microservices.route_service.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrequencyTemplateTest {
+
+	@Test
+	void departuresRunFromStartToEndInclusive() {
+		assertEquals(List.of(LocalTime.of(6, 0), LocalTime.of(6, 20), LocalTime.of(6, 40)),
+				FrequencyTemplate.departureTimes(LocalTime.of(6, 0), LocalTime.of(6, 40), 20));
+	}
+
+	@Test
+	void departuresStopAtMidnight() {
+		assertEquals(List.of(LocalTime.of(23, 0), LocalTime.of(23, 50)),
+				FrequencyTemplate.departureTimes(LocalTime.of(23, 0), LocalTime.of(23, 59), 50));
+	}
+
+	@Test
+	void headwaysOfADayOrMoreGiveOneDeparture() {
+		// a multiple of a day used to bring the time back where it started, forever
+		assertEquals(List.of(LocalTime.MIDNIGHT),
+				FrequencyTemplate.departureTimes(LocalTime.MIDNIGHT, LocalTime.of(23, 59), 24 * 60));
+		assertEquals(List.of(LocalTime.of(5, 0)),
+				FrequencyTemplate.departureTimes(LocalTime.of(5, 0), LocalTime.of(23, 59), Integer.MAX_VALUE));
+	}
+
+	@Test
+	void rejectsHeadwaysBelowOneMinute() {
+		assertThrows(IllegalArgumentException.class,
+				() -> FrequencyTemplate.departureTimes(LocalTime.of(6, 0), LocalTime.of(7, 0), 0));
+	}
+}
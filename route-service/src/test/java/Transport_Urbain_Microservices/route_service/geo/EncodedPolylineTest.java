@@ -0,0 +1,43 @@
+package Transport_Urbain_Microservices.route_service.geo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EncodedPolylineTest {
+
+	// The example of Google's format description
+	private static final double[] POINTS = {38.5, -120.2, 40.7, -120.95, 43.252, -126.453};
+	private static final String ENCODED = "_p~iF~ps|U_ulLnnqC_mqNvxq`@";
+
+	@Test
+	void encodesTheReferenceExample() {
+		assertEquals(ENCODED, EncodedPolyline.encode(POINTS));
+	}
+
+	@Test
+	void decodesTheReferenceExample() {
+		assertArrayEquals(POINTS, EncodedPolyline.decode(ENCODED), 1e-9);
+	}
+
+	@Test
+	void roundTripsToFivePlaces() {
+		double[] points = {33.971591, -6.849813, 33.9716, -6.8498, 33.96, -6.86, -0.000004, 0.000006};
+		double[] decoded = EncodedPolyline.decode(EncodedPolyline.encode(points));
+		assertEquals(points.length, decoded.length);
+		for (int i = 0; i < points.length; i++) {
+			assertEquals(Math.round(points[i] * 1e5) / 1e5, decoded[i], 1e-9);
+		}
+	}
+
+	@Test
+	void emptyLine() {
+		assertEquals("", EncodedPolyline.encode(new double[0]));
+		assertEquals(0, EncodedPolyline.decode("").length);
+	}
+
+	@Test
+	void rejectsTruncatedInput() {
+		assertThrows(IllegalArgumentException.class, () -> EncodedPolyline.decode(ENCODED.substring(0, 3)));
+	}
+}
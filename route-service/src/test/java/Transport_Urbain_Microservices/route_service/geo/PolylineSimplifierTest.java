@@ -0,0 +1,44 @@
+package Transport_Urbain_Microservices.route_service.geo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolylineSimplifierTest {
+
+	@Test
+	void dropsPointsWithinTheTolerance() {
+		// the middle point is about 1 m off the straight line between the ends
+		double[] points = {34.0, -6.8, 34.00001, -6.79, 34.0, -6.78};
+		assertArrayEquals(new double[]{34.0, -6.8, 34.0, -6.78}, PolylineSimplifier.simplify(points, 5));
+	}
+
+	@Test
+	void keepsPointsBeyondTheTolerance() {
+		// the middle point is about 111 m off the line
+		double[] points = {34.0, -6.8, 34.001, -6.79, 34.0, -6.78};
+		assertArrayEquals(points, PolylineSimplifier.simplify(points, 5));
+	}
+
+	@Test
+	void keepsTheFarPointOfALoop() {
+		// start and end coincide: distances are taken to the segment, not to an undefined line
+		double[] points = {34.0, -6.8, 34.0, -6.79, 34.01, -6.79, 34.0, -6.8};
+		double[] simplified = PolylineSimplifier.simplify(points, 5);
+		assertTrue(simplified.length >= 6);
+		assertEquals(34.0, simplified[0]);
+		assertEquals(-6.8, simplified[simplified.length - 1]);
+	}
+
+	@Test
+	void leavesTwoPointLinesAsTheyAre() {
+		double[] points = {34.0, -6.8, 34.1, -6.7};
+		assertSame(points, PolylineSimplifier.simplify(points, 1000));
+	}
+
+	@Test
+	void toleranceHalvesWithEachZoomLevel() {
+		assertEquals(PolylineSimplifier.toleranceAtZoom(34.0, 12) / 2, PolylineSimplifier.toleranceAtZoom(34.0, 13), 1e-9);
+		assertEquals(156_543.03, PolylineSimplifier.toleranceAtZoom(0, 0), 1e-6);
+	}
+}
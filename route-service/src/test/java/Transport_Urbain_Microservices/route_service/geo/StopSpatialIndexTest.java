@@ -0,0 +1,99 @@
+package Transport_Urbain_Microservices.route_service.geo;
+
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshotHolder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Stops around (34.0, -6.8), where a grid cell is about 555 m north-south and 460 m east-west:
+// 1 at the origin, 2 about 111 m north, 3 about 461 m east (in the next cell), 4 about 445 m north and
+// 369 m east (578 m away, inside the square around a 500 m radius), 5 about 567 m north (in the next
+// cell row) and 6 more than 100 km away.
+class StopSpatialIndexTest {
+
+	private static final double LAT = 34.0;
+	private static final double LON = -6.8;
+
+	private final TimetableSnapshotHolder snapshotHolder = mock(TimetableSnapshotHolder.class);
+	private final StopSpatialIndex index = new StopSpatialIndex(snapshotHolder);
+
+	@BeforeEach
+	void serveFirstVersion() {
+		when(snapshotHolder.current()).thenReturn(snapshot(1, List.of(
+				stop(1, LAT, LON),
+				stop(2, LAT + 0.001, LON),
+				stop(3, LAT, LON + 0.005),
+				stop(4, LAT + 0.004, LON + 0.004),
+				stop(5, LAT + 0.0051, LON),
+				stop(6, LAT + 1, LON))));
+	}
+
+	@Test
+	void nearestAreSortedByDistanceAndCutAtTheRadius() {
+		List<StopSpatialIndex.Neighbour> nearest = index.nearest(LAT, LON, 500, 10);
+		assertEquals(List.of(1L, 2L, 3L), ids(nearest));
+		assertEquals(0, nearest.get(0).getDistanceMeters(), 1e-6);
+		assertEquals(111, nearest.get(1).getDistanceMeters(), 1);
+		// stop 4 lies inside the box searched for 500 m but beyond the radius
+		assertFalse(ids(nearest).contains(4L));
+	}
+
+	@Test
+	void nearestLooksIntoNeighbouringCells() {
+		assertEquals(List.of(1L, 2L, 3L, 5L, 4L), ids(index.nearest(LAT, LON, 600, 10)));
+		// from stop 5, across the cell row boundary to the south
+		assertEquals(List.of(5L, 4L, 2L), ids(index.nearest(LAT + 0.0051, LON, 500, 10)));
+	}
+
+	@Test
+	void nearestKeepsTheClosestK() {
+		assertEquals(List.of(1L, 2L), ids(index.nearest(LAT, LON, 600, 2)));
+		assertTrue(index.nearest(LAT - 1, LON, 1000, 10).isEmpty());
+	}
+
+	@Test
+	void boxEdgesAreInclusive() {
+		List<TimetableSnapshot.StopEntry> inBox = index.withinBox(LAT, LON, LAT + 0.001, LON + 0.005, 10);
+		assertEquals(Set.of(1L, 2L, 3L), inBox.stream().map(TimetableSnapshot.StopEntry::getId).collect(Collectors.toSet()));
+	}
+
+	@Test
+	void largeBoxesWalkTheOccupiedCellsAndStopAtTheLimit() {
+		assertEquals(6, index.withinBox(-90, -180, 90, 180, 100).size());
+		assertEquals(2, index.withinBox(-90, -180, 90, 180, 2).size());
+	}
+
+	@Test
+	void queriesAnswerFromTheGridOfTheServedVersion() {
+		assertEquals(List.of(1L), ids(index.nearest(LAT, LON, 50, 10)));
+
+		// stop 1 moved away, stop 7 created at the origin, stop 2 deleted
+		when(snapshotHolder.current()).thenReturn(snapshot(2, List.of(
+				stop(1, LAT - 1, LON),
+				stop(3, LAT, LON + 0.005),
+				stop(7, LAT, LON))));
+		assertEquals(List.of(7L, 3L), ids(index.nearest(LAT, LON, 500, 10)));
+		assertEquals(List.of(1L), ids(index.nearest(LAT - 1, LON, 50, 10)));
+	}
+
+	private static List<Long> ids(List<StopSpatialIndex.Neighbour> neighbours) {
+		return neighbours.stream().map(n -> n.getStop().getId()).toList();
+	}
+
+	private static TimetableSnapshot.StopEntry stop(long id, double lat, double lon) {
+		return new TimetableSnapshot.StopEntry(id, "Stop " + id, lat, lon, null);
+	}
+
+	private static TimetableSnapshot snapshot(long version, List<TimetableSnapshot.StopEntry> stops) {
+		return new TimetableSnapshot(version, stops, List.of(), List.of(), List.of(), List.of(), List.of(), Map.of());
+	}
+}
@@ -0,0 +1,200 @@
+package Transport_Urbain_Microservices.route_service.realtime;
+
+import Transport_Urbain_Microservices.route_service.dto.StopDepartureDto;
+import Transport_Urbain_Microservices.route_service.entity.RouteStatus;
+import Transport_Urbain_Microservices.route_service.service.RunService;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshotHolder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Stop 1 is served by route 1, which reports a position before every flush, so each flush recomputes the board.
+// The boards are stubbed; the emitters record the encoded events instead of writing a response.
+class DepartureBoardHubTest {
+
+	private static final long STOP = 1;
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+	private final RunService runService = mock(RunService.class);
+	private final List<RecordingEmitter> emitters = new ArrayList<>();
+	private final DepartureBoardHub hub = hub();
+	private List<StopDepartureDto> board = List.of(departure(100, 8, 0), departure(101, 8, 10));
+
+	@Test
+	void subscribersGetTheBoardThenOnlyWhatChanged() throws Exception {
+		RecordingEmitter first = subscribe(null);
+		assertEquals("board", first.next().name);
+
+		board = List.of(departure(101, 8, 10), departure(102, 8, 20));
+		hub.flush();
+		Event update = first.next();
+		assertEquals("update", update.name);
+		assertEquals(List.of(102L), runIds(update.data.get("changed")));
+		assertEquals(List.of(100L), runIds(update.data.get("removed")));
+
+		// a later subscriber starts from the current board, and both get the same update
+		RecordingEmitter second = subscribe(null);
+		Event secondBoard = second.next();
+		assertEquals("board", secondBoard.name);
+		assertEquals(List.of(101L, 102L), runIds(secondBoard.data));
+		StopDepartureDto delayed = departure(101, 8, 10);
+		delayed.setPredictedDepartureTime(LocalTime.of(8, 13));
+		board = List.of(delayed, departure(102, 8, 20));
+		hub.flush();
+		for (RecordingEmitter emitter : List.of(first, second)) {
+			Event changed = emitter.next();
+			assertEquals("update", changed.name);
+			assertEquals(List.of(101L), runIds(changed.data.get("changed")));
+			assertEquals(objectMapper.valueToTree(LocalTime.of(8, 13)),
+					changed.data.get("changed").get(0).get("predictedDepartureTime"));
+			assertTrue(changed.data.get("removed").isEmpty());
+		}
+
+		// an unchanged board sends nothing
+		hub.flush();
+		assertNull(first.events.poll(200, TimeUnit.MILLISECONDS));
+		assertFalse(first.completed);
+	}
+
+	@Test
+	void subscriberWithAFullQueueIsDropped() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		RecordingEmitter slow = subscribe(release);
+		RecordingEmitter fast = subscribe(null);
+		slow.next();
+		fast.next();
+
+		// the slow writer holds the first update, the queue of two takes the next ones, the fourth overflows it
+		for (int i = 0; i < 4; i++) {
+			board = List.of(departure(200 + i, 9, i));
+			hub.flush();
+			assertEquals("update", fast.next().name);
+			if (i == 0) {
+				assertTrue(slow.blocked.await(5, TimeUnit.SECONDS));
+			}
+		}
+		assertTrue(slow.completed);
+		assertFalse(fast.completed);
+
+		// the dropped subscriber gets nothing more, the other one goes on
+		release.countDown();
+		board = List.of(departure(300, 10, 0));
+		hub.flush();
+		assertEquals(List.of(300L), runIds(fast.next().data.get("changed")));
+		assertFalse(fast.completed);
+		assertTrue(slow.events.isEmpty());
+	}
+
+	private DepartureBoardHub hub() {
+		TimetableSnapshot snapshot = new TimetableSnapshot(1, List.of(new TimetableSnapshot.StopEntry(STOP, "S1", 34.0, -6.8, null)),
+				List.of(new TimetableSnapshot.RouteTimetable(1L, "1", "Route 1", null, RouteStatus.ACTIVE,
+						List.of(STOP), List.of(0), List.of("S1"))),
+				List.of(), List.of(), List.of(), List.of(), Map.of());
+		TimetableSnapshotHolder holder = mock(TimetableSnapshotHolder.class);
+		when(holder.current()).thenReturn(snapshot);
+		VehiclePositionTracker tracker = mock(VehiclePositionTracker.class);
+		when(tracker.drainObservedRoutes()).thenReturn(Set.of(1L));
+		when(runService.getNextDeparturesForStop(eq(STOP), any(), anyInt())).thenAnswer(invocation -> board);
+
+		DepartureBoardHub hub = new DepartureBoardHub(runService, holder, tracker, objectMapper) {
+			@Override
+			SseEmitter newEmitter() {
+				return emitters.remove(0);
+			}
+		};
+		ReflectionTestUtils.setField(hub, "boardSize", 10);
+		ReflectionTestUtils.setField(hub, "queueSize", 2);
+		return hub;
+	}
+
+	private RecordingEmitter subscribe(CountDownLatch release) {
+		RecordingEmitter emitter = new RecordingEmitter(release);
+		emitters.add(emitter);
+		assertSame(emitter, hub.subscribe(STOP));
+		return emitter;
+	}
+
+	private static List<Long> runIds(JsonNode departures) {
+		List<Long> ids = new ArrayList<>();
+		departures.forEach(departure -> ids.add(departure.get("runId").asLong()));
+		return ids;
+	}
+
+	private static StopDepartureDto departure(long runId, int hour, int minute) {
+		return new StopDepartureDto(runId, 1L, "1", "Route 1", "End", LocalTime.of(hour, minute), null);
+	}
+
+	private record Event(String name, JsonNode data) {
+	}
+
+	// With a release latch, every send after the first waits for it, as a client that stopped reading would
+	private final class RecordingEmitter extends SseEmitter {
+		final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+		final CountDownLatch blocked = new CountDownLatch(1);
+		private final CountDownLatch release;
+		private int sent;
+		volatile boolean completed;
+
+		RecordingEmitter(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public void send(Set<DataWithMediaType> items) throws IOException {
+			if (release != null && sent++ > 0) {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			StringBuilder text = new StringBuilder();
+			items.forEach(item -> text.append(item.getData()));
+			String name = null;
+			JsonNode data = null;
+			for (String line : text.toString().split("\n")) {
+				if (line.startsWith("event:")) {
+					name = line.substring("event:".length());
+				} else if (line.startsWith("data:")) {
+					data = objectMapper.readTree(line.substring("data:".length()));
+				}
+			}
+			events.add(new Event(name, data));
+		}
+
+		@Override
+		public void complete() {
+			completed = true;
+		}
+
+		Event next() throws InterruptedException {
+			Event event = events.poll(5, TimeUnit.SECONDS);
+			assertNotNull(event, "no event sent");
+			return event;
+		}
+	}
+}
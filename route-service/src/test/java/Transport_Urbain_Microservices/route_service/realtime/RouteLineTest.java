@@ -0,0 +1,61 @@
+package Transport_Urbain_Microservices.route_service.realtime;
+
+import Transport_Urbain_Microservices.route_service.entity.RouteStatus;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Stops 1 to 3 lie east of each other on the same parallel, about 920 m apart; stop 4 goes back to stop 2.
+class RouteLineTest {
+
+	private static final double LAT = 34.0;
+	private static final Map<Long, TimetableSnapshot.StopEntry> STOPS = Map.of(
+			1L, new TimetableSnapshot.StopEntry(1L, "One", LAT, -6.80, null),
+			2L, new TimetableSnapshot.StopEntry(2L, "Two", LAT, -6.79, null),
+			3L, new TimetableSnapshot.StopEntry(3L, "Three", LAT, -6.78, null),
+			4L, new TimetableSnapshot.StopEntry(4L, "Four", LAT, -6.79, null));
+
+	@Test
+	void snapsOntoTheClosestSegment() {
+		RouteLine line = line(List.of(1L, 2L, 3L), Arrays.asList(0, 4, 10));
+		assertEquals(0.5, line.snap(LAT + 0.0001, -6.795, 0, 50), 1e-6);
+		assertEquals(1.25, line.snap(LAT, -6.7875, 0, 50), 1e-6);
+		assertEquals(7.0, line.minutesAt(1.5), 1e-9);
+	}
+
+	@Test
+	void positionsTooFarAwayAreNotSnapped() {
+		RouteLine line = line(List.of(1L, 2L, 3L), Arrays.asList(0, 4, 10));
+		assertEquals(-1, line.snap(LAT + 0.01, -6.795, 0, 50)); // about 1.1 km north
+	}
+
+	@Test
+	void keepsMovingForwardOnARouteThatPassesTwice() {
+		RouteLine line = line(List.of(1L, 2L, 3L, 4L), Arrays.asList(0, 4, 10, 16));
+		// between stops 2 and 3: on the way out and on the way back
+		assertEquals(1.5, line.snap(LAT, -6.785, 0, 50), 1e-6);
+		assertEquals(2.5, line.snap(LAT, -6.785, 2, 50), 1e-6);
+		// nothing close ahead: the whole line is searched
+		assertEquals(0.5, line.snap(LAT, -6.795, 2, 50), 1e-6);
+	}
+
+	@Test
+	void stopsWithoutOffsetOrCoordinatesAreLeftOut() {
+		RouteLine line = line(List.of(1L, 2L, 3L, 99L), Arrays.asList(0, null, 10, 12));
+		assertEquals(2, line.pointCount());
+		assertEquals(3L, line.stopId(1));
+		assertEquals(2, line.stopIndex(1));
+		assertNull(line(List.of(1L, 99L), Arrays.asList(0, 5)));
+	}
+
+	private static RouteLine line(List<Long> stopIds, List<Integer> minutes) {
+		TimetableSnapshot.RouteTimetable route = new TimetableSnapshot.RouteTimetable(
+				1L, "1", "Route 1", null, RouteStatus.ACTIVE, stopIds, minutes, stopIds.stream().map(String::valueOf).toList());
+		return RouteLine.of(route, STOPS::get);
+	}
+}
@@ -0,0 +1,193 @@
+package Transport_Urbain_Microservices.route_service.service;
+
+import Transport_Urbain_Microservices.route_service.dto.BulkCreateRunsDto;
+import Transport_Urbain_Microservices.route_service.dto.BulkCreateRunsResultDto;
+import Transport_Urbain_Microservices.route_service.dto.CreateRunDTO;
+import Transport_Urbain_Microservices.route_service.entity.DaysOfWeekMask;
+import Transport_Urbain_Microservices.route_service.entity.Route;
+import Transport_Urbain_Microservices.route_service.entity.Run;
+import Transport_Urbain_Microservices.route_service.entity.ScheduleType;
+import Transport_Urbain_Microservices.route_service.exception.InvalidRunDataException;
+import Transport_Urbain_Microservices.route_service.exception.ResourceNotFoundException;
+import Transport_Urbain_Microservices.route_service.repo.RouteRepo;
+import Transport_Urbain_Microservices.route_service.repo.RunRepo;
+import Transport_Urbain_Microservices.route_service.repo.SpecialDayRepo;
+import Transport_Urbain_Microservices.route_service.repo.StopRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs created in bulk on two routes of their own: route 1 runs A -> B, route 2 runs C -> D. Route 1 already
+// has a Monday run numbered 4 and a Tuesday run numbered 1, stored without their counters, as the loaders leave them.
+@SpringBootTest
+@ActiveProfiles("test")
+class BulkRunCreationTest {
+
+	private static final LocalDate SPECIAL_DATE = LocalDate.of(2099, 12, 30);
+
+	@Autowired
+	private RunService runService;
+	@Autowired
+	private RouteRepo routeRepo;
+	@Autowired
+	private StopRepo stopRepo;
+	@Autowired
+	private RunRepo runRepo;
+	@Autowired
+	private SpecialDayRepo specialDayRepo;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private RouteFixture fixture;
+	private Route route1;
+	private Route route2;
+
+	@BeforeEach
+	void createRoutes() {
+		fixture = new RouteFixture(routeRepo, stopRepo, jdbcTemplate);
+		route1 = fixture.route("Bulk runs test route 1", null);
+		fixture.placeStops(route1, fixture.stops("Bulk runs test stop A", "Bulk runs test stop B"), List.of(0, 5));
+		route2 = fixture.route("Bulk runs test route 2", null);
+		fixture.placeStops(route2, fixture.stops("Bulk runs test stop C", "Bulk runs test stop D"), List.of(0, 7));
+		storeRun(DaysOfWeekMask.of(1), 4, LocalTime.of(5, 0));
+		storeRun(DaysOfWeekMask.of(2), 1, LocalTime.of(5, 30));
+	}
+
+	@AfterEach
+	void cleanUp() {
+		fixture.remove();
+		jdbcTemplate.update("delete from special_day where date = ?", SPECIAL_DATE);
+	}
+
+	@Test
+	void headwayRunsAreNumberedAfterTheStoredRunsOfTheirBusiestDay() {
+		BulkCreateRunsResultDto result = runService.createRunsInBulk(new BulkCreateRunsDto(null,
+				new BulkCreateRunsDto.HeadwaySpec(route1.getId(), ScheduleType.REGULAR, List.of(1, 2), null,
+						LocalTime.of(6, 0), LocalTime.of(7, 0), 30)));
+
+		assertEquals(3, result.getCreated());
+		List<Run> runs = created(result);
+		assertEquals(List.of(LocalTime.of(6, 0), LocalTime.of(6, 30), LocalTime.of(7, 0)),
+				runs.stream().map(Run::getStartTime).toList());
+		// Monday's last number is 4, so the runs of Monday and Tuesday go on from 5
+		assertEquals(List.of(5, 6, 7), runs.stream().map(Run::getRunNum).toList());
+		runs.forEach(run -> {
+			assertEquals(DaysOfWeekMask.of(List.of(1, 2)), run.getDaysOfWeekMask());
+			assertEquals("Bulk runs test stop B", run.getDestinationStopName());
+		});
+
+		// the counters carry on from the bulk runs
+		assertEquals(8, runService.createRun(new CreateRunDTO(route1.getId(), ScheduleType.REGULAR, 2, null, null,
+				LocalTime.of(8, 0))).getRunNum());
+	}
+
+	@Test
+	void listedRunsAreNumberedPerRouteAndDayInDepartureOrder() {
+		BulkCreateRunsResultDto result = runService.createRunsInBulk(new BulkCreateRunsDto(List.of(
+				new CreateRunDTO(route1.getId(), ScheduleType.REGULAR, 1, null, null, LocalTime.of(8, 0)),
+				new CreateRunDTO(route2.getId(), ScheduleType.REGULAR, 1, null, null, LocalTime.of(7, 0)),
+				new CreateRunDTO(route1.getId(), ScheduleType.REGULAR, null, List.of(1, 3), null, LocalTime.of(7, 30)),
+				new CreateRunDTO(route2.getId(), ScheduleType.SPECIAL, null, null, SPECIAL_DATE, LocalTime.of(9, 0)),
+				new CreateRunDTO(route1.getId(), ScheduleType.REGULAR, 3, null, null, LocalTime.of(6, 0))), null));
+
+		assertEquals(5, result.getCreated());
+		List<Run> runs = created(result);
+		assertEquals(List.of(LocalTime.of(8, 0), LocalTime.of(7, 0), LocalTime.of(7, 30), LocalTime.of(9, 0),
+				LocalTime.of(6, 0)), runs.stream().map(Run::getStartTime).toList());
+		// route 1: Wednesday 06:00 gets 1, then Monday and Wednesday 07:30 goes on from Monday's 4, then Monday 08:00
+		// route 2: its own Monday and special date counters
+		assertEquals(List.of(6, 1, 5, 1, 1), runs.stream().map(Run::getRunNum).toList());
+		assertEquals(List.of("Bulk runs test stop B", "Bulk runs test stop D", "Bulk runs test stop B",
+				"Bulk runs test stop D", "Bulk runs test stop B"), runs.stream().map(Run::getDestinationStopName).toList());
+		assertEquals(SPECIAL_DATE, runs.get(3).getSpecificDate());
+		assertTrue(specialDayRepo.existsByDate(SPECIAL_DATE));
+	}
+
+	@Test
+	void moreRunsThanTheLimitAreRejected() {
+		List<CreateRunDTO> requested = Collections.nCopies(RunService.MAX_BULK_RUNS + 1,
+				new CreateRunDTO(route1.getId(), ScheduleType.REGULAR, 1, null, null, LocalTime.of(6, 0)));
+		assertThrows(InvalidRunDataException.class,
+				() -> runService.createRunsInBulk(new BulkCreateRunsDto(requested, null)));
+		assertNothingCreated();
+	}
+
+	@Test
+	void invalidRequestsCreateNothing() {
+		CreateRunDTO valid = new CreateRunDTO(route1.getId(), ScheduleType.REGULAR, 1, null, null, LocalTime.of(6, 0));
+		BulkCreateRunsDto.HeadwaySpec headway = new BulkCreateRunsDto.HeadwaySpec(route1.getId(), ScheduleType.REGULAR,
+				List.of(1), null, LocalTime.of(6, 0), LocalTime.of(7, 0), 30);
+
+		// neither or both of a list and a headway spec
+		assertInvalid(new BulkCreateRunsDto(null, null));
+		assertInvalid(new BulkCreateRunsDto(List.of(valid), headway));
+		// headway specs without a headway, with a headway under a minute, or ending before they start
+		assertInvalid(new BulkCreateRunsDto(null, new BulkCreateRunsDto.HeadwaySpec(route1.getId(),
+				ScheduleType.REGULAR, List.of(1), null, LocalTime.of(6, 0), LocalTime.of(7, 0), null)));
+		assertInvalid(new BulkCreateRunsDto(null, new BulkCreateRunsDto.HeadwaySpec(route1.getId(),
+				ScheduleType.REGULAR, List.of(1), null, LocalTime.of(6, 0), LocalTime.of(7, 0), 0)));
+		assertInvalid(new BulkCreateRunsDto(null, new BulkCreateRunsDto.HeadwaySpec(route1.getId(),
+				ScheduleType.REGULAR, List.of(1), null, LocalTime.of(7, 0), LocalTime.of(6, 0), 30)));
+		// one bad run fails the whole list: no start time, special without a date, regular without days
+		assertInvalid(new BulkCreateRunsDto(List.of(valid,
+				new CreateRunDTO(route1.getId(), ScheduleType.REGULAR, 1, null, null, null)), null));
+		assertInvalid(new BulkCreateRunsDto(List.of(valid,
+				new CreateRunDTO(route1.getId(), ScheduleType.SPECIAL, null, null, null, LocalTime.of(6, 0))), null));
+		assertInvalid(new BulkCreateRunsDto(List.of(valid,
+				new CreateRunDTO(route2.getId(), ScheduleType.REGULAR, null, List.of(), null, LocalTime.of(6, 0))), null));
+		// a route without stops has no destination
+		Route noStops = fixture.route("Bulk runs test route without stops", null);
+		assertInvalid(new BulkCreateRunsDto(List.of(valid,
+				new CreateRunDTO(noStops.getId(), ScheduleType.REGULAR, 1, null, null, LocalTime.of(6, 0))), null));
+
+		assertThrows(ResourceNotFoundException.class, () -> runService.createRunsInBulk(new BulkCreateRunsDto(List.of(valid,
+				new CreateRunDTO(-1L, ScheduleType.REGULAR, 1, null, null, LocalTime.of(6, 0))), null)));
+		assertNothingCreated();
+	}
+
+	private void assertInvalid(BulkCreateRunsDto dto) {
+		assertThrows(InvalidRunDataException.class, () -> runService.createRunsInBulk(dto));
+	}
+
+	// only the two stored runs, and no counter seeded for them
+	private void assertNothingCreated() {
+		assertEquals(2, runRepo.findByRoute(route1).size());
+		assertTrue(runRepo.findByRoute(route2).isEmpty());
+		assertEquals(0, jdbcTemplate.queryForObject("select count(*) from run_num_counter where route_id in (?, ?)",
+				Integer.class, route1.getId(), route2.getId()));
+	}
+
+	// in request order
+	private List<Run> created(BulkCreateRunsResultDto result) {
+		Map<Long, Run> byId = new HashMap<>();
+		runRepo.findAllById(result.getRunIds()).forEach(run -> byId.put(run.getId(), run));
+		List<Run> runs = new ArrayList<>(result.getRunIds().size());
+		result.getRunIds().forEach(id -> runs.add(byId.get(id)));
+		return runs;
+	}
+
+	private void storeRun(int daysOfWeekMask, int runNum, LocalTime startTime) {
+		Run run = new Run();
+		run.setRoute(route1);
+		run.setDestinationStopName("Bulk runs test stop B");
+		run.setScheduleType(ScheduleType.REGULAR);
+		run.setDaysOfWeekMask(daysOfWeekMask);
+		run.setRunNum(runNum);
+		run.setStartTime(startTime);
+		runRepo.save(run);
+	}
+}
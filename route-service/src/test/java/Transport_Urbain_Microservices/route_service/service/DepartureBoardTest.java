@@ -0,0 +1,72 @@
+package Transport_Urbain_Microservices.route_service.service;
+
+import Transport_Urbain_Microservices.route_service.dto.StopDepartureDto;
+import Transport_Urbain_Microservices.route_service.entity.DaysOfWeekMask;
+import Transport_Urbain_Microservices.route_service.entity.RouteStatus;
+import Transport_Urbain_Microservices.route_service.entity.ScheduleType;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshot;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshotHolder;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Boards of dates that are not today, so without live data. Route 1 runs S1 -> S2 (0, 5 minutes): run 100 leaves
+// at 23:58 on Fridays only, run 101 at 07:00 and run 102 at 23:00 on Saturdays, run 103 at 06:00 every day.
+class DepartureBoardTest {
+
+	private static final long S1 = 1, S2 = 2;
+	private static final LocalDate FRIDAY = LocalDate.of(2026, 10, 30);
+	private static final LocalDate SATURDAY = FRIDAY.plusDays(1);
+
+	private final RunService runService = runService();
+
+	@Test
+	void departuresAfterMidnightAreListedOnTheNextDay() {
+		List<StopDepartureDto> board = runService.getNextDeparturesForStop(S2, SATURDAY.atStartOfDay(), 2);
+		assertEquals(List.of(100L, 103L), board.stream().map(StopDepartureDto::getRunId).toList());
+		assertEquals(LocalTime.of(0, 3), board.get(0).getDepartureTime());
+	}
+
+	@Test
+	void boardGoesOnIntoTheNextDay() {
+		List<StopDepartureDto> board = runService.getNextDeparturesForStop(S1, SATURDAY.atTime(22, 0), 2);
+		assertEquals(List.of(102L, 103L), board.stream().map(StopDepartureDto::getRunId).toList());
+		assertEquals(LocalTime.of(6, 0), board.get(1).getDepartureTime());
+	}
+
+	@Test
+	void lateDeparturesOfTheDayComeBeforeTheNextDays() {
+		List<StopDepartureDto> board = runService.getNextDeparturesForStop(S2, FRIDAY.atTime(23, 0), 3);
+		// Friday's last run reaches S2 after midnight, before the first runs of Saturday
+		assertEquals(List.of(100L, 103L, 101L), board.stream().map(StopDepartureDto::getRunId).toList());
+	}
+
+	private static RunService runService() {
+		List<TimetableSnapshot.RouteTimetable> routes = List.of(new TimetableSnapshot.RouteTimetable(1L, "1", "Route 1",
+				null, RouteStatus.ACTIVE, List.of(S1, S2), List.of(0, 5), List.of("S1", "S2")));
+		List<TimetableSnapshot.RunEntry> runs = List.of(
+				run(100, DaysOfWeekMask.of(5), LocalTime.of(23, 58)),
+				run(101, DaysOfWeekMask.of(6), LocalTime.of(7, 0)),
+				run(102, DaysOfWeekMask.of(6), LocalTime.of(23, 0)),
+				run(103, DaysOfWeekMask.ALL, LocalTime.of(6, 0)));
+		List<TimetableSnapshot.StopEntry> stops = List.of(
+				new TimetableSnapshot.StopEntry(S1, "S1", 34.0, -6.8, null),
+				new TimetableSnapshot.StopEntry(S2, "S2", 34.0, -6.8, null));
+		TimetableSnapshot snapshot = new TimetableSnapshot(1, stops, routes, List.of(), runs, List.of(), List.of(), Map.of());
+		TimetableSnapshotHolder holder = mock(TimetableSnapshotHolder.class);
+		when(holder.current()).thenReturn(snapshot);
+		return new RunService(null, null, null, null, null, null, null, holder, null, null, null, null, null);
+	}
+
+	private static TimetableSnapshot.RunEntry run(long id, int mask, LocalTime start) {
+		return new TimetableSnapshot.RunEntry(id, 1L, "S2", ScheduleType.REGULAR, mask, null, 1, start);
+	}
+}
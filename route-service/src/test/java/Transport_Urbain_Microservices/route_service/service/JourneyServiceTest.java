@@ -0,0 +1,22 @@
+package Transport_Urbain_Microservices.route_service.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The bound on maxTransfers is checked before any snapshot is read
+class JourneyServiceTest {
+
+	private final JourneyService journeyService = new JourneyService(null);
+
+	@Test
+	void rejectsTransferCountsOutsideTheBound() {
+		LocalDateTime at = LocalDateTime.of(2026, 10, 19, 8, 0);
+		assertThrows(IllegalArgumentException.class, () -> journeyService.planJourney(1L, 2L, at, -1));
+		assertThrows(IllegalArgumentException.class,
+				() -> journeyService.planJourney(1L, 2L, at, JourneyService.MAX_TRANSFERS + 1));
+		assertThrows(IllegalArgumentException.class, () -> journeyService.planJourney(1L, 2L, at, Integer.MAX_VALUE));
+	}
+}
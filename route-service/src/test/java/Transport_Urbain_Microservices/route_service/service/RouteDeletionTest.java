@@ -0,0 +1,89 @@
+package Transport_Urbain_Microservices.route_service.service;
+
+import Transport_Urbain_Microservices.route_service.dto.CreateRunDTO;
+import Transport_Urbain_Microservices.route_service.entity.DaysOfWeekMask;
+import Transport_Urbain_Microservices.route_service.entity.FrequencyTemplate;
+import Transport_Urbain_Microservices.route_service.entity.Route;
+import Transport_Urbain_Microservices.route_service.entity.ScheduleType;
+import Transport_Urbain_Microservices.route_service.repo.FrequencyTemplateRepo;
+import Transport_Urbain_Microservices.route_service.repo.RouteRepo;
+import Transport_Urbain_Microservices.route_service.repo.StopRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A route as the OSM and schedule loaders leave it (stops, offsets, a shape, frequency templates) plus a run
+// created through the API, which also seeds its run number counters. Deleting it must remove all of that.
+@SpringBootTest
+@ActiveProfiles("test")
+class RouteDeletionTest {
+
+	private static final long OSM_ID = -900_001L;
+
+	@Autowired
+	private RouteService routeService;
+	@Autowired
+	private RunService runService;
+	@Autowired
+	private RouteRepo routeRepo;
+	@Autowired
+	private StopRepo stopRepo;
+	@Autowired
+	private FrequencyTemplateRepo frequencyTemplateRepo;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private RouteFixture fixture;
+	private Long stopId;
+	private Route route;
+
+	@BeforeEach
+	void createImportedRoute() {
+		fixture = new RouteFixture(routeRepo, stopRepo, jdbcTemplate);
+		stopId = fixture.stops("Route deletion test stop").getFirst();
+		route = fixture.route("Route deletion test route", OSM_ID);
+		fixture.placeStops(route, List.of(stopId), List.of(0));
+		jdbcTemplate.update("insert into route_shape (route_id, polyline, point_count, source) values (?, '', 0, 'STOPS')", route.getId());
+		frequencyTemplateRepo.save(new FrequencyTemplate(null, route, "End", DaysOfWeekMask.ALL,
+				LocalTime.of(6, 0), LocalTime.of(8, 0), 20));
+	}
+
+	@AfterEach
+	void cleanUp() {
+		// the route's rows are only left over when the deletion failed
+		fixture.remove();
+	}
+
+	@Test
+	void deletesAnImportedRouteWithTemplatesAndRuns() {
+		runService.createRun(new CreateRunDTO(route.getId(), ScheduleType.REGULAR, null, List.of(1, 2), null, LocalTime.of(9, 0)));
+		assertEquals(1, count("run", "route_id"));
+		assertTrue(count("run_num_counter", "route_id") > 0);
+
+		assertTrue(routeService.deleteRouteById(route.getId()));
+
+		assertFalse(routeRepo.existsById(route.getId()));
+		assertEquals(0, count("run", "route_id"));
+		assertEquals(0, count("frequency_template", "route_id"));
+		assertEquals(0, count("run_num_counter", "route_id"));
+		assertEquals(0, count("route_shape", "route_id"));
+		assertEquals(0, count("route_stop_offset", "id_route"));
+		assertEquals(0, count("route_stop", "id_route"));
+		assertTrue(stopRepo.existsById(stopId));
+	}
+
+	private long count(String table, String routeColumn) {
+		Long count = jdbcTemplate.queryForObject(
+				"select count(*) from " + table + " where " + routeColumn + " = ?", Long.class, route.getId());
+		return count != null ? count : 0;
+	}
+}
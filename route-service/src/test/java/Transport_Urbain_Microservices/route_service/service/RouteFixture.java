@@ -0,0 +1,90 @@
+package Transport_Urbain_Microservices.route_service.service;
+
+import Transport_Urbain_Microservices.route_service.entity.Route;
+import Transport_Urbain_Microservices.route_service.entity.Stop;
+import Transport_Urbain_Microservices.route_service.repo.RouteRepo;
+import Transport_Urbain_Microservices.route_service.repo.StopRepo;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A route numbered "TEST" over stops of its own at 34.0/-6.8, for the Spring tests. Route stops and offsets are
+// written straight to their tables, as the loaders leave them; remove() deletes the route with every row that
+// refers to it, then its stops.
+class RouteFixture {
+
+	private final RouteRepo routeRepo;
+	private final StopRepo stopRepo;
+	private final JdbcTemplate jdbcTemplate;
+
+	private final List<Long> stopIds = new ArrayList<>();
+	private final List<Long> routeIds = new ArrayList<>();
+
+	RouteFixture(RouteRepo routeRepo, StopRepo stopRepo, JdbcTemplate jdbcTemplate) {
+		this.routeRepo = routeRepo;
+		this.stopRepo = stopRepo;
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	List<Long> stops(String... names) {
+		List<Long> ids = new ArrayList<>(names.length);
+		for (String name : names) {
+			Stop stop = new Stop();
+			stop.setName(name);
+			stop.setLat(34.0);
+			stop.setLon(-6.8);
+			ids.add(stopRepo.save(stop).getId());
+		}
+		stopIds.addAll(ids);
+		return ids;
+	}
+
+	Route route(String name, Long osmId) {
+		Route route = new Route();
+		route.setOsmId(osmId);
+		route.setName(name);
+		route.setNum("TEST");
+		route = routeRepo.save(route);
+		routeIds.add(route.getId());
+		return route;
+	}
+
+	// minutes: the offset of each stop from the start, or null to leave the route without offsets
+	void placeStops(Route route, List<Long> stops, List<Integer> minutes) {
+		List<Object[]> routeStops = new ArrayList<>(stops.size());
+		List<Object[]> offsets = new ArrayList<>(stops.size());
+		for (int i = 0; i < stops.size(); i++) {
+			routeStops.add(new Object[]{route.getId(), stops.get(i), i + 1});
+			if (minutes != null) {
+				offsets.add(new Object[]{route.getId(), stops.get(i), minutes.get(i)});
+			}
+		}
+		jdbcTemplate.batchUpdate("insert into route_stop (id_route, id_stop, stop_order) values (?, ?, ?)", routeStops);
+		jdbcTemplate.batchUpdate("insert into route_stop_offset (id_route, id_stop, cumulative_minutes_from_start) " +
+				"values (?, ?, ?)", offsets);
+	}
+
+	void remove() {
+		for (String table : List.of("run", "frequency_template", "route_special_day", "run_num_counter", "route_shape")) {
+			delete(table, "route_id", routeIds);
+		}
+		delete("route_stop_offset", "id_route", routeIds);
+		delete("route_stop", "id_route", routeIds);
+		delete("route", "id", routeIds);
+		delete("stop", "id", stopIds);
+		routeIds.clear();
+		stopIds.clear();
+	}
+
+	private void delete(String table, String column, List<Long> ids) {
+		if (ids.isEmpty()) {
+			return;
+		}
+		jdbcTemplate.update(con -> {
+			var ps = con.prepareStatement("delete from " + table + " where " + column + " = any(?)");
+			ps.setArray(1, con.createArrayOf("bigint", ids.toArray()));
+			return ps;
+		});
+	}
+}
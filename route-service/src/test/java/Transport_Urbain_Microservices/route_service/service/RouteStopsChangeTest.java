@@ -0,0 +1,127 @@
+package Transport_Urbain_Microservices.route_service.service;
+
+import Transport_Urbain_Microservices.route_service.dto.ChangeRouteOffsetsDto;
+import Transport_Urbain_Microservices.route_service.dto.ChangeRouteStopsDto;
+import Transport_Urbain_Microservices.route_service.dto.RouteChangeResultDto;
+import Transport_Urbain_Microservices.route_service.entity.Route;
+import Transport_Urbain_Microservices.route_service.repo.RouteRepo;
+import Transport_Urbain_Microservices.route_service.repo.StopRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Route stop and offset changes only write the differences with what is stored, and report them.
+// The route starts as A (0 min), B (5 min), C (10 min); D is not on it.
+@SpringBootTest
+@ActiveProfiles("test")
+class RouteStopsChangeTest {
+
+	@Autowired
+	private RouteService routeService;
+	@Autowired
+	private RouteRepo routeRepo;
+	@Autowired
+	private StopRepo stopRepo;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private RouteFixture fixture;
+	private long a, b, c, d;
+	private Route route;
+
+	@BeforeEach
+	void createRoute() {
+		fixture = new RouteFixture(routeRepo, stopRepo, jdbcTemplate);
+		List<Long> stopIds = fixture.stops("Route change test stop A", "Route change test stop B",
+				"Route change test stop C", "Route change test stop D");
+		a = stopIds.get(0);
+		b = stopIds.get(1);
+		c = stopIds.get(2);
+		d = stopIds.get(3);
+		route = fixture.route("Route change test route", null);
+
+		RouteChangeResultDto created = changeStops(List.of(a, b, c), List.of(0, 5, 10));
+		assertEquals(3, created.getStopsInserted());
+		assertEquals(3, created.getOffsetsInserted());
+		assertEquals(6, created.getRowsAffected());
+	}
+
+	@AfterEach
+	void cleanUp() {
+		fixture.remove();
+	}
+
+	@Test
+	void insertingOneStopWritesItAndShiftsTheStopsAfterIt() {
+		RouteChangeResultDto result = changeStops(List.of(a, d, b, c), List.of(0, 3, 5, 10));
+
+		assertEquals(1, result.getStopsInserted());
+		assertEquals(2, result.getStopsReordered());
+		assertEquals(0, result.getStopsDeleted());
+		assertEquals(1, result.getOffsetsInserted());
+		assertEquals(0, result.getOffsetsUpdated());
+		assertEquals(4, result.getRowsAffected());
+		assertEquals(List.of(a, d, b, c), storedStops());
+		assertEquals(List.of(0, 3, 5, 10), storedMinutes());
+	}
+
+	@Test
+	void reorderingOnlyUpdatesTheMovedStops() {
+		RouteChangeResultDto result = changeStops(List.of(a, c, b), List.of(0, 5, 10));
+
+		assertEquals(0, result.getStopsInserted());
+		assertEquals(2, result.getStopsReordered());
+		assertEquals(2, result.getOffsetsUpdated());
+		assertEquals(4, result.getRowsAffected());
+		assertEquals(List.of(a, c, b), storedStops());
+		assertEquals(List.of(0, 5, 10), storedMinutes());
+	}
+
+	@Test
+	void removingAStopDeletesItAndItsOffset() {
+		RouteChangeResultDto result = changeStops(List.of(a, c), List.of(0, 10));
+
+		assertEquals(1, result.getStopsDeleted());
+		assertEquals(1, result.getStopsReordered());
+		assertEquals(1, result.getOffsetsDeleted());
+		assertEquals(0, result.getOffsetsUpdated());
+		assertEquals(3, result.getRowsAffected());
+		assertEquals(List.of(a, c), storedStops());
+		assertEquals(List.of(0, 10), storedMinutes());
+	}
+
+	@Test
+	void unchangedStopsAndOffsetsWriteNothing() {
+		assertEquals(0, changeStops(List.of(a, b, c), List.of(0, 5, 10)).getRowsAffected());
+
+		RouteChangeResultDto offsets = routeService.updateRouteOffsets(
+				new ChangeRouteOffsetsDto(route.getId(), List.of(0, 6, 10)));
+		assertEquals(1, offsets.getOffsetsUpdated());
+		assertEquals(1, offsets.getRowsAffected());
+		assertEquals(List.of(0, 6, 10), storedMinutes());
+	}
+
+	private RouteChangeResultDto changeStops(List<Long> stops, List<Integer> minutes) {
+		return routeService.updateRouteStops(new ChangeRouteStopsDto(route.getId(), stops, minutes));
+	}
+
+	private List<Long> storedStops() {
+		return jdbcTemplate.queryForList(
+				"select id_stop from route_stop where id_route = ? order by stop_order", Long.class, route.getId());
+	}
+
+	private List<Integer> storedMinutes() {
+		return jdbcTemplate.queryForList(
+				"select o.cumulative_minutes_from_start from route_stop rs " +
+						"join route_stop_offset o on o.id_route = rs.id_route and o.id_stop = rs.id_stop " +
+						"where rs.id_route = ? order by rs.stop_order", Integer.class, route.getId());
+	}
+}
@@ -0,0 +1,136 @@
+package Transport_Urbain_Microservices.route_service.service;
+
+import Transport_Urbain_Microservices.route_service.dto.CreateRunDTO;
+import Transport_Urbain_Microservices.route_service.dto.RunDetailsDto;
+import Transport_Urbain_Microservices.route_service.entity.DaysOfWeekMask;
+import Transport_Urbain_Microservices.route_service.entity.Route;
+import Transport_Urbain_Microservices.route_service.entity.Run;
+import Transport_Urbain_Microservices.route_service.entity.ScheduleType;
+import Transport_Urbain_Microservices.route_service.exception.InvalidRunDataException;
+import Transport_Urbain_Microservices.route_service.repo.RouteRepo;
+import Transport_Urbain_Microservices.route_service.repo.RunRepo;
+import Transport_Urbain_Microservices.route_service.repo.SpecialDayRepo;
+import Transport_Urbain_Microservices.route_service.repo.StopRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Many threads create runs on the same route at once; every run must get its own number
+// on each day (or date) it operates, with no gaps on a fresh scope. The route is created for the test
+// and removed with everything it got afterwards.
+@SpringBootTest
+@ActiveProfiles("test")
+class RunNumAllocationConcurrencyTest {
+
+	private static final int THREADS = 8;
+	private static final int RUNS_PER_THREAD = 15;
+	private static final LocalDate SPECIAL_DATE = LocalDate.of(2099, 12, 31);
+
+	@Autowired
+	private RunService runService;
+	@Autowired
+	private RouteRepo routeRepo;
+	@Autowired
+	private StopRepo stopRepo;
+	@Autowired
+	private RunRepo runRepo;
+	@Autowired
+	private SpecialDayRepo specialDayRepo;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private RouteFixture fixture;
+	private Route route;
+
+	@BeforeEach
+	void createRoute() {
+		fixture = new RouteFixture(routeRepo, stopRepo, jdbcTemplate);
+		route = fixture.route("Run numbering test route", null);
+		fixture.placeStops(route, fixture.stops("Run numbering test stop"), null);
+	}
+
+	@AfterEach
+	void cleanUp() {
+		fixture.remove();
+		jdbcTemplate.update("delete from special_day where date = ?", SPECIAL_DATE);
+	}
+
+	@Test
+	void concurrentSpecialRunsGetConsecutiveDistinctNumbers() throws Exception {
+		List<RunDetailsDto> runs = createConcurrently(i -> new CreateRunDTO(route.getId(), ScheduleType.SPECIAL,
+				null, null, SPECIAL_DATE, LocalTime.of(6, 0).plusMinutes(i)));
+
+		List<Integer> runNums = runs.stream().map(RunDetailsDto::getRunNum).sorted().toList();
+		assertEquals(IntStream.rangeClosed(1, THREADS * RUNS_PER_THREAD).boxed().toList(), runNums);
+		assertTrue(specialDayRepo.existsByDate(SPECIAL_DATE));
+	}
+
+	@Test
+	void regularRunsWithoutDaysAreRejectedBeforeNumbering() {
+		assertThrows(InvalidRunDataException.class, () -> runService.createRun(new CreateRunDTO(route.getId(),
+				ScheduleType.REGULAR, null, List.of(), null, LocalTime.of(6, 0))));
+		assertTrue(runRepo.findByRoute(route).isEmpty());
+		assertEquals(0, jdbcTemplate.queryForObject(
+				"select count(*) from run_num_counter where route_id = ?", Integer.class, route.getId()));
+	}
+
+	@Test
+	void concurrentRegularRunsWithOverlappingDaysNeverShareANumber() throws Exception {
+		// Saturday only, Saturday and Sunday, Sunday only: the Saturday and Sunday counters are contended
+		List<List<Integer>> dayPatterns = List.of(List.of(6), List.of(6, 7), List.of(7));
+		createConcurrently(i -> new CreateRunDTO(route.getId(), ScheduleType.REGULAR,
+				null, dayPatterns.get(i % dayPatterns.size()), null, LocalTime.of(5, 0).plusMinutes(i)));
+
+		List<Run> routeRuns = runRepo.findByRoute(route);
+		for (int day = 6; day <= 7; day++) {
+			int d = day;
+			List<Integer> runNums = routeRuns.stream()
+					.filter(run -> run.getScheduleType() == ScheduleType.REGULAR && run.getDaysOfWeekMask() != null
+							&& DaysOfWeekMask.contains(run.getDaysOfWeekMask(), d))
+					.map(Run::getRunNum)
+					.toList();
+			assertEquals(runNums.size(), new HashSet<>(runNums).size(), "duplicate run number on day " + day);
+		}
+	}
+
+	private List<RunDetailsDto> createConcurrently(IntFunction<CreateRunDTO> request) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<List<RunDetailsDto>>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				int thread = t;
+				futures.add(executor.submit(() -> {
+					start.await();
+					List<RunDetailsDto> created = new ArrayList<>();
+					for (int i = 0; i < RUNS_PER_THREAD; i++) {
+						RunDetailsDto run = runService.createRun(request.apply(thread * RUNS_PER_THREAD + i));
+						created.add(run);
+					}
+					return created;
+				}));
+			}
+			start.countDown();
+			List<RunDetailsDto> all = new ArrayList<>();
+			for (Future<List<RunDetailsDto>> future : futures) {
+				all.addAll(future.get(2, TimeUnit.MINUTES));
+			}
+			return all;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package Transport_Urbain_Microservices.route_service.service;
+
+import Transport_Urbain_Microservices.route_service.dto.NearbyStopDto;
+import Transport_Urbain_Microservices.route_service.dto.StopDto;
+import Transport_Urbain_Microservices.route_service.timetable.TimetableSnapshotHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Stop writes go through the service and show in the spatial queries once the next snapshot version is served.
+// The stop is placed in the Southern Ocean, far from any imported stop.
+@SpringBootTest
+@ActiveProfiles("test")
+class StopSpatialIndexPublishTest {
+
+	private static final double LAT = -60.0;
+	private static final double LON = 100.0;
+
+	@Autowired
+	private StopService stopService;
+	@Autowired
+	private TimetableSnapshotHolder snapshotHolder;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private Long stopId;
+
+	@AfterEach
+	void cleanUp() {
+		if (stopId != null) {
+			jdbcTemplate.update("delete from stop where id = ?", stopId);
+		}
+	}
+
+	@Test
+	void createdUpdatedAndDeletedStopsAreReflectedAfterPublishing() throws InterruptedException {
+		long version = servedVersion();
+		stopId = stopService.createStop(new StopDto(null, "Spatial index test stop", LAT, LON, null)).getId();
+		version = awaitNextVersion(version);
+		assertEquals(List.of(stopId), nearbyIds(LAT, LON));
+
+		stopService.updateStop(new StopDto(stopId, "Spatial index test stop", LAT + 0.01, LON, null));
+		version = awaitNextVersion(version);
+		assertTrue(nearbyIds(LAT, LON).isEmpty()); // about 1.1 km away now
+		assertEquals(List.of(stopId), nearbyIds(LAT + 0.01, LON));
+		assertEquals(List.of(stopId), stopService.getStopsInBoundingBox(LAT, LON - 0.01, LAT + 0.02, LON + 0.01, 10)
+				.stream().map(StopDto::getId).toList());
+
+		stopService.deleteStopById(stopId);
+		awaitNextVersion(version);
+		assertTrue(nearbyIds(LAT + 0.01, LON).isEmpty());
+		stopId = null;
+	}
+
+	private List<Long> nearbyIds(double lat, double lon) {
+		return stopService.getNearbyStops(lat, lon, 500, 10).stream().map(NearbyStopDto::getId).toList();
+	}
+
+	private long servedVersion() {
+		return snapshotHolder.current().getVersion();
+	}
+
+	private long awaitNextVersion(long version) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 30_000;
+		// a build queued before the write can bump the version without it
+		while (servedVersion() == version || snapshotHolder.getUnpublishedChanges() > 0) {
+			assertTrue(System.currentTimeMillis() < deadline, "no new snapshot version published");
+			Thread.sleep(20);
+		}
+		return servedVersion();
+	}
+}
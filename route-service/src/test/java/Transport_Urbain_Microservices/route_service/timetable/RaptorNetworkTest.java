@@ -0,0 +1,91 @@
+package Transport_Urbain_Microservices.route_service.timetable;
+
+import Transport_Urbain_Microservices.route_service.entity.DaysOfWeekMask;
+import Transport_Urbain_Microservices.route_service.entity.RouteStatus;
+import Transport_Urbain_Microservices.route_service.entity.ScheduleType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Route 1 runs A -> B -> C (0, 10, 20 minutes), route 2 runs C -> D (0, 5 minutes) and route 3, suspended,
+// runs A -> D directly.
+class RaptorNetworkTest {
+
+	private static final long A = 1, B = 2, C = 3, D = 4;
+	private static final LocalDate MONDAY = LocalDate.of(2026, 10, 19);
+
+	@Test
+	void transfersToTheFirstCatchableRun() {
+		TimetableSnapshot snapshot = snapshot();
+		RaptorNetwork network = snapshot.getRaptorNetwork(MONDAY);
+
+		RaptorNetwork.Itinerary itinerary = network.earliestArrival(
+				network.indexOfStop(A), network.indexOfStop(D), 7 * 60 + 50, 2);
+
+		assertNotNull(itinerary);
+		// the 08:15 run of route 2 is missed, and the direct route 3 is suspended
+		assertEquals(8 * 60 + 30, itinerary.getArrivalMinute());
+		List<RaptorNetwork.Leg> legs = itinerary.getLegs();
+		assertEquals(2, legs.size());
+		assertEquals(1, legs.get(0).getRouteId());
+		assertEquals(A, legs.get(0).getFromStopId());
+		assertEquals(C, legs.get(0).getToStopId());
+		assertEquals(8 * 60 + 20, legs.get(0).getArrivalMinute());
+		assertEquals(2, legs.get(1).getRouteId());
+		assertEquals(8 * 60 + 25, legs.get(1).getDepartureMinute());
+		assertEquals(102L, snapshot.getRuns().get(legs.get(1).getRunIndex()).getId());
+	}
+
+	@Test
+	void roundsBoundTheNumberOfRuns() {
+		RaptorNetwork network = snapshot().getRaptorNetwork(MONDAY);
+		assertNull(network.earliestArrival(network.indexOfStop(A), network.indexOfStop(D), 7 * 60 + 50, 1));
+	}
+
+	@Test
+	void noRunLeftThatDay() {
+		RaptorNetwork network = snapshot().getRaptorNetwork(MONDAY);
+		assertNull(network.earliestArrival(network.indexOfStop(A), network.indexOfStop(D), 8 * 60 + 1, 2));
+	}
+
+	@Test
+	void onlyRunsOfTheDayAreUsed() {
+		RaptorNetwork network = snapshot().getRaptorNetwork(MONDAY.plusDays(1));
+		// route 2 only runs on Mondays, so D has no service on Tuesday
+		assertNotNull(network.indexOfStop(C));
+		assertNull(network.indexOfStop(D));
+	}
+
+	private static TimetableSnapshot snapshot() {
+		List<TimetableSnapshot.RouteTimetable> routes = List.of(
+				route(1, RouteStatus.ACTIVE, List.of(A, B, C), List.of(0, 10, 20)),
+				route(2, RouteStatus.ACTIVE, List.of(C, D), List.of(0, 5)),
+				route(3, RouteStatus.SUSPENDED, List.of(A, D), List.of(0, 1)));
+		List<TimetableSnapshot.RunEntry> runs = new ArrayList<>();
+		runs.add(run(100, 1, DaysOfWeekMask.ALL, LocalTime.of(8, 0)));
+		runs.add(run(101, 2, DaysOfWeekMask.of(1), LocalTime.of(8, 15)));
+		runs.add(run(102, 2, DaysOfWeekMask.of(1), LocalTime.of(8, 25)));
+		runs.add(run(103, 3, DaysOfWeekMask.ALL, LocalTime.of(7, 55)));
+		List<TimetableSnapshot.StopEntry> stops = List.of(stop(A, "A"), stop(B, "B"), stop(C, "C"), stop(D, "D"));
+		return new TimetableSnapshot(1, stops, routes, List.of(), runs, List.of(), List.of(), Map.of());
+	}
+
+	private static TimetableSnapshot.StopEntry stop(long id, String name) {
+		return new TimetableSnapshot.StopEntry(id, name, 34.0, -6.8, null);
+	}
+
+	private static TimetableSnapshot.RouteTimetable route(long id, RouteStatus status, List<Long> stopIds, List<Integer> minutes) {
+		List<String> names = stopIds.stream().map(String::valueOf).toList();
+		return new TimetableSnapshot.RouteTimetable(id, String.valueOf(id), "Route " + id, null, status, stopIds, minutes, names);
+	}
+
+	private static TimetableSnapshot.RunEntry run(long id, long routeId, int mask, LocalTime start) {
+		return new TimetableSnapshot.RunEntry(id, routeId, "End", ScheduleType.REGULAR, mask, null, 1, start);
+	}
+}
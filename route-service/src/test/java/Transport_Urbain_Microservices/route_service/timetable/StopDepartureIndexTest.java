@@ -0,0 +1,132 @@
+package Transport_Urbain_Microservices.route_service.timetable;
+
+import Transport_Urbain_Microservices.route_service.entity.DaysOfWeekMask;
+import Transport_Urbain_Microservices.route_service.entity.RouteStatus;
+import Transport_Urbain_Microservices.route_service.entity.ScheduleType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Route 1 runs S1 -> S2 (0, 5 minutes), route 2 runs S3 -> S1 (0, 10 minutes) and route 3, suspended, serves S1.
+// Christmas is a special day for the whole network, ROUTE_DAY (a Monday) for route 1 only.
+class StopDepartureIndexTest {
+
+	private static final long S1 = 1, S2 = 2, S3 = 3;
+	private static final LocalDate MONDAY = LocalDate.of(2026, 10, 26);
+	private static final LocalDate ROUTE_DAY = LocalDate.of(2026, 10, 19);
+	private static final LocalDate CHRISTMAS = LocalDate.of(2026, 12, 25);
+
+	@Test
+	void weekdayDeparturesAreSortedByMinuteAcrossRoutes() {
+		TimetableSnapshot snapshot = snapshot();
+		StopDepartureIndex.Departures monday = snapshot.getDepartures(S1, MONDAY);
+		assertArrayEquals(new int[]{7 * 60, 8 * 60, 8 * 60 + 5}, monday.getMinutes());
+		assertEquals(List.of(101L, 100L, 102L), runIds(snapshot, monday));
+
+		assertEquals(List.of(100L, 102L), runIds(snapshot, snapshot.getDepartures(S1, MONDAY.plusDays(1))));
+		// the suspended route's daily run is never listed
+		assertEquals(List.of(102L), runIds(snapshot, snapshot.getDepartures(S1, MONDAY.plusDays(6))));
+	}
+
+	@Test
+	void lateDeparturesAreNotWrappedAtMidnight() {
+		StopDepartureIndex.Departures saturday = snapshot().getDepartures(S2, MONDAY.plusDays(5));
+		assertArrayEquals(new int[]{24 * 60 + 3}, saturday.getMinutes());
+	}
+
+	@Test
+	void loopRoutesListEachPassageWithItsStopPosition() {
+		// route 4 leaves S3, loops through S2 and comes back to S3
+		List<TimetableSnapshot.RouteTimetable> routes = List.of(
+				route(4, RouteStatus.ACTIVE, List.of(S3, S2, S3), List.of(0, 10, 20)));
+		List<TimetableSnapshot.RunEntry> runs = List.of(regular(400, 4, DaysOfWeekMask.ALL, LocalTime.of(6, 0)));
+		TimetableSnapshot snapshot = new TimetableSnapshot(1, Arrays.asList(stop(S2), stop(S3)), routes, List.of(), runs,
+				List.of(), List.of(), Map.of());
+
+		StopDepartureIndex.Departures departures = snapshot.getDepartures(S3, MONDAY);
+		assertArrayEquals(new int[]{6 * 60, 6 * 60 + 20}, departures.getMinutes());
+		assertArrayEquals(new int[]{0, 2}, departures.getStopIndexes());
+		assertArrayEquals(new int[]{1}, snapshot.getDepartures(S2, MONDAY).getStopIndexes());
+	}
+
+	@Test
+	void specialDaysOnlyListTheirSpecialRuns() {
+		TimetableSnapshot snapshot = snapshot();
+		assertEquals(List.of(200L), runIds(snapshot, snapshot.getDepartures(S1, CHRISTMAS)));
+		assertEquals(0, snapshot.getDepartures(S3, CHRISTMAS).size());
+	}
+
+	@Test
+	void routeSpecialDaysReplaceOnlyThatRoutesRuns() {
+		TimetableSnapshot snapshot = snapshot();
+		StopDepartureIndex.Departures departures = snapshot.getDepartures(S1, ROUTE_DAY);
+		// route 2 keeps its regular run, route 1 runs its special one instead of its Monday runs
+		assertArrayEquals(new int[]{8 * 60 + 5, 9 * 60}, departures.getMinutes());
+		assertEquals(List.of(102L, 201L), runIds(snapshot, departures));
+		assertArrayEquals(new int[]{1, 0}, departures.getStopIndexes());
+	}
+
+	@Test
+	void firstAtOrAfterHandlesTheEdges() {
+		StopDepartureIndex.Departures monday = snapshot().getDepartures(S1, MONDAY);
+		assertEquals(0, monday.firstAtOrAfter(0));
+		assertEquals(0, monday.firstAtOrAfter(7 * 60));
+		assertEquals(1, monday.firstAtOrAfter(7 * 60 + 1));
+		assertEquals(2, monday.firstAtOrAfter(8 * 60 + 5));
+		assertEquals(3, monday.firstAtOrAfter(8 * 60 + 6));
+	}
+
+	@Test
+	void unknownStopsHaveNoDepartures() {
+		StopDepartureIndex.Departures none = snapshot().getDepartures(99L, MONDAY);
+		assertEquals(0, none.size());
+		assertEquals(0, none.firstAtOrAfter(0));
+	}
+
+	private static TimetableSnapshot snapshot() {
+		List<TimetableSnapshot.RouteTimetable> routes = List.of(
+				route(1, RouteStatus.ACTIVE, List.of(S1, S2), List.of(0, 5)),
+				route(2, RouteStatus.ACTIVE, List.of(S3, S1), List.of(0, 10)),
+				route(3, RouteStatus.SUSPENDED, List.of(S1), List.of(0)));
+		int weekdays = DaysOfWeekMask.of(List.of(1, 2, 3, 4, 5));
+		List<TimetableSnapshot.RunEntry> runs = new ArrayList<>();
+		runs.add(regular(100, 1, weekdays, LocalTime.of(8, 0)));
+		runs.add(regular(101, 1, DaysOfWeekMask.of(1), LocalTime.of(7, 0)));
+		runs.add(regular(102, 2, DaysOfWeekMask.ALL, LocalTime.of(7, 55)));
+		runs.add(regular(103, 3, DaysOfWeekMask.ALL, LocalTime.of(6, 0)));
+		runs.add(regular(104, 1, DaysOfWeekMask.of(6), LocalTime.of(23, 58)));
+		runs.add(special(200, 1, CHRISTMAS, LocalTime.of(10, 0)));
+		runs.add(special(201, 1, ROUTE_DAY, LocalTime.of(9, 0)));
+		List<TimetableSnapshot.StopEntry> stops = Arrays.asList(stop(S1), stop(S2), stop(S3));
+		return new TimetableSnapshot(1, stops, routes, List.of(), runs, List.of(), List.of(CHRISTMAS),
+				Map.of(1L, List.of(ROUTE_DAY)));
+	}
+
+	private static List<Long> runIds(TimetableSnapshot snapshot, StopDepartureIndex.Departures departures) {
+		return Arrays.stream(departures.getRunIndexes()).mapToObj(i -> snapshot.getRuns().get(i).getId()).toList();
+	}
+
+	private static TimetableSnapshot.StopEntry stop(long id) {
+		return new TimetableSnapshot.StopEntry(id, "S" + id, 34.0, -6.8, null);
+	}
+
+	private static TimetableSnapshot.RouteTimetable route(long id, RouteStatus status, List<Long> stopIds, List<Integer> minutes) {
+		List<String> names = stopIds.stream().map(String::valueOf).toList();
+		return new TimetableSnapshot.RouteTimetable(id, String.valueOf(id), "Route " + id, null, status, stopIds, minutes, names);
+	}
+
+	private static TimetableSnapshot.RunEntry regular(long id, long routeId, int mask, LocalTime start) {
+		return new TimetableSnapshot.RunEntry(id, routeId, "End", ScheduleType.REGULAR, mask, null, 1, start);
+	}
+
+	private static TimetableSnapshot.RunEntry special(long id, long routeId, LocalDate date, LocalTime start) {
+		return new TimetableSnapshot.RunEntry(id, routeId, "End", ScheduleType.SPECIAL, null, date, 1, start);
+	}
+}
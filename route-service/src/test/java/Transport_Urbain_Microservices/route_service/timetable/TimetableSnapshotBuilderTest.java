@@ -0,0 +1,71 @@
+package Transport_Urbain_Microservices.route_service.timetable;
+
+import Transport_Urbain_Microservices.route_service.entity.DaysOfWeekMask;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Numbering of the departures expanded from the frequency templates of one route
+class TimetableSnapshotBuilderTest {
+
+	private static final long ROUTE = 1;
+	private static final int WEEKDAYS = DaysOfWeekMask.of(List.of(1, 2, 3, 4, 5));
+
+	@Test
+	void templateCreatedAfterExplicitRunsIsNumberedAfterThem() {
+		// runs 1..3 stored on every weekday, a fourth one on Friday only
+		int[] lastStoredRunNum = {3, 3, 3, 3, 4, 0, 0};
+		List<TimetableSnapshot.RunEntry> runs = TimetableSnapshotBuilder.expandTemplates(
+				List.of(template(10, WEEKDAYS, LocalTime.of(6, 0), LocalTime.of(7, 0), 30)), lastStoredRunNum);
+
+		assertEquals(List.of(5, 6, 7), runs.stream().map(TimetableSnapshot.RunEntry::getRunNum).toList());
+		for (int day = 1; day <= 5; day++) {
+			assertTrue(runNumsOn(runs, day).stream().allMatch(runNum -> runNum > lastStoredRunNum[0]));
+		}
+	}
+
+	@Test
+	void templatesSharingDaysAreNumberedInDepartureOrder() {
+		List<TimetableSnapshot.RunEntry> runs = TimetableSnapshotBuilder.expandTemplates(List.of(
+				template(10, WEEKDAYS, LocalTime.of(8, 0), LocalTime.of(8, 20), 10),
+				template(11, WEEKDAYS, LocalTime.of(6, 0), LocalTime.of(8, 5), 60)), new int[7]);
+
+		List<TimetableSnapshot.RunEntry> inNumberOrder = runs.stream()
+				.sorted(Comparator.comparing(TimetableSnapshot.RunEntry::getRunNum))
+				.toList();
+		assertEquals(List.of(1, 2, 3, 4, 5, 6), inNumberOrder.stream().map(TimetableSnapshot.RunEntry::getRunNum).toList());
+		assertEquals(List.of(LocalTime.of(6, 0), LocalTime.of(7, 0), LocalTime.of(8, 0), LocalTime.of(8, 0),
+						LocalTime.of(8, 10), LocalTime.of(8, 20)),
+				inNumberOrder.stream().map(TimetableSnapshot.RunEntry::getStartTime).toList());
+	}
+
+	@Test
+	void numbersAreUniqueOnEveryDayOfOverlappingTemplates() {
+		// weekdays and the weekend share Friday's departures through different day sets
+		int[] lastStoredRunNum = {2, 2, 2, 2, 2, 1, 0};
+		List<TimetableSnapshot.RunEntry> runs = TimetableSnapshotBuilder.expandTemplates(List.of(
+				template(10, WEEKDAYS, LocalTime.of(6, 0), LocalTime.of(6, 30), 15),
+				template(11, DaysOfWeekMask.of(List.of(5, 6, 7)), LocalTime.of(7, 0), LocalTime.of(7, 30), 15)),
+				lastStoredRunNum);
+
+		for (int day = 1; day <= 7; day++) {
+			List<Integer> runNums = runNumsOn(runs, day);
+			assertEquals(runNums.size(), new HashSet<>(runNums).size(), "duplicate run number on day " + day);
+			int lastStored = lastStoredRunNum[day - 1];
+			assertTrue(runNums.stream().allMatch(runNum -> runNum > lastStored), "template run numbered before a stored run on day " + day);
+		}
+		// ids do not depend on the numbering
+		assertEquals(runs.size(), runs.stream().map(TimetableSnapshot.RunEntry::getId).distinct().count());
+	}
+
+	private static List<Integer> runNumsOn(List<TimetableSnapshot.RunEntry> runs, int day) {
+		return runs.stream().filter(run -> run.runsOn(day)).map(TimetableSnapshot.RunEntry::getRunNum).toList();
+	}
+
+	private static TimetableSnapshot.TemplateEntry template(long id, int days, LocalTime start, LocalTime end, int headway) {
+		return new TimetableSnapshot.TemplateEntry(id, ROUTE, "Terminus", days, start, end, headway);
+	}
+}
@@ -0,0 +1,144 @@
+package Transport_Urbain_Microservices.route_service.timetable;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// The builder is replaced by a fake that records how many writes were committed when each version was built:
+// writers count their write in `committed` before announcing it, as a transaction commits before its event.
+class TimetableSnapshotHolderTest {
+
+	private final TimetableSnapshotBuilder snapshotBuilder = mock(TimetableSnapshotBuilder.class);
+	private final TimetableSnapshotHolder holder = new TimetableSnapshotHolder(snapshotBuilder, event -> { });
+
+	private final AtomicInteger committed = new AtomicInteger();
+	private final AtomicInteger builds = new AtomicInteger();
+	private final Map<Long, Integer> writesSeenByVersion = new ConcurrentHashMap<>();
+	private volatile CountDownLatch buildGate = new CountDownLatch(0);
+
+	@BeforeEach
+	void fakeBuilder() {
+		ReflectionTestUtils.setField(holder, "retainedVersions", 2);
+		when(snapshotBuilder.build(anyLong())).thenAnswer(invocation -> {
+			buildGate.await();
+			long version = invocation.getArgument(0);
+			builds.incrementAndGet();
+			writesSeenByVersion.put(version, committed.get());
+			return new TimetableSnapshot(version, List.of(), List.of(), List.of(), List.of(), List.of(), List.of(), Map.of());
+		});
+		holder.rebuild();
+	}
+
+	@AfterEach
+	void stopPublisher() {
+		buildGate.countDown();
+		holder.stop();
+	}
+
+	@Test
+	void writesReturnBeforeTheirVersionIsBuilt() throws InterruptedException {
+		buildGate = new CountDownLatch(1);
+		assertTimeoutPreemptively(Duration.ofSeconds(5), this::write);
+		assertEquals(1, holder.current().getVersion());
+
+		buildGate.countDown();
+		awaitPublished();
+		assertEquals(2, holder.current().getVersion());
+		assertEquals(1, writesSeenByVersion.get(2L));
+	}
+
+	@Test
+	void writesDuringHoldAreOnlyServedAfterPublish() throws InterruptedException {
+		holder.hold();
+		write();
+		write();
+		Thread.sleep(100);
+		assertEquals(1, holder.current().getVersion());
+		assertEquals(2, holder.getUnpublishedChanges());
+		assertEquals(1, builds.get());
+
+		TimetableSnapshot published = holder.publish();
+		assertSame(published, holder.current());
+		assertEquals(2, writesSeenByVersion.get(published.getVersion()));
+		assertEquals(0, holder.getUnpublishedChanges());
+		assertFalse(holder.isHeld());
+	}
+
+	@Test
+	void rollingBackToAVersionThatIsNotRetainedThrows() {
+		assertThrows(IllegalArgumentException.class, () -> holder.rollback(42));
+		assertFalse(holder.isHeld());
+		assertEquals(1, holder.current().getVersion());
+	}
+
+	@Test
+	void retentionIsCappedAndOlderVersionsCanNoLongerBeRolledBackTo() {
+		holder.rebuild();
+		holder.rebuild();
+		holder.rebuild();
+		assertEquals(List.of(4L, 3L), holder.getRetainedVersions().stream().map(TimetableSnapshot::getVersion).toList());
+		assertThrows(IllegalArgumentException.class, () -> holder.rollback(2));
+
+		assertEquals(3, holder.rollback(3).getVersion());
+		assertEquals(3, holder.current().getVersion());
+		assertTrue(holder.isHeld());
+	}
+
+	@Test
+	void concurrentWritersEndWithOneUpToDateVersion() throws InterruptedException {
+		int writers = 8;
+		int writesPerWriter = 50;
+		ExecutorService pool = Executors.newFixedThreadPool(writers);
+		CountDownLatch start = new CountDownLatch(1);
+		for (int i = 0; i < writers; i++) {
+			pool.execute(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				for (int j = 0; j < writesPerWriter; j++) {
+					write();
+				}
+			});
+		}
+		start.countDown();
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+		awaitPublished();
+		assertEquals(writers * writesPerWriter, writesSeenByVersion.get(holder.current().getVersion()));
+		// builds are coalesced, not one per write
+		assertTrue(builds.get() - 1 < writers * writesPerWriter);
+	}
+
+	private void write() {
+		committed.incrementAndGet();
+		holder.onNetworkChanged(new NetworkChangedEvent("test write"));
+	}
+
+	private void awaitPublished() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (holder.getUnpublishedChanges() > 0) {
+			assertTrue(System.currentTimeMillis() < deadline, "writes not published");
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package Transport_Urbain_Microservices.route_service.timetable;
+
+import Transport_Urbain_Microservices.route_service.entity.DaysOfWeekMask;
+import Transport_Urbain_Microservices.route_service.entity.RouteStatus;
+import Transport_Urbain_Microservices.route_service.entity.ScheduleType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Route 1 has two stored runs and a frequency template expanded into three departures
+class TimetableSnapshotTest {
+
+	@Test
+	void pagesGoThroughAllRunsByIdIncludingTemplateDepartures() {
+		TimetableSnapshot snapshot = snapshot();
+		List<Long> ids = snapshot.getRuns().stream().map(TimetableSnapshot.RunEntry::getId).toList();
+		assertEquals(5, ids.size());
+		assertEquals(ids.stream().sorted().toList(), ids);
+
+		List<Long> paged = new ArrayList<>();
+		long after = Long.MIN_VALUE;
+		List<TimetableSnapshot.RunEntry> page;
+		while (!(page = snapshot.getRunsPage(after, 2)).isEmpty()) {
+			page.forEach(run -> paged.add(run.getId()));
+			after = page.getLast().getId();
+		}
+		assertEquals(ids, paged);
+	}
+
+	@Test
+	void storedRunsFollowTheTemplateDepartures() {
+		assertEquals(List.of(10L, 11L), snapshot().getStoredRuns().stream().map(TimetableSnapshot.RunEntry::getId).toList());
+	}
+
+	private static TimetableSnapshot snapshot() {
+		TimetableSnapshot.TemplateEntry template = new TimetableSnapshot.TemplateEntry(1L, 1L, "End", DaysOfWeekMask.ALL,
+				LocalTime.of(6, 0), LocalTime.of(7, 0), 30);
+		List<TimetableSnapshot.RunEntry> runs = new ArrayList<>(List.of(
+				new TimetableSnapshot.RunEntry(11L, 1L, "End", ScheduleType.REGULAR, DaysOfWeekMask.ALL, null, 2, LocalTime.of(9, 0)),
+				new TimetableSnapshot.RunEntry(10L, 1L, "End", ScheduleType.REGULAR, DaysOfWeekMask.ALL, null, 1, LocalTime.of(8, 0))));
+		runs.addAll(TimetableSnapshotBuilder.expandTemplates(List.of(template), new int[]{2, 2, 2, 2, 2, 2, 2}));
+		List<TimetableSnapshot.RouteTimetable> routes = List.of(new TimetableSnapshot.RouteTimetable(1L, "1", "Route 1",
+				null, RouteStatus.ACTIVE, List.of(1L), List.of(0), List.of("S1")));
+		return new TimetableSnapshot(1, List.of(new TimetableSnapshot.StopEntry(1L, "S1", 34.0, -6.8, null)), routes,
+				List.of(), runs, List.of(template), List.of(), Map.of());
+	}
+}